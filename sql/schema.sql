@@ -21,3 +21,22 @@ CREATE TABLE IF NOT EXISTS transactions (
     created_at TIMESTAMP NOT NULL,
     wallet_id VARCHAR(64) NOT NULL REFERENCES wallets(id)
 );
+
+-- Index des chemins chauds (migrations 2 et 3)
+CREATE INDEX IF NOT EXISTS idx_wallets_address ON wallets(address);
+CREATE INDEX IF NOT EXISTS idx_transactions_wallet_created_pk ON transactions(wallet_id, created_at, pk);
+CREATE INDEX IF NOT EXISTS idx_transactions_pending ON transactions(created_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_transactions_created ON transactions(created_at);
+
+-- Versions appliquées: l'application ne rejoue pas ces migrations au démarrage.
+-- Toute évolution du schéma passe par une nouvelle migration dans config.migration.Migrations.
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INTEGER PRIMARY KEY,
+    description VARCHAR(200) NOT NULL,
+    applied_at TIMESTAMP NOT NULL
+);
+INSERT INTO schema_version(version, description, applied_at) VALUES
+    (1, 'Tables wallets et transactions', CURRENT_TIMESTAMP),
+    (2, 'Index des chemins chauds', CURRENT_TIMESTAMP),
+    (3, 'Index de pagination de l''historique', CURRENT_TIMESTAMP)
+ON CONFLICT (version) DO NOTHING;
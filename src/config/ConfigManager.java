@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 import java.util.logging.Logger;
+import metier.enums.CryptoType;
+import metier.enums.FeeDistribution;
+import repository.RepositoryType;
 import util.LoggerProvider;
 
 /**
@@ -124,4 +127,279 @@ public class ConfigManager {
             return 30000L;
         }
     }
+    
+    /**
+     * Retourne la durée, en millisecondes, au-delà de laquelle une connexion inactive du pool est fermée
+     */
+    public static long getConnectionIdleTimeout() {
+        return getLongProperty("db.idleTimeout", 600_000L);
+    }
+    
+    /**
+     * Retourne la durée d'emprunt, en millisecondes, au-delà de laquelle une connexion est signalée
+     * comme fuite probable; 0 désactive la détection
+     */
+    public static long getLeakDetectionThreshold() {
+        return getLongProperty("db.leakDetectionThreshold", 60_000L);
+    }
+    
+    /**
+     * Retourne le nombre d'instructions préparées gardées par connexion du pool; 0 désactive le cache
+     */
+    public static int getStatementCacheSize() {
+        return (int) getLongProperty("db.statementCacheSize", 64L);
+    }
+    
+    /**
+     * Retourne le nombre d'exécutions d'une instruction après lequel PostgreSQL la prépare côté
+     * serveur; 0 désactive la préparation côté serveur
+     */
+    public static int getPrepareThreshold() {
+        return (int) getLongProperty("db.prepareThreshold", 1L);
+    }
+    
+    /**
+     * Retourne le nombre de lignes envoyées par lot lors des écritures en masse
+     */
+    public static int getBatchSize() {
+        return (int) getLongProperty("db.batchSize", 1_000L);
+    }
+    
+    /**
+     * Retourne le nombre de transactions à partir duquel un chargement en masse passe par
+     * COPY (PostgreSQL uniquement); 0 désactive COPY
+     */
+    public static int getCopyThreshold() {
+        return (int) getLongProperty("db.copyThreshold", 50_000L);
+    }
+    
+    /**
+     * Retourne le nombre de lignes lues par aller-retour lors des lectures en flux
+     */
+    public static int getFetchSize() {
+        return (int) getLongProperty("db.fetchSize", 500L);
+    }
+    
+    /**
+     * Retourne le nombre de lignes par groupe du fichier d'export en colonnes
+     */
+    public static int getExportRowGroupSize() {
+        return (int) getLongProperty("export.rowGroupSize", 16_384L);
+    }
+    
+    /**
+     * Retourne le stockage des wallets et des transactions (JDBC ou MEMORY)
+     */
+    public static RepositoryType getRepositoryType() {
+        String value = getProperty("repository.type", RepositoryType.JDBC.name());
+        try {
+            return RepositoryType.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Valeur invalide pour repository.type: " + value + " - Utilisation de la valeur par défaut: JDBC");
+            return RepositoryType.JDBC;
+        }
+    }
+    
+    /**
+     * Retourne le fichier journal du stockage en mémoire (vide: pas de journal)
+     */
+    public static String getMemoryStoreLogFile() {
+        return getProperty("repository.memory.log", "").trim();
+    }
+    
+    /**
+     * Retourne l'intervalle maximal, en millisecondes, entre deux vidages du journal du stockage en mémoire
+     */
+    public static long getMemoryStoreLogFlushIntervalMillis() {
+        return getLongProperty("repository.memory.logFlushIntervalMillis", 1_000L);
+    }
+    
+    /**
+     * Indique si les crédits et débits sont inscrits au ledger en ajout seul
+     */
+    public static boolean isLedgerEnabled() {
+        return Boolean.parseBoolean(getProperty("ledger.enabled", "false").trim());
+    }
+    
+    /**
+     * Retourne le répertoire des segments et instantanés du ledger
+     */
+    public static String getLedgerDirectory() {
+        return getProperty("ledger.directory", "data/ledger");
+    }
+    
+    /**
+     * Retourne la taille d'un segment du ledger, en octets
+     */
+    public static int getLedgerSegmentBytes() {
+        return (int) getLongProperty("ledger.segmentBytes", 16L * 1024 * 1024);
+    }
+    
+    /**
+     * Retourne le nombre d'écritures du ledger entre deux instantanés des balances
+     */
+    public static long getLedgerSnapshotEvery() {
+        return getLongProperty("ledger.snapshotEvery", 100_000L);
+    }
+    
+    /**
+     * Retourne l'intervalle, en millisecondes, entre deux synchronisations du ledger sur disque
+     */
+    public static long getLedgerForceIntervalMillis() {
+        return getLongProperty("ledger.forceIntervalMillis", 1_000L);
+    }
+    
+    /**
+     * Indique si les lectures de wallets (par id ou adresse) passent par un cache
+     */
+    public static boolean isWalletCacheEnabled() {
+        return Boolean.parseBoolean(getProperty("wallet.cache.enabled", "true").trim());
+    }
+    
+    /**
+     * Retourne le nombre maximal de wallets en cache
+     */
+    public static int getWalletCacheMaxSize() {
+        return (int) getLongProperty("wallet.cache.maxSize", 10_000L);
+    }
+    
+    /**
+     * Retourne la durée de vie d'un wallet en cache, en millisecondes
+     */
+    public static long getWalletCacheTtlMillis() {
+        return getLongProperty("wallet.cache.ttlMillis", 60_000L);
+    }
+    
+    /**
+     * Indique si les balances des wallets sont écrites en différé (mémoire + journal)
+     */
+    public static boolean isWriteBehindEnabled() {
+        return Boolean.parseBoolean(getProperty("wallet.writeBehind.enabled", "false").trim());
+    }
+    
+    /**
+     * Retourne le répertoire du journal des balances en écriture différée
+     */
+    public static String getWriteBehindJournalDir() {
+        return getProperty("wallet.writeBehind.journalDir", "data/journal");
+    }
+    
+    /**
+     * Retourne le nombre de balances en attente qui déclenche une écriture en base
+     */
+    public static int getWriteBehindFlushSize() {
+        return (int) getLongProperty("wallet.writeBehind.flushSize", 1_000L);
+    }
+    
+    /**
+     * Retourne l'intervalle maximal, en millisecondes, entre deux écritures en base des balances
+     */
+    public static long getWriteBehindFlushIntervalMillis() {
+        return getLongProperty("wallet.writeBehind.flushIntervalMillis", 1_000L);
+    }
+    
+    /**
+     * Retourne l'intervalle entre deux blocs simulés, en secondes
+     */
+    public static long getBlockIntervalSeconds(CryptoType type) {
+        long defaultValue = type == CryptoType.BITCOIN ? 600L : 12L;
+        return getLongProperty("block." + type.name().toLowerCase() + ".intervalSeconds", defaultValue);
+    }
+    
+    /**
+     * Retourne la capacité d'un bloc simulé: octets pour Bitcoin, gas pour Ethereum
+     */
+    public static long getBlockCapacity(CryptoType type) {
+        long defaultValue = type == CryptoType.BITCOIN ? 1_000_000L : 30_000_000L;
+        return getLongProperty("block." + type.name().toLowerCase() + ".capacity", defaultValue);
+    }
+    
+    /**
+     * Retourne le nombre maximum de transactions gardées dans le mempool
+     */
+    public static long getMempoolMaxEntries() {
+        return getLongProperty("mempool.maxEntries", 500_000L);
+    }
+    
+    /**
+     * Retourne la mémoire maximale (octets estimés) occupée par le mempool
+     */
+    public static long getMempoolMaxBytes() {
+        return getLongProperty("mempool.maxBytes", 300L * 1024 * 1024);
+    }
+    
+    /**
+     * Retourne la demi-vie, en secondes, du plancher de frais relevé par les évictions
+     */
+    public static long getMempoolMinFeeHalfLifeSeconds() {
+        return getLongProperty("mempool.minFeeHalfLifeSeconds", 12L * 3600);
+    }
+    
+    /**
+     * Retourne le chemin du snapshot du mempool
+     */
+    public static String getMempoolSnapshotFile() {
+        return getProperty("mempool.snapshotFile", "data/mempool.snapshot");
+    }
+    
+    /**
+     * Retourne l'intervalle d'écriture du snapshot du mempool, en secondes
+     */
+    public static long getMempoolSnapshotIntervalSeconds() {
+        return getLongProperty("mempool.snapshotIntervalSeconds", 60L);
+    }
+    
+    /**
+     * Retourne la graine du générateur de transactions synthétiques
+     */
+    public static long getSyntheticSeed() {
+        return getLongProperty("synthetic.seed", 42L);
+    }
+    
+    /**
+     * Retourne la distribution des taux de frais des transactions synthétiques
+     */
+    public static FeeDistribution getSyntheticDistribution() {
+        String value = getProperty("synthetic.distribution", FeeDistribution.LOG_NORMAL.name());
+        try {
+            return FeeDistribution.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Valeur invalide pour synthetic.distribution: " + value + " - Utilisation de la valeur par défaut: LOG_NORMAL");
+            return FeeDistribution.LOG_NORMAL;
+        }
+    }
+    
+    /**
+     * Retourne le nombre de transactions synthétiques ajoutées à chaque consultation du mempool
+     */
+    public static int getSyntheticBatchSize() {
+        return (int) getLongProperty("synthetic.batchSize", 15L);
+    }
+    
+    /**
+     * Retourne le nombre de tirages de l'estimation Monte Carlo des délais de confirmation
+     */
+    public static int getEstimatorTrials() {
+        return (int) getLongProperty("estimator.trials", 10_000L);
+    }
+    
+    /**
+     * Retourne la graine de l'estimation Monte Carlo; 0 pour une graine aléatoire
+     */
+    public static long getEstimatorSeed() {
+        return getLongProperty("estimator.seed", 0L);
+    }
+    
+    /**
+     * Lit une propriété numérique, avec repli sur la valeur par défaut si elle est invalide
+     */
+    private static long getLongProperty(String key, long defaultValue) {
+        String value = getProperty(key, String.valueOf(defaultValue));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Valeur invalide pour " + key + ": " + value + " - Utilisation de la valeur par défaut: " + defaultValue);
+            return defaultValue;
+        }
+    }
 }
\ No newline at end of file
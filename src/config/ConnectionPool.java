@@ -0,0 +1,469 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import util.LoggerProvider;
+
+/**
+ * Pool borné de connexions JDBC.
+ *
+ * Au plus {@code maxConnections} connexions physiques existent à la fois: un
+ * emprunt prend la connexion inactive la plus récemment rendue, en ouvre une
+ * nouvelle s'il n'y en a pas, ou attend qu'une soit rendue pendant au plus
+ * {@code connectionTimeout} ms. La connexion remise à l'appelant est une
+ * enveloppe dont {@code close()} rend la connexion physique au pool, après
+ * annulation de toute transaction restée ouverte.
+ *
+ * Une connexion restée inactive plus d'une demi-seconde est validée avant
+ * d'être prêtée. Une tâche de fond ferme les connexions inactives depuis plus de
+ * {@code idleTimeout} ms et signale, avec la pile de l'emprunt, celles gardées
+ * plus de {@code leakDetectionThreshold} ms (0 désactive la détection).
+ *
+ * Chaque connexion physique garde ses {@code statementCacheSize} dernières
+ * instructions préparées ({@link StatementCache}, 0 le désactive): une requête
+ * déjà préparée sur la connexion n'est pas préparée à nouveau par les emprunts
+ * suivants.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(ConnectionPool.class.getName());
+	// En deçà, une connexion rendue est prêtée sans aller-retour de validation
+	private static final long VALIDATION_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	private static final long MIN_HOUSEKEEPING_MILLIS = 1_000L;
+
+	private final String url;
+	private final Properties connectionProperties;
+	private final int maxConnections;
+	private final int statementCacheSize;
+	private final long connectionTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakThresholdMillis;
+
+	// Un permis par connexion prêtée: borne le nombre total de connexions physiques
+	private final Semaphore permits;
+	// Connexions inactives, la plus récemment rendue en tête (gardé par lui-même)
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService housekeeper;
+	private volatile boolean closed;
+
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	private final AtomicLong validationFailureCount = new AtomicLong();
+	private final AtomicLong leakCount = new AtomicLong();
+	private final AtomicLong statementHitCount = new AtomicLong();
+	private final AtomicLong statementMissCount = new AtomicLong();
+
+	/**
+	 * @param connectionProperties propriétés passées au driver (user, password et
+	 *        options propres au driver)
+	 */
+	public ConnectionPool(String url, Properties connectionProperties, int maxConnections, int statementCacheSize,
+			long connectionTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+		if (maxConnections <= 0 || statementCacheSize < 0 || connectionTimeoutMillis < 0 || idleTimeoutMillis <= 0
+				|| leakThresholdMillis < 0) {
+			throw new IllegalArgumentException("Paramètres du pool de connexions invalides");
+		}
+		this.url = url;
+		this.connectionProperties = connectionProperties;
+		this.maxConnections = maxConnections;
+		this.statementCacheSize = statementCacheSize;
+		this.connectionTimeoutMillis = connectionTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.permits = new Semaphore(maxConnections, true);
+
+		long period = leakThresholdMillis > 0 ? Math.min(idleTimeoutMillis, leakThresholdMillis) : idleTimeoutMillis;
+		period = Math.max(MIN_HOUSEKEEPING_MILLIS, period / 2);
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-housekeeper");
+			t.setDaemon(true);
+			return t;
+		});
+		housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Emprunte une connexion; l'appelant la rend par {@code close()}.
+	 *
+	 * @throws SQLTransientConnectionException si aucune connexion ne se libère à temps
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Pool de connexions fermé");
+		}
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLTransientConnectionException("Aucune connexion disponible après " + connectionTimeoutMillis
+						+ " ms (" + borrowed.size() + "/" + maxConnections + " prêtées)");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Attente d'une connexion interrompue", e);
+		}
+		recordWait(System.nanoTime() - start);
+
+		try {
+			PooledConnection pc = takeValidIdle();
+			if (pc == null) {
+				pc = new PooledConnection(DriverManager.getConnection(url, connectionProperties));
+				createdCount.incrementAndGet();
+			}
+			pc.borrowedAt = System.nanoTime();
+			pc.borrowStack = leakThresholdMillis > 0 ? new Throwable("Emprunt de la connexion") : null;
+			pc.leakReported = false;
+			borrowed.add(pc);
+			return pc.newHandle();
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Instantané des compteurs du pool.
+	 */
+	public Stats getStats() {
+		int idleCount;
+		synchronized (idle) {
+			idleCount = idle.size();
+		}
+		long borrows = borrowCount.get();
+		return new Stats(borrowed.size(), idleCount, maxConnections, borrows,
+				borrows == 0 ? 0d : totalWaitNanos.get() / 1e6 / borrows, maxWaitNanos.get() / 1e6,
+				timeoutCount.get(), createdCount.get(), evictedCount.get(), validationFailureCount.get(), leakCount.get(),
+				statementHitCount.get(), statementMissCount.get());
+	}
+
+	/**
+	 * Ferme les connexions inactives; les connexions prêtées seront fermées à leur retour.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		List<PooledConnection> toClose;
+		synchronized (idle) {
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+		}
+		for (PooledConnection pc : toClose) {
+			destroy(pc);
+		}
+	}
+
+	private void recordWait(long nanos) {
+		borrowCount.incrementAndGet();
+		totalWaitNanos.addAndGet(nanos);
+		long max;
+		do {
+			max = maxWaitNanos.get();
+		} while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos));
+	}
+
+	/**
+	 * Connexion inactive la plus récente, validée si elle dort depuis un moment;
+	 * null s'il faut en ouvrir une.
+	 */
+	private PooledConnection takeValidIdle() {
+		while (true) {
+			PooledConnection pc;
+			synchronized (idle) {
+				pc = idle.pollFirst();
+			}
+			if (pc == null) {
+				return null;
+			}
+			if (System.nanoTime() - pc.lastReturned < VALIDATION_GRACE_NANOS || isValid(pc)) {
+				return pc;
+			}
+			validationFailureCount.incrementAndGet();
+			destroy(pc);
+		}
+	}
+
+	private static boolean isValid(PooledConnection pc) {
+		try {
+			return pc.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Retour d'une connexion: instructions rendues au cache, transaction annulée, auto-commit rétabli, puis
+	 * remise en tête des inactives (ou fermeture si elle est inutilisable).
+	 */
+	private void release(PooledConnection pc) {
+		borrowed.remove(pc);
+		if (pc.statements != null) {
+			pc.statements.releaseAll();
+		}
+		boolean reusable = !closed && !pc.broken;
+		if (reusable) {
+			try {
+				if (pc.physical.isClosed()) {
+					reusable = false;
+				} else {
+					if (!pc.physical.getAutoCommit()) {
+						pc.physical.rollback();
+						pc.physical.setAutoCommit(true);
+					}
+					pc.physical.clearWarnings();
+				}
+			} catch (SQLException e) {
+				reusable = false;
+			}
+		}
+		if (reusable) {
+			pc.lastReturned = System.nanoTime();
+			synchronized (idle) {
+				idle.addFirst(pc);
+			}
+		} else {
+			destroy(pc);
+		}
+		permits.release();
+	}
+
+	private void destroy(PooledConnection pc) {
+		try {
+			pc.physical.close();
+		} catch (SQLException e) {
+			LOGGER.fine("Fermeture d'une connexion du pool: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Tâche de fond: éviction des connexions inactives trop anciennes et
+	 * signalement des connexions gardées trop longtemps.
+	 */
+	private void housekeep() {
+		long now = System.nanoTime();
+		List<PooledConnection> expired = new ArrayList<>();
+		synchronized (idle) {
+			Iterator<PooledConnection> it = idle.descendingIterator();
+			while (it.hasNext()) {
+				PooledConnection pc = it.next();
+				if (now - pc.lastReturned < TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+					break;
+				}
+				it.remove();
+				expired.add(pc);
+			}
+		}
+		for (PooledConnection pc : expired) {
+			destroy(pc);
+			evictedCount.incrementAndGet();
+		}
+
+		if (leakThresholdMillis > 0) {
+			for (PooledConnection pc : borrowed) {
+				long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - pc.borrowedAt);
+				if (!pc.leakReported && heldMillis > leakThresholdMillis) {
+					pc.leakReported = true;
+					leakCount.incrementAndGet();
+					LOGGER.log(Level.WARNING, "Fuite de connexion probable: empruntée depuis " + heldMillis + " ms",
+							pc.borrowStack);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Connexion physique et son état dans le pool.
+	 */
+	private final class PooledConnection {
+		final Connection physical;
+		final StatementCache statements;
+		volatile long lastReturned;
+		volatile long borrowedAt;
+		volatile Throwable borrowStack;
+		volatile boolean leakReported;
+		volatile boolean broken;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.statements = statementCacheSize > 0
+					? new StatementCache(statementCacheSize, statementHitCount, statementMissCount)
+					: null;
+		}
+
+		// Classe SQLState 08: connexion rompue, à ne pas remettre dans le pool
+		void checkBroken(SQLException e) {
+			if (e.getSQLState() != null && e.getSQLState().startsWith("08")) {
+				broken = true;
+			}
+		}
+
+		/**
+		 * Nouvelle enveloppe pour un emprunt: une fois fermée, elle ne donne plus
+		 * accès à la connexion physique, même après un nouveau prêt de celle-ci.
+		 */
+		Connection newHandle() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Handle(this));
+		}
+	}
+
+	private final class Handle implements InvocationHandler {
+		private final PooledConnection owner;
+		private boolean handleClosed;
+
+		Handle(PooledConnection owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					synchronized (this) {
+						if (handleClosed) {
+							return null;
+						}
+						handleClosed = true;
+					}
+					release(owner);
+					return null;
+				case "isClosed":
+					synchronized (this) {
+						return handleClosed || owner.physical.isClosed();
+					}
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "ConnectionPool.Handle[" + owner.physical + "]";
+				default:
+					break;
+			}
+			synchronized (this) {
+				if (handleClosed) {
+					throw new SQLException("Connexion déjà rendue au pool");
+				}
+			}
+			try {
+				if (owner.statements != null && isCacheable(method, args)) {
+					return owner.statements.prepare(owner.physical, (Connection) proxy, (String) args[0],
+							owner::checkBroken);
+				}
+				return method.invoke(owner.physical, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SQLException) {
+					owner.checkBroken((SQLException) cause);
+				}
+				throw cause;
+			} catch (SQLException e) {
+				owner.checkBroken(e);
+				throw e;
+			}
+		}
+
+		/**
+		 * {@code prepareStatement(sql)}, ou avec les options de résultat par défaut
+		 * (en avant seulement, lecture seule).
+		 */
+		private boolean isCacheable(Method method, Object[] args) {
+			if (!method.getName().equals("prepareStatement")) {
+				return false;
+			}
+			Class<?>[] types = method.getParameterTypes();
+			return types.length == 1
+					|| (types.length == 3 && types[1] == int.class && types[2] == int.class
+						&& (Integer) args[1] == ResultSet.TYPE_FORWARD_ONLY
+						&& (Integer) args[2] == ResultSet.CONCUR_READ_ONLY);
+		}
+	}
+
+	/**
+	 * Compteurs du pool: connexions prêtées et inactives, attentes à l'emprunt.
+	 */
+	public static class Stats {
+		private final int active;
+		private final int idle;
+		private final int maxConnections;
+		private final long borrowCount;
+		private final double averageWaitMillis;
+		private final double maxWaitMillis;
+		private final long timeoutCount;
+		private final long createdCount;
+		private final long evictedCount;
+		private final long validationFailureCount;
+		private final long leakCount;
+		private final long statementHitCount;
+		private final long statementMissCount;
+
+		public Stats(int active, int idle, int maxConnections, long borrowCount, double averageWaitMillis,
+				double maxWaitMillis, long timeoutCount, long createdCount, long evictedCount,
+				long validationFailureCount, long leakCount, long statementHitCount, long statementMissCount) {
+			this.active = active;
+			this.idle = idle;
+			this.maxConnections = maxConnections;
+			this.borrowCount = borrowCount;
+			this.averageWaitMillis = averageWaitMillis;
+			this.maxWaitMillis = maxWaitMillis;
+			this.timeoutCount = timeoutCount;
+			this.createdCount = createdCount;
+			this.evictedCount = evictedCount;
+			this.validationFailureCount = validationFailureCount;
+			this.leakCount = leakCount;
+			this.statementHitCount = statementHitCount;
+			this.statementMissCount = statementMissCount;
+		}
+
+		public int getActive() { return active; }
+		public int getIdle() { return idle; }
+		public int getMaxConnections() { return maxConnections; }
+		public long getBorrowCount() { return borrowCount; }
+		public double getAverageWaitMillis() { return averageWaitMillis; }
+		public double getMaxWaitMillis() { return maxWaitMillis; }
+		public long getTimeoutCount() { return timeoutCount; }
+		public long getCreatedCount() { return createdCount; }
+		public long getEvictedCount() { return evictedCount; }
+		public long getValidationFailureCount() { return validationFailureCount; }
+		public long getLeakCount() { return leakCount; }
+		public long getStatementHitCount() { return statementHitCount; }
+		public long getStatementMissCount() { return statementMissCount; }
+
+		@Override
+		public String toString() {
+			return String.format("actives=%d inactives=%d max=%d emprunts=%d attente moy=%.2fms max=%.2fms "
+					+ "timeouts=%d créées=%d évincées=%d invalides=%d fuites=%d instructions réutilisées=%d préparées=%d",
+					active, idle, maxConnections, borrowCount, averageWaitMillis, maxWaitMillis, timeoutCount,
+					createdCount, evictedCount, validationFailureCount, leakCount, statementHitCount,
+					statementMissCount);
+		}
+	}
+}
@@ -1,10 +1,11 @@
 package config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Properties;
 import java.util.logging.Logger;
+
+import config.migration.SchemaMigrator;
 import util.LoggerProvider;
 
 
@@ -16,6 +17,8 @@ public class Database {
 	private final String url;
 	private final String user;
 	private final String password;
+	private final DatabaseDialect dialect;
+	private final ConnectionPool pool;
 	private volatile boolean initialized;
 
 	private Database() {
@@ -25,6 +28,28 @@ public class Database {
 		
 		// Détecte automatiquement le type de base de données et charge le driver approprié
 		loadDatabaseDriver();
+		this.dialect = url.contains("postgresql") ? DatabaseDialect.POSTGRESQL
+				: url.contains("h2") ? DatabaseDialect.H2
+				: url.contains("mysql") ? DatabaseDialect.MYSQL
+				: DatabaseDialect.OTHER;
+		this.pool = new ConnectionPool(url, connectionProperties(), ConfigManager.getMaxConnections(),
+				ConfigManager.getStatementCacheSize(), ConfigManager.getConnectionTimeout(),
+				ConfigManager.getConnectionIdleTimeout(), ConfigManager.getLeakDetectionThreshold());
+	}
+
+	/**
+	 * Propriétés de connexion: identifiants et, pour PostgreSQL, le nombre
+	 * d'exécutions d'une instruction après lequel le driver la prépare côté
+	 * serveur (le plan est alors réutilisé au lieu d'être recalculé).
+	 */
+	private Properties connectionProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("user", user);
+		properties.setProperty("password", password);
+		if (dialect == DatabaseDialect.POSTGRESQL) {
+			properties.setProperty("prepareThreshold", String.valueOf(ConfigManager.getPrepareThreshold()));
+		}
+		return properties;
 	}
 	
 	
@@ -55,9 +80,16 @@ public class Database {
 		return INSTANCE;
 	}
 
+	public DatabaseDialect getDialect() {
+		return dialect;
+	}
+
+	/**
+	 * Emprunte une connexion au pool; {@code close()} la lui rend.
+	 */
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(url, user, password);
+			return pool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.severe("Erreur connexion DB: " + e.getMessage());
 			throw e;
@@ -65,48 +97,38 @@ public class Database {
 	}
 
 	
+	/**
+	 * Met le schéma à jour par les migrations versionnées; sans DDL si le schéma
+	 * est déjà à la dernière version.
+	 */
 	public synchronized void init() {
 		if (initialized) {
 			return;
 		}
-		final String createWallets =
-			"CREATE TABLE IF NOT EXISTS wallets (" +
-			"pk BIGSERIAL PRIMARY KEY, " +
-			"id VARCHAR(64) UNIQUE NOT NULL, " +
-			"type VARCHAR(32) NOT NULL, " +
-			"address VARCHAR(128) NOT NULL, " +
-			"balance NUMERIC(38, 18) NOT NULL DEFAULT 0, " +
-			"created_at TIMESTAMP NOT NULL" +
-			")";
-
-		final String createTransactions =
-			"CREATE TABLE IF NOT EXISTS transactions (" +
-			"pk BIGSERIAL PRIMARY KEY, " +
-			"id VARCHAR(64) UNIQUE NOT NULL, " +
-			"from_address VARCHAR(128) NOT NULL, " +
-			"to_address VARCHAR(128) NOT NULL, " +
-			"amount NUMERIC(38, 18) NOT NULL, " +
-			"fee_priority VARCHAR(32) NOT NULL, " +
-			"fee_amount NUMERIC(38, 18) NOT NULL, " +
-			"status VARCHAR(32) NOT NULL, " +
-			"created_at TIMESTAMP NOT NULL, " +
-			"wallet_id VARCHAR(64) NOT NULL REFERENCES wallets(id)" +
-			")";
-
 		try (Connection c = getConnection()) {
-			try (PreparedStatement ps = c.prepareStatement(createWallets)) {
-				ps.execute();
-			}
-			try (PreparedStatement ps = c.prepareStatement(createTransactions)) {
-				ps.execute();
-			}
+			int version = new SchemaMigrator(dialect).migrate(c);
 			initialized = true;
-			LOGGER.info("Schéma DB initialisé");
+			LOGGER.info("Schéma DB initialisé (version " + version + ")");
 		} catch (SQLException e) {
 			LOGGER.severe("Echec d'initialisation du schéma: " + e.getMessage());
 		}
 	}
 
+	/**
+	 * Compteurs du pool de connexions (prêtées, inactives, attentes).
+	 */
+	public ConnectionPool.Stats getPoolStats() {
+		return pool.getStats();
+	}
+
+	/**
+	 * Ferme le pool de connexions, en fin d'application.
+	 */
+	public void close() {
+		LOGGER.info("Pool de connexions: " + pool.getStats());
+		pool.close();
+	}
+
 	/**
 	 * Vérifie rapidement l'accès à la base.
 	 */
@@ -0,0 +1,11 @@
+package config;
+
+/**
+ * Famille de SGBD déduite de l'URL JDBC, pour les requêtes qui en dépendent.
+ */
+public enum DatabaseDialect {
+	POSTGRESQL,
+	H2,
+	MYSQL,
+	OTHER
+}
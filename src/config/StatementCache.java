@@ -0,0 +1,248 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import util.LoggerProvider;
+
+/**
+ * Instructions préparées d'une connexion physique du pool, réutilisées d'un
+ * emprunt à l'autre.
+ *
+ * {@code prepareStatement(sql)} rend l'instruction déjà préparée pour ce texte
+ * s'il y en a une, enveloppée: sa fermeture la remet dans le cache, paramètres
+ * effacés, au lieu de la fermer. Au plus {@code maxSize} instructions sont
+ * gardées; la moins récemment utilisée est fermée au-delà. Si l'instruction
+ * est déjà utilisée (même requête préparée deux fois à la fois), une
+ * instruction ordinaire, non gardée, est préparée.
+ *
+ * Le retour de la connexion au pool rend toutes les instructions: une
+ * enveloppe non fermée par son emprunteur devient inutilisable.
+ */
+final class StatementCache {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(StatementCache.class.getName());
+
+	private final int maxSize;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+	// Ordre d'accès: la moins récemment utilisée en tête (gardé par this)
+	private final LinkedHashMap<String, Entry> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+	StatementCache(int maxSize, AtomicLong hitCount, AtomicLong missCount) {
+		this.maxSize = maxSize;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+	}
+
+	/**
+	 * @param handle connexion de l'emprunteur, rendue par {@code getConnection()}
+	 * @param onError appelé pour toute erreur SQL levée par l'instruction
+	 */
+	PreparedStatement prepare(Connection physical, Connection handle, String sql, ErrorListener onError)
+			throws SQLException {
+		StatementHandle current;
+		synchronized (this) {
+			Entry entry = statements.get(sql);
+			if (entry != null) {
+				if (entry.current != null) {
+					return physical.prepareStatement(sql);
+				}
+				hitCount.incrementAndGet();
+				current = claim(entry, handle, onError);
+			} else {
+				current = null;
+			}
+		}
+		if (current == null) {
+			missCount.incrementAndGet();
+			Entry entry = new Entry(sql, physical.prepareStatement(sql));
+			List<Entry> evicted;
+			synchronized (this) {
+				if (statements.containsKey(sql)) {
+					// Préparée entre-temps par un autre appel: celle-ci reste ordinaire
+					return entry.physical;
+				}
+				statements.put(sql, entry);
+				current = claim(entry, handle, onError);
+				evicted = evictOverflow();
+			}
+			for (Entry e : evicted) {
+				closeQuietly(e);
+			}
+		}
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, current);
+	}
+
+	private StatementHandle claim(Entry entry, Connection handle, ErrorListener onError) {
+		entry.current = new StatementHandle(entry, handle, onError);
+		return entry.current;
+	}
+
+	/**
+	 * Rend les instructions encore utilisées, au retour de la connexion.
+	 */
+	void releaseAll() {
+		List<Entry> used = new ArrayList<>();
+		synchronized (this) {
+			for (Entry e : statements.values()) {
+				if (e.current != null) {
+					e.current.closed = true;
+					used.add(e);
+				}
+			}
+		}
+		for (Entry e : used) {
+			giveBack(e);
+		}
+	}
+
+	private void giveBack(Entry entry) {
+		boolean reusable;
+		try {
+			entry.physical.clearParameters();
+			// Un lot interrompu par une erreur ne doit pas partir avec le suivant
+			entry.physical.clearBatch();
+			entry.physical.clearWarnings();
+			if (entry.physical.getFetchSize() != entry.fetchSize) {
+				entry.physical.setFetchSize(entry.fetchSize);
+			}
+			if (entry.physical.getMaxRows() != 0) {
+				entry.physical.setMaxRows(0);
+			}
+			if (entry.physical.getQueryTimeout() != 0) {
+				entry.physical.setQueryTimeout(0);
+			}
+			reusable = true;
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		synchronized (this) {
+			entry.current = null;
+			if (!reusable || entry.evicted) {
+				statements.remove(entry.sql, entry);
+				reusable = false;
+			}
+		}
+		if (!reusable) {
+			closeQuietly(entry);
+		}
+	}
+
+	/**
+	 * Retire les instructions au-delà de {@code maxSize}: celles qui sont libres
+	 * sont à fermer, les autres le seront à leur retour.
+	 */
+	private List<Entry> evictOverflow() {
+		List<Entry> toClose = new ArrayList<>();
+		Iterator<Map.Entry<String, Entry>> it = statements.entrySet().iterator();
+		while (statements.size() > maxSize && it.hasNext()) {
+			Entry e = it.next().getValue();
+			it.remove();
+			if (e.current == null) {
+				toClose.add(e);
+			} else {
+				e.evicted = true;
+			}
+		}
+		return toClose;
+	}
+
+	private static void closeQuietly(Entry entry) {
+		try {
+			entry.physical.close();
+		} catch (SQLException e) {
+			LOGGER.fine("Fermeture d'une instruction du cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Erreur SQL d'une instruction, pour que le pool reconnaisse une connexion rompue.
+	 */
+	@FunctionalInterface
+	interface ErrorListener {
+		void onError(SQLException e);
+	}
+
+	/**
+	 * Instruction préparée gardée et l'enveloppe qui l'utilise (null si libre).
+	 */
+	private static final class Entry {
+		final String sql;
+		final PreparedStatement physical;
+		final int fetchSize;
+		StatementHandle current;
+		boolean evicted;
+
+		Entry(String sql, PreparedStatement physical) throws SQLException {
+			this.sql = sql;
+			this.physical = physical;
+			this.fetchSize = physical.getFetchSize();
+		}
+	}
+
+	private final class StatementHandle implements InvocationHandler {
+		private final Entry entry;
+		private final Connection connection;
+		private final ErrorListener onError;
+		// Écrit sous le verrou du cache à la libération de la connexion
+		private volatile boolean closed;
+
+		StatementHandle(Entry entry, Connection connection, ErrorListener onError) {
+			this.entry = entry;
+			this.connection = connection;
+			this.onError = onError;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					synchronized (StatementCache.this) {
+						if (closed) {
+							return null;
+						}
+						closed = true;
+					}
+					giveBack(entry);
+					return null;
+				case "isClosed":
+					return closed || entry.physical.isClosed();
+				case "getConnection":
+					return connection;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "StatementCache.Handle[" + entry.sql + "]";
+				default:
+					break;
+			}
+			if (closed) {
+				throw new SQLException("Instruction déjà fermée");
+			}
+			try {
+				return method.invoke(entry.physical, args);
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof SQLException) {
+					onError.onError((SQLException) e.getCause());
+				}
+				throw e.getCause();
+			}
+		}
+	}
+}
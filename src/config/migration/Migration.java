@@ -0,0 +1,44 @@
+package config.migration;
+
+import java.util.Collections;
+import java.util.List;
+
+import config.DatabaseDialect;
+
+/**
+ * Étape numérotée du schéma: les requêtes DDL qui font passer la base de la
+ * version précédente à {@code version}. Une fois publiée, une migration n'est
+ * plus modifiée; tout changement passe par une nouvelle version.
+ */
+public final class Migration {
+
+	private final int version;
+	private final String description;
+	private final List<String> statements;
+	// Variante PostgreSQL (index partiels...), null si identique
+	private final List<String> postgresStatements;
+
+	public Migration(int version, String description, List<String> statements, List<String> postgresStatements) {
+		if (version <= 0 || statements == null || statements.isEmpty()) {
+			throw new IllegalArgumentException("Migration invalide: " + version);
+		}
+		this.version = version;
+		this.description = description;
+		this.statements = Collections.unmodifiableList(statements);
+		this.postgresStatements = postgresStatements == null ? null : Collections.unmodifiableList(postgresStatements);
+	}
+
+	public Migration(int version, String description, List<String> statements) {
+		this(version, description, statements, null);
+	}
+
+	public int getVersion() { return version; }
+	public String getDescription() { return description; }
+
+	/**
+	 * Requêtes à exécuter pour le SGBD donné.
+	 */
+	public List<String> statementsFor(DatabaseDialect dialect) {
+		return dialect == DatabaseDialect.POSTGRESQL && postgresStatements != null ? postgresStatements : statements;
+	}
+}
@@ -0,0 +1,65 @@
+package config.migration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Liste ordonnée des migrations du schéma. Une nouvelle version s'ajoute en fin
+ * de liste; {@code sql/schema.sql} reflète l'état après la dernière.
+ */
+public final class Migrations {
+
+	private static final List<Migration> ALL = Collections.unmodifiableList(Arrays.asList(
+		new Migration(1, "Tables wallets et transactions", Arrays.asList(
+			"CREATE TABLE IF NOT EXISTS wallets (" +
+			"pk BIGSERIAL PRIMARY KEY, " +
+			"id VARCHAR(64) UNIQUE NOT NULL, " +
+			"type VARCHAR(32) NOT NULL, " +
+			"address VARCHAR(128) NOT NULL, " +
+			"balance NUMERIC(38, 18) NOT NULL DEFAULT 0, " +
+			"created_at TIMESTAMP NOT NULL" +
+			")",
+			"CREATE TABLE IF NOT EXISTS transactions (" +
+			"pk BIGSERIAL PRIMARY KEY, " +
+			"id VARCHAR(64) UNIQUE NOT NULL, " +
+			"from_address VARCHAR(128) NOT NULL, " +
+			"to_address VARCHAR(128) NOT NULL, " +
+			"amount NUMERIC(38, 18) NOT NULL, " +
+			"fee_priority VARCHAR(32) NOT NULL, " +
+			"fee_amount NUMERIC(38, 18) NOT NULL, " +
+			"status VARCHAR(32) NOT NULL, " +
+			"created_at TIMESTAMP NOT NULL, " +
+			"wallet_id VARCHAR(64) NOT NULL REFERENCES wallets(id)" +
+			")")),
+		// findByAddress, findByWalletId et findPending: plus de parcours séquentiel.
+		// Sur PostgreSQL, l'index des transactions en attente est partiel: il ne
+		// couvre que la petite fraction de lignes PENDING et reste compact.
+		new Migration(2, "Index des chemins chauds", Arrays.asList(
+			"CREATE INDEX IF NOT EXISTS idx_wallets_address ON wallets(address)",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_wallet_created ON transactions(wallet_id, created_at)",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_status_created ON transactions(status, created_at)",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_created ON transactions(created_at)"),
+			Arrays.asList(
+			"CREATE INDEX IF NOT EXISTS idx_wallets_address ON wallets(address)",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_wallet_created ON transactions(wallet_id, created_at)",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_pending ON transactions(created_at) WHERE status = 'PENDING'",
+			"CREATE INDEX IF NOT EXISTS idx_transactions_created ON transactions(created_at)")),
+		// Pagination par clé de l'historique: l'index porte tout l'ordre
+		// (created_at, pk) et remplace celui de la version 2
+		new Migration(3, "Index de pagination de l'historique", Arrays.asList(
+			"CREATE INDEX IF NOT EXISTS idx_transactions_wallet_created_pk ON transactions(wallet_id, created_at, pk)",
+			"DROP INDEX IF EXISTS idx_transactions_wallet_created"))
+	));
+
+	private Migrations() {
+	}
+
+	public static List<Migration> all() {
+		return ALL;
+	}
+
+	public static int latestVersion() {
+		return ALL.get(ALL.size() - 1).getVersion();
+	}
+}
@@ -0,0 +1,120 @@
+package config.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+
+import config.DatabaseDialect;
+import util.LoggerProvider;
+
+/**
+ * Applique les migrations manquantes et enregistre chaque version appliquée
+ * dans la table {@code schema_version}.
+ *
+ * Au démarrage, une seule requête lit la version courante: si le schéma est à
+ * jour, aucune requête DDL n'est exécutée. Sinon chaque migration manquante est
+ * appliquée dans sa propre transaction avec l'insertion de sa version (DDL
+ * transactionnel sur PostgreSQL; H2 valide chaque DDL, mais les requêtes sont
+ * idempotentes). Une base créée avant l'introduction des migrations, sans
+ * {@code schema_version}, reprend depuis la version 1 sans perte.
+ */
+public class SchemaMigrator {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(SchemaMigrator.class.getName());
+
+	private final DatabaseDialect dialect;
+	private final List<Migration> migrations;
+
+	public SchemaMigrator(DatabaseDialect dialect) {
+		this(dialect, Migrations.all());
+	}
+
+	public SchemaMigrator(DatabaseDialect dialect, List<Migration> migrations) {
+		for (int i = 1; i < migrations.size(); i++) {
+			if (migrations.get(i).getVersion() <= migrations.get(i - 1).getVersion()) {
+				throw new IllegalArgumentException("Migrations non ordonnées à la version " + migrations.get(i).getVersion());
+			}
+		}
+		this.dialect = dialect;
+		this.migrations = migrations;
+	}
+
+	/**
+	 * @return la version du schéma après migration
+	 */
+	public int migrate(Connection c) throws SQLException {
+		int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+		int current = currentVersion(c);
+		if (current >= latest) {
+			if (current > latest) {
+				LOGGER.warning("Schéma en version " + current + ", plus récente que l'application (" + latest + ")");
+			} else {
+				LOGGER.info("Schéma à jour (version " + current + ")");
+			}
+			return current;
+		}
+		if (current < 0) {
+			try (Statement st = c.createStatement()) {
+				st.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+					"version INTEGER PRIMARY KEY, " +
+					"description VARCHAR(200) NOT NULL, " +
+					"applied_at TIMESTAMP NOT NULL" +
+					")");
+			}
+			current = 0;
+		}
+		for (Migration m : migrations) {
+			if (m.getVersion() > current) {
+				apply(c, m);
+				current = m.getVersion();
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return la dernière version appliquée, 0 si aucune, -1 sans table schema_version
+	 */
+	private static int currentVersion(Connection c) {
+		try (Statement st = c.createStatement();
+			 ResultSet rs = st.executeQuery("SELECT MAX(version) FROM schema_version")) {
+			return rs.next() ? rs.getInt(1) : 0;
+		} catch (SQLException e) {
+			return -1;
+		}
+	}
+
+	private void apply(Connection c, Migration m) throws SQLException {
+		long start = System.nanoTime();
+		c.setAutoCommit(false);
+		try {
+			try (Statement st = c.createStatement()) {
+				for (String sql : m.statementsFor(dialect)) {
+					st.execute(sql);
+				}
+			}
+			try (PreparedStatement ps = c.prepareStatement(
+					"INSERT INTO schema_version(version, description, applied_at) VALUES (?, ?, ?)")) {
+				ps.setInt(1, m.getVersion());
+				ps.setString(2, m.getDescription());
+				ps.setTimestamp(3, Timestamp.from(Instant.now()));
+				ps.executeUpdate();
+			}
+			c.commit();
+		} catch (SQLException e) {
+			c.rollback();
+			throw new SQLException("Echec de la migration " + m.getVersion() + " (" + m.getDescription() + "): "
+				+ e.getMessage(), e.getSQLState(), e);
+		} finally {
+			c.setAutoCommit(true);
+		}
+		LOGGER.info(String.format("Migration %d appliquée: %s (%d ms)", m.getVersion(), m.getDescription(),
+			(System.nanoTime() - start) / 1_000_000));
+	}
+}
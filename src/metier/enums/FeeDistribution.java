@@ -0,0 +1,7 @@
+package metier.enums;
+
+public enum FeeDistribution {
+	UNIFORM,
+	LOG_NORMAL,
+	BURSTY
+}
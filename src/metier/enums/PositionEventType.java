@@ -0,0 +1,8 @@
+package metier.enums;
+
+public enum PositionEventType {
+	INSERTED,
+	RANK_CHANGED,
+	EVICTED,
+	CONFIRMED
+}
@@ -0,0 +1,50 @@
+package metier.model;
+
+import java.time.Instant;
+
+import metier.enums.CryptoType;
+import metier.enums.PositionEventType;
+
+/**
+ * Changement d'état d'une transaction suivie dans le mempool. La position est
+ * 1-based parmi les transactions de sa chaîne, -1 une fois la transaction sortie
+ * du mempool (évincée ou confirmée).
+ */
+public class PositionEvent {
+
+	private final String transactionId;
+	private final CryptoType cryptoType;
+	private final PositionEventType type;
+	private final int position;
+	private final int pendingCount;
+	private final Instant occurredAt;
+
+	public PositionEvent(String transactionId, CryptoType cryptoType, PositionEventType type, int position,
+			int pendingCount, Instant occurredAt) {
+		this.transactionId = transactionId;
+		this.cryptoType = cryptoType;
+		this.type = type;
+		this.position = position;
+		this.pendingCount = pendingCount;
+		this.occurredAt = occurredAt;
+	}
+
+	public String getTransactionId() { return transactionId; }
+	public CryptoType getCryptoType() { return cryptoType; }
+	public PositionEventType getType() { return type; }
+	public int getPosition() { return position; }
+	public int getPendingCount() { return pendingCount; }
+	public Instant getOccurredAt() { return occurredAt; }
+
+	/**
+	 * Vrai si la transaction a quitté le mempool: aucun événement ne suivra pour elle.
+	 */
+	public boolean isTerminal() {
+		return type == PositionEventType.EVICTED || type == PositionEventType.CONFIRMED;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + transactionId + (position > 0 ? " position " + position + "/" + pendingCount : "");
+	}
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
+import metier.enums.CryptoType;
 import metier.enums.FeePriority;
 import metier.enums.TransactionStatus;
 
@@ -18,8 +19,13 @@ public class Transaction {
 	private BigDecimal feeAmount;
 	private TransactionStatus status;
 	private final String walletId;
+	private final CryptoType cryptoType;
+	// Taille virtuelle (vbytes) pour Bitcoin, gas consommé pour Ethereum; 0 si inconnue
+	private long size;
+	// Transaction générée pour la simulation de charge, jamais persistée
+	private boolean synthetic;
 
-	public Transaction(String fromAddress, String toAddress, BigDecimal amount, FeePriority feePriority, String walletId) {
+	public Transaction(String fromAddress, String toAddress, BigDecimal amount, FeePriority feePriority, String walletId, CryptoType cryptoType) {
 		this.id = UUID.randomUUID().toString();
 		this.fromAddress = fromAddress;
 		this.toAddress = toAddress;
@@ -28,6 +34,22 @@ public class Transaction {
 		this.createdAt = Instant.now();
 		this.status = TransactionStatus.PENDING;
 		this.walletId = walletId;
+		this.cryptoType = cryptoType;
+	}
+
+	// Constructeur pour la reconstruction depuis la base de données ou un snapshot
+	public Transaction(String id, String fromAddress, String toAddress, BigDecimal amount, FeePriority feePriority,
+					   Instant createdAt, BigDecimal feeAmount, TransactionStatus status, String walletId, CryptoType cryptoType) {
+		this.id = id;
+		this.fromAddress = fromAddress;
+		this.toAddress = toAddress;
+		this.amount = amount;
+		this.feePriority = feePriority;
+		this.createdAt = createdAt;
+		this.feeAmount = feeAmount;
+		this.status = status;
+		this.walletId = walletId;
+		this.cryptoType = cryptoType;
 	}
 
 	public String getId() { return id; }
@@ -39,7 +61,12 @@ public class Transaction {
 	public BigDecimal getFeeAmount() { return feeAmount; }
 	public TransactionStatus getStatus() { return status; }
 	public String getWalletId() { return walletId; }
+	public CryptoType getCryptoType() { return cryptoType; }
+	public long getSize() { return size; }
+	public boolean isSynthetic() { return synthetic; }
 
 	public void setFeeAmount(BigDecimal feeAmount) { this.feeAmount = feeAmount; }
 	public void setStatus(TransactionStatus status) { this.status = status; }
+	public void setSize(long size) { this.size = size; }
+	public void setSynthetic(boolean synthetic) { this.synthetic = synthetic; }
 }
\ No newline at end of file
@@ -9,9 +9,14 @@ import metier.model.Wallet;
 
 public class BitcoinFeeCalculator implements FeeCalculator {
 
+	// Tailles pour 1 entrée et 2 sorties (destination + monnaie), selon le type d'adresse source
+	private static final long LEGACY_SIZE_BYTES = 226;
+	private static final long NESTED_SEGWIT_SIZE_VBYTES = 167;
+	private static final long SEGWIT_SIZE_VBYTES = 141;
+
 	@Override
 	public BigDecimal calculateFee(Transaction tx, Wallet wallet, FeePriority priority) {
-		int estimatedSizeBytes = 250; // taille moyenne simplifiée
+		long estimatedSizeBytes = estimateWeight(tx);
 		int satPerByte;
 		switch (priority) {
 			case ECONOMIQUE: satPerByte = 5; break;
@@ -19,10 +24,25 @@ public class BitcoinFeeCalculator implements FeeCalculator {
 			case RAPIDE: satPerByte = 60; break;
 			default: satPerByte = 10; break;
 		}
-		long sats = (long) estimatedSizeBytes * satPerByte;
+		long sats = estimatedSizeBytes * satPerByte;
 		// 1 BTC = 100_000_000 sats
 		return new BigDecimal(sats).divide(new BigDecimal(100_000_000));
 	}
+
+	@Override
+	public long estimateWeight(Transaction tx) {
+		if (tx.getSize() > 0) {
+			return tx.getSize();
+		}
+		String from = tx.getFromAddress();
+		if (from != null && from.startsWith("bc1")) {
+			return SEGWIT_SIZE_VBYTES;
+		}
+		if (from != null && from.startsWith("3")) {
+			return NESTED_SEGWIT_SIZE_VBYTES;
+		}
+		return LEGACY_SIZE_BYTES;
+	}
 }
 
 
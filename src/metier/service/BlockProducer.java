@@ -0,0 +1,216 @@
+package metier.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import config.ConfigManager;
+import metier.enums.CryptoType;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import repository.TransactionRepository;
+import util.LoggerProvider;
+
+/**
+ * Producteur de blocs simulé pour une chaîne: à intervalle régulier, retire du
+ * mempool les transactions les mieux payées qui tiennent dans la capacité d'un
+ * bloc (octets pour Bitcoin, gas pour Ethereum), les marque CONFIRMED en base
+ * et mesure leur latence d'inclusion réelle. Les transactions synthétiques,
+ * datées sur l'horloge simulée de leur générateur, sont incluses dans les blocs
+ * mais pas dans les latences ni dans le nombre de confirmations.
+ */
+public class BlockProducer {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(BlockProducer.class.getName());
+
+	private final MempoolService mempool;
+	private final TransactionRepository transactionRepository;
+	private final CryptoType chain;
+	private final Duration blockInterval;
+	private final long blockCapacity;
+	private final FeeCalculator feeCalculator;
+
+	private final AtomicLong height = new AtomicLong();
+	private final LongAdder confirmedCount = new LongAdder();
+	private final LongAdder totalLatencyMillis = new LongAdder();
+	private ScheduledExecutorService scheduler;
+
+	public BlockProducer(MempoolService mempool, TransactionRepository transactionRepository,
+						 CryptoType chain, Duration blockInterval, long blockCapacity) {
+		if (blockInterval.isZero() || blockInterval.isNegative()) {
+			throw new IllegalArgumentException("Intervalle de bloc invalide: " + blockInterval);
+		}
+		if (blockCapacity <= 0) {
+			throw new IllegalArgumentException("Capacité de bloc invalide: " + blockCapacity);
+		}
+		this.mempool = mempool;
+		this.transactionRepository = transactionRepository;
+		this.chain = chain;
+		this.blockInterval = blockInterval;
+		this.blockCapacity = blockCapacity;
+		this.feeCalculator = FeeCalculatorFactory.forType(chain);
+		mempool.registerBlockProducer(this);
+	}
+
+	/**
+	 * Crée un producteur avec l'intervalle et la capacité définis dans la configuration.
+	 */
+	public static BlockProducer forChain(MempoolService mempool, TransactionRepository transactionRepository, CryptoType chain) {
+		return new BlockProducer(mempool, transactionRepository, chain,
+				Duration.ofSeconds(ConfigManager.getBlockIntervalSeconds(chain)),
+				ConfigManager.getBlockCapacity(chain));
+	}
+
+	/**
+	 * Démarre la production périodique de blocs sur un thread démon.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "block-producer-" + chain.name().toLowerCase());
+			t.setDaemon(true);
+			return t;
+		});
+		long periodMillis = blockInterval.toMillis();
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				produceBlock();
+			} catch (RuntimeException e) {
+				LOGGER.severe("Erreur lors de la production d'un bloc " + chain + ": " + e.getMessage());
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		LOGGER.info("Production de blocs " + chain + " démarrée: intervalle=" + blockInterval + ", capacité=" + blockCapacity);
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Produit immédiatement un bloc à partir de l'état courant du mempool. Les
+	 * abonnés ne sont avertis de la confirmation qu'une fois les statuts écrits
+	 * en base; sinon le bloc est abandonné et ses transactions remises dans le
+	 * mempool telles qu'elles y étaient.
+	 */
+	public BlockReport produceBlock() {
+		Instant minedAt = Instant.now();
+		MempoolShard.PolledBlock polled = mempool.pollBlock(chain, blockCapacity);
+		List<Transaction> block = polled.getTransactions();
+
+		long totalWeight = 0;
+		BigDecimal totalFees = BigDecimal.ZERO;
+		long[] latencies = new long[block.size()];
+		List<String> confirmedIds = new ArrayList<>();
+		for (Transaction tx : block) {
+			if (!tx.isSynthetic()) {
+				latencies[confirmedIds.size()] = Math.max(0L, Duration.between(tx.getCreatedAt(), minedAt).toMillis());
+				confirmedIds.add(tx.getId());
+			}
+			totalWeight += feeCalculator.estimateWeight(tx);
+			totalFees = totalFees.add(tx.getFeeAmount());
+		}
+		latencies = Arrays.copyOf(latencies, confirmedIds.size());
+		// Un seul aller-retour par lot pour tout le bloc
+		if (!confirmedIds.isEmpty() && !transactionRepository.updateStatusAll(confirmedIds, TransactionStatus.CONFIRMED)) {
+			int restored = polled.restore();
+			LOGGER.severe(String.format("Bloc %s abandonné: statuts non écrits en base, %d/%d transactions remises"
+					+ " dans le mempool", chain, restored, block.size()));
+			return new BlockReport(height.get(), chain, minedAt, 0, 0L, BigDecimal.ZERO, new long[0]);
+		}
+		for (Transaction tx : block) {
+			tx.setStatus(TransactionStatus.CONFIRMED);
+		}
+		for (long latency : latencies) {
+			totalLatencyMillis.add(latency);
+		}
+		polled.confirm();
+		confirmedCount.add(latencies.length);
+
+		BlockReport report = new BlockReport(height.incrementAndGet(), chain, minedAt, block.size(),
+				totalWeight, totalFees, latencies);
+		LOGGER.info(String.format("Bloc %s #%d: %d transactions, poids=%d/%d, frais=%s, latence médiane=%ss",
+				chain, report.getHeight(), report.getTransactionCount(), totalWeight, blockCapacity,
+				totalFees, report.getMedianLatency().getSeconds()));
+		return report;
+	}
+
+	/**
+	 * Délai avant inclusion d'une transaction de poids {@code weight} précédée de
+	 * {@code weightAhead} dans le mempool, en nombre entier de blocs.
+	 */
+	public Duration estimateDelay(long weightAhead, long weight) {
+		long blocks = (weightAhead + weight + blockCapacity - 1) / blockCapacity;
+		return blockInterval.multipliedBy(Math.max(1L, blocks));
+	}
+
+	/**
+	 * Latence moyenne observée entre la création et l'inclusion dans un bloc,
+	 * transactions synthétiques exclues.
+	 */
+	public Duration getAverageInclusionLatency() {
+		long count = confirmedCount.sum();
+		return count == 0 ? Duration.ZERO : Duration.ofMillis(totalLatencyMillis.sum() / count);
+	}
+
+	public CryptoType getChain() { return chain; }
+	public Duration getBlockInterval() { return blockInterval; }
+	public long getBlockCapacity() { return blockCapacity; }
+	public long getHeight() { return height.get(); }
+	// Transactions non synthétiques confirmées
+	public long getConfirmedCount() { return confirmedCount.sum(); }
+
+	/**
+	 * Résumé d'un bloc produit; les latences ne portent que sur ses transactions
+	 * non synthétiques.
+	 */
+	public static class BlockReport {
+		private final long height;
+		private final CryptoType chain;
+		private final Instant minedAt;
+		private final int transactionCount;
+		private final long totalWeight;
+		private final BigDecimal totalFees;
+		private final long[] sortedLatenciesMillis;
+
+		BlockReport(long height, CryptoType chain, Instant minedAt, int transactionCount,
+					long totalWeight, BigDecimal totalFees, long[] latenciesMillis) {
+			this.height = height;
+			this.chain = chain;
+			this.minedAt = minedAt;
+			this.transactionCount = transactionCount;
+			this.totalWeight = totalWeight;
+			this.totalFees = totalFees;
+			this.sortedLatenciesMillis = latenciesMillis;
+			Arrays.sort(this.sortedLatenciesMillis);
+		}
+
+		public long getHeight() { return height; }
+		public CryptoType getChain() { return chain; }
+		public Instant getMinedAt() { return minedAt; }
+		public int getTransactionCount() { return transactionCount; }
+		public long getTotalWeight() { return totalWeight; }
+		public BigDecimal getTotalFees() { return totalFees; }
+
+		public Duration getMinLatency() { return latencyAt(0); }
+		public Duration getMedianLatency() { return latencyAt(sortedLatenciesMillis.length / 2); }
+		public Duration getMaxLatency() { return latencyAt(sortedLatenciesMillis.length - 1); }
+
+		private Duration latencyAt(int i) {
+			return sortedLatenciesMillis.length == 0 ? Duration.ZERO : Duration.ofMillis(sortedLatenciesMillis[i]);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package metier.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+import config.ConfigManager;
+import metier.enums.CryptoType;
+
+/**
+ * Estimation Monte Carlo du délai de confirmation d'une transaction hypothétique.
+ *
+ * Chaque tirage part de l'état courant du mempool (poids classé devant la
+ * transaction) et simule des blocs arrivant selon un processus de Poisson, de la
+ * capacité de la chaîne. Entre deux blocs, de nouvelles transactions mieux payées
+ * arrivent et passent devant: leur débit est le débit mesuré par le mempool,
+ * pondéré par la part du poids en attente qui paie plus que la transaction.
+ * Les tirages sont répartis sur un pool fork-join par paquets indépendants; les
+ * percentiles p50, p90 et p99 sont tirés de la distribution obtenue.
+ *
+ * Avec une graine non nulle, chaque paquet de tirages a sa propre graine dérivée
+ * de sa position: le résultat est identique quel que soit le nombre de threads.
+ */
+public class ConfirmationTimeEstimator {
+
+	// Horizon d'un tirage (deux semaines de blocs Bitcoin): au-delà, le délai
+	// retenu est celui atteint à l'horizon
+	private static final int MAX_BLOCKS = 2_016;
+	// Tirages par tâche fork-join
+	private static final int TRIALS_PER_TASK = 512;
+	// Au-delà de cette moyenne, la loi de Poisson est approchée par une loi normale
+	private static final double POISSON_NORMAL_THRESHOLD = 30d;
+
+	private final MempoolService mempool;
+	private final int trials;
+	private final long seed;
+	private final ForkJoinPool pool;
+
+	public ConfirmationTimeEstimator(MempoolService mempool) {
+		this(mempool, ConfigManager.getEstimatorTrials(), ConfigManager.getEstimatorSeed(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param seed graine fixe pour des résultats reproductibles, 0 pour une graine aléatoire
+	 */
+	public ConfirmationTimeEstimator(MempoolService mempool, int trials, long seed, ForkJoinPool pool) {
+		if (trials <= 0) {
+			throw new IllegalArgumentException("Nombre de tirages invalide: " + trials);
+		}
+		this.mempool = mempool;
+		this.trials = trials;
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	/**
+	 * Distribution du délai de confirmation d'une transaction de {@code chain}, de
+	 * poids {@code weight}, payant {@code fee}, soumise maintenant.
+	 */
+	public Estimate estimate(CryptoType chain, BigDecimal fee, long weight) {
+		double rate = MempoolIndex.feeRate(fee, weight);
+		long[] weights = mempool.computeWeightAheadAndTotal(chain, rate);
+		double fractionAbove = weights[1] == 0 ? 0d : (double) weights[0] / weights[1];
+
+		BlockProducer producer = mempool.producerFor(chain);
+		Duration interval = producer != null ? producer.getBlockInterval()
+				: Duration.ofSeconds(ConfigManager.getBlockIntervalSeconds(chain));
+		long capacity = producer != null ? producer.getBlockCapacity() : ConfigManager.getBlockCapacity(chain);
+
+		Scenario scenario = new Scenario(weights[0], weight, capacity, interval.toMillis(),
+				mempool.getArrivalRate(chain) * fractionAbove / 1000d, mempool.getMeanArrivalWeight(chain));
+		return run(scenario);
+	}
+
+	Estimate run(Scenario scenario) {
+		long baseSeed = seed != 0 ? seed : ThreadLocalRandom.current().nextLong();
+		long[] millis = new long[trials];
+		pool.invoke(new TrialTask(scenario, baseSeed, millis, 0, trials));
+		Arrays.sort(millis);
+		return new Estimate(trials, percentile(millis, 0.50), percentile(millis, 0.90), percentile(millis, 0.99));
+	}
+
+	private static Duration percentile(long[] sorted, double p) {
+		int i = (int) Math.ceil(p * sorted.length) - 1;
+		return Duration.ofMillis(sorted[Math.max(0, Math.min(sorted.length - 1, i))]);
+	}
+
+	/**
+	 * Paramètres d'une simulation, figés au moment de l'estimation.
+	 */
+	static final class Scenario {
+		final double weightAhead;
+		final long weight;
+		final long capacity;
+		final double meanIntervalMillis;
+		// Arrivées mieux payées par milliseconde, et leur poids moyen
+		final double competingPerMilli;
+		final double meanArrivalWeight;
+
+		Scenario(double weightAhead, long weight, long capacity, double meanIntervalMillis,
+				double competingPerMilli, double meanArrivalWeight) {
+			this.weightAhead = weightAhead;
+			this.weight = weight;
+			this.capacity = capacity;
+			this.meanIntervalMillis = meanIntervalMillis;
+			this.competingPerMilli = competingPerMilli;
+			this.meanArrivalWeight = meanArrivalWeight;
+		}
+
+		/**
+		 * Un tirage: délai en millisecondes jusqu'au bloc qui inclut la transaction.
+		 */
+		long simulate(SplittableRandom random) {
+			double ahead = weightAhead;
+			double elapsed = 0d;
+			for (int block = 0; block < MAX_BLOCKS; block++) {
+				double interval = exponential(random, meanIntervalMillis);
+				elapsed += interval;
+				if (competingPerMilli > 0d) {
+					ahead += poisson(random, competingPerMilli * interval) * meanArrivalWeight;
+				}
+				if (ahead + weight <= capacity) {
+					break;
+				}
+				ahead = Math.max(0d, ahead - capacity);
+			}
+			return (long) elapsed;
+		}
+	}
+
+	private static final class TrialTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Scenario scenario;
+		private final long baseSeed;
+		private final long[] out;
+		private final int from;
+		private final int to;
+
+		TrialTask(Scenario scenario, long baseSeed, long[] out, int from, int to) {
+			this.scenario = scenario;
+			this.baseSeed = baseSeed;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= TRIALS_PER_TASK) {
+				// Graine dérivée de la position du paquet, indépendante de l'ordonnancement
+				SplittableRandom random = new SplittableRandom(baseSeed + from * 0x9E3779B97F4A7C15L);
+				for (int i = from; i < to; i++) {
+					out[i] = scenario.simulate(random);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new TrialTask(scenario, baseSeed, out, from, mid),
+					new TrialTask(scenario, baseSeed, out, mid, to));
+		}
+	}
+
+	private static double exponential(SplittableRandom random, double mean) {
+		return -Math.log(1d - random.nextDouble()) * mean;
+	}
+
+	private static long poisson(SplittableRandom random, double mean) {
+		if (mean > POISSON_NORMAL_THRESHOLD) {
+			return Math.max(0L, Math.round(mean + Math.sqrt(mean) * gaussian(random)));
+		}
+		// Méthode de Knuth
+		double limit = Math.exp(-mean);
+		long k = 0;
+		double product = random.nextDouble();
+		while (product > limit) {
+			k++;
+			product *= random.nextDouble();
+		}
+		return k;
+	}
+
+	private static double gaussian(SplittableRandom random) {
+		// Box-Muller
+		double u = 1d - random.nextDouble();
+		return Math.sqrt(-2d * Math.log(u)) * Math.cos(2d * Math.PI * random.nextDouble());
+	}
+
+	/**
+	 * Percentiles du délai de confirmation.
+	 */
+	public static class Estimate {
+		private final int trials;
+		private final Duration p50;
+		private final Duration p90;
+		private final Duration p99;
+
+		public Estimate(int trials, Duration p50, Duration p90, Duration p99) {
+			this.trials = trials;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+		}
+
+		public int getTrials() { return trials; }
+		public Duration getP50() { return p50; }
+		public Duration getP90() { return p90; }
+		public Duration getP99() { return p99; }
+	}
+}
@@ -11,9 +11,11 @@ import metier.model.Wallet;
  */
 public class EthereumFeeCalculator implements FeeCalculator {
 
+	private static final long TRANSFER_GAS = 21_000; // simple transfert
+
 	@Override
 	public BigDecimal calculateFee(Transaction tx, Wallet wallet, FeePriority priority) {
-		long gasLimit = 21_000; // simple transfert
+		long gasLimit = estimateWeight(tx);
 		long gasPriceGwei;
 		switch (priority) {
 			case ECONOMIQUE: gasPriceGwei = 5; break;
@@ -26,6 +28,11 @@ public class EthereumFeeCalculator implements FeeCalculator {
 		BigDecimal priceInEth = new BigDecimal(gasPriceGwei).multiply(new BigDecimal("1e-9"));
 		return gas.multiply(priceInEth);
 	}
+
+	@Override
+	public long estimateWeight(Transaction tx) {
+		return tx.getSize() > 0 ? tx.getSize() : TRANSFER_GAS;
+	}
 }
 
 
@@ -11,6 +11,12 @@ import metier.model.Wallet;
  */
 public interface FeeCalculator {
 	BigDecimal calculateFee(Transaction tx, Wallet wallet, FeePriority priority);
+
+	/**
+	 * Poids de la transaction dans un bloc: vbytes pour Bitcoin, gas pour Ethereum.
+	 * Utilise {@link Transaction#getSize()} si elle est renseignée.
+	 */
+	long estimateWeight(Transaction tx);
 }
 
 
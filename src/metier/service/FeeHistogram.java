@@ -0,0 +1,111 @@
+package metier.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme des scores du mempool, en seaux logarithmiques (32 par décade)
+ * munis d'arbres de Fenwick pour les sommes cumulées. Répond en temps quasi
+ * constant à "combien de transactions (ou quel poids) passent devant tel taux",
+ * avec une interpolation à l'intérieur du seau concerné.
+ *
+ * Les mises à jour sont faites par l'index, sous le verrou du mempool; les
+ * lectures se font sans verrou et donnent une estimation.
+ */
+final class FeeHistogram {
+
+	private static final int BUCKETS_PER_DECADE = 32;
+	private static final int MIN_LOG10 = -13;
+	private static final int MAX_LOG10 = 1;
+	// Seau 0: sous le minimum; dernier seau: au-dessus du maximum
+	private static final int BUCKETS = (MAX_LOG10 - MIN_LOG10) * BUCKETS_PER_DECADE + 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray countTree = new AtomicLongArray(BUCKETS + 1);
+	private final AtomicLongArray weights = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray weightTree = new AtomicLongArray(BUCKETS + 1);
+
+	void add(MempoolIndex.Entry e) {
+		update(e, 1);
+	}
+
+	void remove(MempoolIndex.Entry e) {
+		update(e, -1);
+	}
+
+	void clear() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+			countTree.set(i + 1, 0);
+			weights.set(i, 0);
+			weightTree.set(i + 1, 0);
+		}
+	}
+
+	/**
+	 * Nombre estimé d'entrées dont le score dépasse {@code rate}.
+	 */
+	double countAbove(double rate) {
+		return above(counts, countTree, rate);
+	}
+
+	/**
+	 * Poids estimé des entrées dont le score dépasse {@code rate}.
+	 */
+	double weightAbove(double rate) {
+		return above(weights, weightTree, rate);
+	}
+
+	private void update(MempoolIndex.Entry e, int sign) {
+		int b = bucketOf(e.score);
+		add(counts, countTree, b, sign);
+		add(weights, weightTree, b, sign * e.weight);
+	}
+
+	private static void add(AtomicLongArray values, AtomicLongArray tree, int bucket, long delta) {
+		values.addAndGet(bucket, delta);
+		for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+			tree.addAndGet(i, delta);
+		}
+	}
+
+	private static double above(AtomicLongArray values, AtomicLongArray tree, double rate) {
+		int b = bucketOf(rate);
+		long strictlyAbove = prefix(tree, BUCKETS - 1) - prefix(tree, b);
+		return strictlyAbove + values.get(b) * fractionAbove(b, rate);
+	}
+
+	/**
+	 * Somme des seaux 0..bucket inclus.
+	 */
+	private static long prefix(AtomicLongArray tree, int bucket) {
+		long sum = 0;
+		for (int i = bucket + 1; i > 0; i -= i & -i) {
+			sum += tree.get(i);
+		}
+		return sum;
+	}
+
+	private static int bucketOf(double rate) {
+		if (!(rate > 0)) {
+			return 0;
+		}
+		double pos = (Math.log10(rate) - MIN_LOG10) * BUCKETS_PER_DECADE;
+		if (pos < 0) {
+			return 0;
+		}
+		return (int) Math.min(BUCKETS - 1, 1 + (long) pos);
+	}
+
+	/**
+	 * Part du seau située au-dessus de {@code rate}, en supposant les scores
+	 * uniformément répartis (en échelle log) dans le seau.
+	 */
+	private static double fractionAbove(int bucket, double rate) {
+		if (bucket == 0 || bucket == BUCKETS - 1) {
+			return 0.5;
+		}
+		double upper = MIN_LOG10 + (double) bucket / BUCKETS_PER_DECADE;
+		double fraction = (upper - Math.log10(rate)) * BUCKETS_PER_DECADE;
+		return Math.max(0d, Math.min(1d, fraction));
+	}
+}
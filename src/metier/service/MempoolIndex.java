@@ -0,0 +1,593 @@
+package metier.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import metier.enums.CryptoType;
+import metier.model.Transaction;
+
+/**
+ * Index ordonné du mempool: arbre de rang (treap) trié par score décroissant
+ * (taux de frais, éventuellement relevé par les descendants), puis date de
+ * création et id. Insertion, suppression et calcul de rang en O(log n).
+ * Un index ne contient que des transactions d'une même chaîne (voir
+ * {@link MempoolShard}). Chaque noeud agrège aussi le poids (octets ou gas) de
+ * son sous-arbre, pour savoir en O(log n) combien de place dans les blocs
+ * précède une entrée.
+ * Un {@link FeeHistogram} suit les mêmes insertions et suppressions pour les
+ * estimations sans verrou.
+ *
+ * Les transactions synthétiques (simulation de charge) sont rangées dans un
+ * second arbre: les requêtes combinent les deux en O(log n), et
+ * {@link #clearSynthetic()} les retire toutes en temps constant.
+ */
+class MempoolIndex {
+
+	/**
+	 * Ordre du mempool: score décroissant, puis plus ancienne d'abord, puis id.
+	 */
+	static final Comparator<Entry> ORDER = (a, b) -> {
+		int c = Double.compare(b.score, a.score);
+		if (c != 0) return c;
+		c = a.createdAt.compareTo(b.createdAt);
+		if (c != 0) return c;
+		return a.id.compareTo(b.id);
+	};
+
+	/**
+	 * Taux de frais (unité de crypto par vbyte ou par gas).
+	 */
+	static double feeRate(BigDecimal fee, long weight) {
+		return fee.doubleValue() / Math.max(1L, weight);
+	}
+
+	/**
+	 * Entrée indexée. Le score (clé de tri) ne doit être modifié, via
+	 * {@link #rescore()}, que lorsque l'entrée est hors de l'arbre.
+	 *
+	 * Le paquet d'une entrée regroupe l'entrée et tous ses descendants en attente
+	 * (transactions qui dépensent ses sorties): un enfant bien payé relève le score
+	 * de son parent (child-pays-for-parent).
+	 */
+	static final class Entry {
+		final Transaction tx;
+		final BigDecimal fee;
+		final Instant createdAt;
+		final String id;
+		final CryptoType chain;
+		final long weight;
+		final boolean synthetic;
+		// Empreinte mémoire estimée de l'entrée (objets + chaînes)
+		final long memoryBytes;
+
+		Entry parent;
+		List<Entry> children;
+		BigDecimal packageFee;
+		long packageWeight;
+		double score;
+
+		Entry(Transaction tx) {
+			this.tx = tx;
+			this.fee = tx.getFeeAmount();
+			this.createdAt = tx.getCreatedAt();
+			this.id = tx.getId();
+			this.chain = tx.getCryptoType();
+			this.weight = FeeCalculatorFactory.forType(chain).estimateWeight(tx);
+			this.synthetic = tx.isSynthetic();
+			this.memoryBytes = ENTRY_OVERHEAD_BYTES + 2L * (length(id) + length(tx.getFromAddress())
+					+ length(tx.getToAddress()) + length(tx.getWalletId()));
+			this.packageFee = fee;
+			this.packageWeight = weight;
+			rescore();
+		}
+
+		/**
+		 * Score = max(taux propre, taux du paquet avec descendants).
+		 */
+		void rescore() {
+			if (fee == null) {
+				score = 0d;
+				return;
+			}
+			score = Math.max(feeRate(fee, weight), feeRate(packageFee, packageWeight));
+		}
+
+		private static int length(String s) {
+			return s == null ? 0 : s.length();
+		}
+
+		void addChild(Entry child) {
+			if (children == null) {
+				children = new ArrayList<>(2);
+			}
+			children.add(child);
+		}
+	}
+
+	// Transaction, Entry, noeud de l'arbre, entrées des tables et BigDecimal
+	static final long ENTRY_OVERHEAD_BYTES = 400;
+
+	private static final class Node {
+		final Entry entry;
+		final int priority;
+		Node left;
+		Node right;
+		int size = 1;
+		long weight;
+
+		Node(Entry entry, int priority) {
+			this.entry = entry;
+			this.priority = priority;
+			this.weight = entry.weight;
+		}
+	}
+
+	private final Random random = new Random();
+	private final Tree regular = new Tree();
+	// Remplacé en bloc par clearSynthetic(); lu sans verrou par les estimations
+	private volatile Tree synthetic = new Tree();
+
+	public int size() {
+		return regular.size() + synthetic.size();
+	}
+
+	/**
+	 * Nombre de transactions synthétiques indexées.
+	 */
+	public int syntheticSize() {
+		return synthetic.size();
+	}
+
+	public void clear() {
+		regular.clear();
+		synthetic.clear();
+	}
+
+	/**
+	 * Retire d'un coup toutes les transactions synthétiques, en temps constant:
+	 * leur arbre et leur histogramme sont simplement remplacés.
+	 *
+	 * @return le nombre d'entrées retirées
+	 */
+	public int clearSynthetic() {
+		int removed = synthetic.size();
+		synthetic = new Tree();
+		return removed;
+	}
+
+	public void insert(Entry e) {
+		tree(e).insert(e);
+	}
+
+	/**
+	 * Construit l'index en O(n) à partir d'entrées déjà triées selon {@link #ORDER}.
+	 * L'index doit être vide.
+	 */
+	public void buildFromSorted(List<Entry> sorted) {
+		if (size() > 0) {
+			throw new IllegalStateException("L'index doit être vide");
+		}
+		List<Entry> regularEntries = new ArrayList<>(sorted.size());
+		List<Entry> syntheticEntries = new ArrayList<>();
+		for (Entry e : sorted) {
+			(e.synthetic ? syntheticEntries : regularEntries).add(e);
+		}
+		regular.buildFromSorted(regularEntries);
+		synthetic.buildFromSorted(syntheticEntries);
+	}
+
+	/**
+	 * Supprime l'entrée; retourne false si elle n'était pas indexée.
+	 */
+	public boolean remove(Entry e) {
+		return tree(e).remove(e);
+	}
+
+	/**
+	 * Entrée la moins bien classée, ou null si l'index est vide.
+	 */
+	public Entry last() {
+		Entry a = regular.last();
+		Entry b = synthetic.last();
+		if (a == null) return b;
+		if (b == null) return a;
+		return ORDER.compare(a, b) > 0 ? a : b;
+	}
+
+	/**
+	 * Rang 0-based de l'entrée, ou -1 si elle n'est pas indexée.
+	 */
+	public int rank(Entry e) {
+		int rank = tree(e).rank(e);
+		return rank < 0 ? -1 : rank + other(e).countBefore(e);
+	}
+
+	/**
+	 * Nombre d'entrées dont le score est strictement supérieur à {@code rate}.
+	 */
+	public int countScoreAbove(double rate) {
+		return regular.countScoreAbove(rate) + synthetic.countScoreAbove(rate);
+	}
+
+	/**
+	 * Poids cumulé des entrées classées avant {@code e}, ou -1 si l'entrée
+	 * n'est pas indexée.
+	 */
+	public long weightAbove(Entry e) {
+		long weight = tree(e).weightAbove(e);
+		return weight < 0 ? -1 : weight + other(e).weightBefore(e);
+	}
+
+	/**
+	 * Poids cumulé des entrées dont le score est strictement supérieur à {@code rate}.
+	 */
+	public long weightScoreAbove(double rate) {
+		return regular.weightScoreAbove(rate) + synthetic.weightScoreAbove(rate);
+	}
+
+	/**
+	 * Poids cumulé de toutes les entrées.
+	 */
+	public long totalWeight() {
+		return weight(regular.root) + weight(synthetic.root);
+	}
+
+	/**
+	 * Nombre estimé, via les histogrammes et sans verrou, d'entrées dont le score
+	 * dépasse {@code rate}.
+	 */
+	public double estimateCountAbove(double rate) {
+		return regular.histogram.countAbove(rate) + synthetic.histogram.countAbove(rate);
+	}
+
+	/**
+	 * Poids estimé, via les histogrammes et sans verrou, des entrées dont le
+	 * score dépasse {@code rate}.
+	 */
+	public double estimateWeightAbove(double rate) {
+		return regular.histogram.weightAbove(rate) + synthetic.histogram.weightAbove(rate);
+	}
+
+	/**
+	 * Transactions dans l'ordre du mempool.
+	 */
+	public List<Transaction> toList() {
+		return toList(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Au plus {@code limit} transactions, dans l'ordre du mempool.
+	 */
+	public List<Transaction> toList(int limit) {
+		List<Transaction> out = new ArrayList<>(Math.min(limit, size()));
+		Iterator<Entry> it = iterator();
+		while (it.hasNext() && out.size() < limit) {
+			out.add(it.next().tx);
+		}
+		return out;
+	}
+
+	/**
+	 * Parcours des entrées dans l'ordre du mempool. L'index ne doit pas être
+	 * modifié pendant le parcours.
+	 */
+	public Iterator<Entry> iterator() {
+		Iterator<Entry> a = regular.iterator();
+		Iterator<Entry> b = synthetic.iterator();
+		// Fusion des deux parcours triés
+		return new Iterator<Entry>() {
+			private Entry nextA = a.hasNext() ? a.next() : null;
+			private Entry nextB = b.hasNext() ? b.next() : null;
+
+			@Override
+			public boolean hasNext() {
+				return nextA != null || nextB != null;
+			}
+
+			@Override
+			public Entry next() {
+				if (nextA == null && nextB == null) {
+					throw new NoSuchElementException();
+				}
+				Entry out;
+				if (nextB == null || (nextA != null && ORDER.compare(nextA, nextB) < 0)) {
+					out = nextA;
+					nextA = a.hasNext() ? a.next() : null;
+				} else {
+					out = nextB;
+					nextB = b.hasNext() ? b.next() : null;
+				}
+				return out;
+			}
+		};
+	}
+
+	/**
+	 * Parcours, dans l'ordre du mempool, des seules entrées non synthétiques.
+	 */
+	public Iterator<Entry> regularIterator() {
+		return regular.iterator();
+	}
+
+	private Tree tree(Entry e) {
+		return e.synthetic ? synthetic : regular;
+	}
+
+	private Tree other(Entry e) {
+		return e.synthetic ? regular : synthetic;
+	}
+
+	/**
+	 * Arbre de rang d'une partition de l'index, avec son histogramme.
+	 */
+	private final class Tree {
+		final FeeHistogram histogram = new FeeHistogram();
+		Node root;
+
+		int size() {
+			return MempoolIndex.size(root);
+		}
+
+		void clear() {
+			root = null;
+			histogram.clear();
+		}
+
+		void insert(Entry e) {
+			root = insert(root, new Node(e, random.nextInt()));
+			histogram.add(e);
+		}
+
+		void buildFromSorted(List<Entry> sorted) {
+			// Arbre cartésien: pile de la branche droite, priorités en tas max
+			Deque<Node> spine = new ArrayDeque<>();
+			for (Entry e : sorted) {
+				histogram.add(e);
+				Node n = new Node(e, random.nextInt());
+				Node last = null;
+				while (!spine.isEmpty() && spine.peek().priority < n.priority) {
+					last = spine.pop();
+				}
+				n.left = last;
+				if (!spine.isEmpty()) {
+					spine.peek().right = n;
+				}
+				spine.push(n);
+			}
+			root = spine.peekLast();
+			updateAll(root);
+		}
+
+		boolean remove(Entry e) {
+			int before = size();
+			root = remove(root, e);
+			if (size() < before) {
+				histogram.remove(e);
+				return true;
+			}
+			return false;
+		}
+
+		Entry last() {
+			Node n = root;
+			if (n == null) return null;
+			while (n.right != null) {
+				n = n.right;
+			}
+			return n.entry;
+		}
+
+		int rank(Entry e) {
+			int rank = 0;
+			Node n = root;
+			while (n != null) {
+				int c = ORDER.compare(e, n.entry);
+				if (c < 0) {
+					n = n.left;
+				} else if (c > 0) {
+					rank += MempoolIndex.size(n.left) + 1;
+					n = n.right;
+				} else {
+					return rank + MempoolIndex.size(n.left);
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Nombre d'entrées classées avant {@code e}, qu'elle soit indexée ou non.
+		 */
+		int countBefore(Entry e) {
+			int count = 0;
+			Node n = root;
+			while (n != null) {
+				if (ORDER.compare(n.entry, e) < 0) {
+					count += MempoolIndex.size(n.left) + 1;
+					n = n.right;
+				} else {
+					n = n.left;
+				}
+			}
+			return count;
+		}
+
+		int countScoreAbove(double rate) {
+			int count = 0;
+			Node n = root;
+			while (n != null) {
+				if (n.entry.score > rate) {
+					count += MempoolIndex.size(n.left) + 1;
+					n = n.right;
+				} else {
+					n = n.left;
+				}
+			}
+			return count;
+		}
+
+		long weightAbove(Entry e) {
+			long weight = 0;
+			Node n = root;
+			while (n != null) {
+				int c = ORDER.compare(e, n.entry);
+				if (c < 0) {
+					n = n.left;
+				} else if (c > 0) {
+					weight += weight(n.left) + n.entry.weight;
+					n = n.right;
+				} else {
+					return weight + weight(n.left);
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Poids des entrées classées avant {@code e}, qu'elle soit indexée ou non.
+		 */
+		long weightBefore(Entry e) {
+			long weight = 0;
+			Node n = root;
+			while (n != null) {
+				if (ORDER.compare(n.entry, e) < 0) {
+					weight += weight(n.left) + n.entry.weight;
+					n = n.right;
+				} else {
+					n = n.left;
+				}
+			}
+			return weight;
+		}
+
+		long weightScoreAbove(double rate) {
+			long weight = 0;
+			Node n = root;
+			while (n != null) {
+				if (n.entry.score > rate) {
+					weight += weight(n.left) + n.entry.weight;
+					n = n.right;
+				} else {
+					n = n.left;
+				}
+			}
+			return weight;
+		}
+
+		Iterator<Entry> iterator() {
+			return new Iterator<Entry>() {
+				private final Deque<Node> stack = new ArrayDeque<>();
+				{
+					pushLeft(root);
+				}
+
+				private void pushLeft(Node n) {
+					while (n != null) {
+						stack.push(n);
+						n = n.left;
+					}
+				}
+
+				@Override
+				public boolean hasNext() {
+					return !stack.isEmpty();
+				}
+
+				@Override
+				public Entry next() {
+					if (stack.isEmpty()) {
+						throw new NoSuchElementException();
+					}
+					Node n = stack.pop();
+					pushLeft(n.right);
+					return n.entry;
+				}
+			};
+		}
+
+		private Node insert(Node n, Node fresh) {
+			if (n == null) return fresh;
+			if (ORDER.compare(fresh.entry, n.entry) < 0) {
+				n.left = insert(n.left, fresh);
+				if (n.left.priority > n.priority) n = rotateRight(n);
+			} else {
+				n.right = insert(n.right, fresh);
+				if (n.right.priority > n.priority) n = rotateLeft(n);
+			}
+			update(n);
+			return n;
+		}
+
+		private Node remove(Node n, Entry e) {
+			if (n == null) return null;
+			int c = ORDER.compare(e, n.entry);
+			if (c < 0) {
+				n.left = remove(n.left, e);
+			} else if (c > 0) {
+				n.right = remove(n.right, e);
+			} else {
+				return merge(n.left, n.right);
+			}
+			update(n);
+			return n;
+		}
+
+		private Node merge(Node a, Node b) {
+			if (a == null) return b;
+			if (b == null) return a;
+			if (a.priority > b.priority) {
+				a.right = merge(a.right, b);
+				update(a);
+				return a;
+			}
+			b.left = merge(a, b.left);
+			update(b);
+			return b;
+		}
+	}
+
+	private static void updateAll(Node n) {
+		if (n == null) return;
+		updateAll(n.left);
+		updateAll(n.right);
+		update(n);
+	}
+
+	private static Node rotateRight(Node n) {
+		Node l = n.left;
+		n.left = l.right;
+		l.right = n;
+		update(n);
+		update(l);
+		return l;
+	}
+
+	private static Node rotateLeft(Node n) {
+		Node r = n.right;
+		n.right = r.left;
+		r.left = n;
+		update(n);
+		update(r);
+		return r;
+	}
+
+	private static void update(Node n) {
+		n.size = 1 + size(n.left) + size(n.right);
+		n.weight = n.entry.weight + weight(n.left) + weight(n.right);
+	}
+
+	private static long weight(Node n) {
+		return n == null ? 0 : n.weight;
+	}
+
+	private static int size(Node n) {
+		return n == null ? 0 : n.size;
+	}
+}
@@ -1,83 +1,479 @@
 package metier.service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
-import metier.enums.FeePriority;
+import config.ConfigManager;
+import metier.enums.CryptoType;
+import metier.model.PositionEvent;
 import metier.model.Transaction;
+import util.Flow;
 
 /**
  * Service de mempool en mémoire pour la simulation (liste en attente).
+ *
+ * Les frais de Bitcoin et d'Ethereum ne sont pas dans la même unité: le mempool
+ * est donc découpé en un {@link MempoolShard} par {@link CryptoType}, chacun avec
+ * son index, son verrou, ses limites et son producteur de blocs. Cette façade
+ * aiguille chaque opération vers le shard de la chaîne de la transaction; une
+ * opération sur une chaîne ne parcourt ni ne bloque jamais l'autre. Positions
+ * et délais sont calculés à l'intérieur d'une chaîne.
+ *
+ * Seules les opérations qui ne connaissent que l'id d'une transaction consultent
+ * successivement chaque shard, et les totaux (taille, mémoire, évictions) les
+ * additionnent.
  */
 public class MempoolService {
 
-	private final List<Transaction> pending;
+	private final Map<CryptoType, MempoolShard> shards;
+	private final long maxEntries;
+	private final long maxBytes;
+	private final Executor executor = ForkJoinPool.commonPool();
 
 	public MempoolService() {
-		this.pending = new ArrayList<>();
+		this(ConfigManager.getMempoolMaxEntries(), ConfigManager.getMempoolMaxBytes(),
+				ConfigManager.getMempoolMinFeeHalfLifeSeconds() * 1000L);
 	}
 
-	public void addTransaction(Transaction tx) {
-		pending.add(tx);
+	/**
+	 * Les limites sont globales et réparties à parts égales entre les chaînes.
+	 */
+	public MempoolService(long maxEntries, long maxBytes, long minFeeHalfLifeMillis) {
+		if (maxEntries <= 0 || maxBytes <= 0 || minFeeHalfLifeMillis <= 0) {
+			throw new IllegalArgumentException("Limites du mempool invalides");
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		CryptoType[] chains = CryptoType.values();
+		this.shards = new EnumMap<>(CryptoType.class);
+		for (CryptoType chain : chains) {
+			shards.put(chain, new MempoolShard(chain, Math.max(1L, maxEntries / chains.length),
+					Math.max(1L, maxBytes / chains.length), minFeeHalfLifeMillis));
+		}
+	}
+
+	private MempoolShard shard(CryptoType chain) {
+		return shards.get(chain);
+	}
+
+	/**
+	 * Enregistre le producteur de blocs d'une chaîne, utilisé pour les estimations.
+	 */
+	void registerBlockProducer(BlockProducer producer) {
+		shard(producer.getChain()).registerBlockProducer(producer);
+	}
+
+	BlockProducer producerFor(CryptoType chain) {
+		return shard(chain).getBlockProducer();
+	}
+
+	/**
+	 * Transactions d'une chaîne déposées mais pas encore appliquées à l'index
+	 * (lu sans verrou, sans vider la file).
+	 */
+	public int queuedCount(CryptoType chain) {
+		return shard(chain).queuedCount();
+	}
+
+	/**
+	 * Ajoute une transaction au shard de sa chaîne. N'attend jamais le verrou:
+	 * si un autre thread le détient, l'insertion sera appliquée par lui ou par la
+	 * prochaine lecture.
+	 *
+	 * @return false si son taux de frais est sous le plancher courant de sa chaîne
+	 */
+	public boolean addTransaction(Transaction tx) {
+		return shard(tx.getCryptoType()).addTransaction(tx);
+	}
+
+	/**
+	 * Indique si {@link #addTransaction(Transaction)} accepterait maintenant
+	 * cette transaction: son taux de frais atteint le plancher de sa chaîne.
+	 */
+	public boolean admits(Transaction tx) {
+		return shard(tx.getCryptoType()).admits(tx);
+	}
+
+	/**
+	 * Inscrit le destinataire des transactions évincées faute de place, avec
+	 * leurs descendants (synthétiques exclues). Il est appelé sur le pool commun,
+	 * jamais sous le verrou d'un shard; null pour ne plus être averti.
+	 */
+	public void setEvictionListener(Consumer<Transaction> listener) {
+		Consumer<Transaction> async = listener == null ? null : tx -> executor.execute(() -> listener.accept(tx));
+		for (MempoolShard s : shards.values()) {
+			s.setEvictionListener(async);
+		}
+	}
+
+	/**
+	 * Taux de frais minimum (unité de crypto par vbyte ou par gas) accepté
+	 * actuellement pour {@code chain}; 0 tant qu'aucune éviction n'a eu lieu.
+	 */
+	public double getMinFeeRate(CryptoType chain) {
+		return shard(chain).getMinFeeRate();
+	}
+
+	/**
+	 * Nombre moyen de transactions de {@code chain} acceptées par seconde depuis
+	 * la création du mempool.
+	 */
+	public double getArrivalRate(CryptoType chain) {
+		return shard(chain).getArrivalRate();
+	}
+
+	/**
+	 * Poids moyen (octets ou gas) des transactions de {@code chain} acceptées; 0 si aucune.
+	 */
+	public double getMeanArrivalWeight(CryptoType chain) {
+		return shard(chain).getMeanArrivalWeight();
+	}
+
+	/**
+	 * Nombre total de transactions évincées faute de place.
+	 */
+	public long getEvictionCount() {
+		long total = 0;
+		for (MempoolShard s : shards.values()) {
+			total += s.getEvictionCount();
+		}
+		return total;
+	}
+
+	/**
+	 * Mémoire estimée occupée par les transactions en attente, en octets.
+	 */
+	public long getMemoryUsage() {
+		long total = 0;
+		for (MempoolShard s : shards.values()) {
+			total += s.getMemoryUsage();
+		}
+		return total;
+	}
+
+	public long getMaxEntries() { return maxEntries; }
+	public long getMaxBytes() { return maxBytes; }
+
+	/**
+	 * Indique si la transaction est actuellement en attente dans le mempool.
+	 */
+	public boolean contains(String txId) {
+		for (MempoolShard s : shards.values()) {
+			if (s.contains(txId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remplace une transaction en attente par une version mieux payée portant le
+	 * même id (replace-by-fee), dans le shard de sa chaîne. L'ancienne entrée est
+	 * retirée et la nouvelle insérée en O(log n); ses enfants lui sont rattachés et
+	 * les paquets des ancêtres ajustés de la différence, sans reconstruire l'index.
+	 *
+	 * @return false si la transaction n'est pas en attente ou si le remplacement
+	 *         ne paie pas au moins un pas de taux de frais de plus
+	 */
+	public boolean replaceTransaction(Transaction replacement) {
+		return shard(replacement.getCryptoType()).replaceTransaction(replacement);
+	}
+
+	/**
+	 * Indique si {@link #replaceTransaction(Transaction)} accepterait ce
+	 * remplacement maintenant, sans rien modifier.
+	 */
+	public boolean canReplace(Transaction replacement) {
+		return shard(replacement.getCryptoType()).canReplace(replacement);
+	}
+
+	/**
+	 * Retire une transaction abandonnée du mempool, avec ses descendants
+	 * qui ne sont plus valides sans elle.
+	 */
+	public boolean removeTransaction(String txId) {
+		for (MempoolShard s : shards.values()) {
+			if (s.removeTransaction(txId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Flux des changements de position des transactions données.
+	 *
+	 * Chaque abonné reçoit la position courante des transactions déjà classées,
+	 * puis un événement à chaque entrée dans le mempool, à chaque changement de
+	 * rang et à la sortie (confirmation ou éviction), après quoi la transaction
+	 * n'est plus suivie. Les rangs sont recalculés en O(log n) par transaction
+	 * suivie, seulement après une modification du shard concerné, et les
+	 * changements rapprochés sont fusionnés. Le flux se termine quand toutes les
+	 * transactions sont sorties. La livraison se fait sur le pool commun, jamais
+	 * sous le verrou d'un shard.
+	 */
+	public Flow.Publisher<PositionEvent> watch(Collection<Transaction> transactions) {
+		List<Transaction> snapshot = new ArrayList<>(transactions);
+		return subscriber -> {
+			// Ensembles propres à chaque abonné: ils se vident au fil des sorties
+			Map<MempoolShard, Set<String>> ids = new HashMap<>();
+			for (Transaction tx : snapshot) {
+				ids.computeIfAbsent(shard(tx.getCryptoType()), s -> ConcurrentHashMap.newKeySet()).add(tx.getId());
+			}
+			new PositionSubscription(subscriber, executor, ids).start();
+		};
+	}
+
+	/**
+	 * Nombre de transactions classées (avec frais) dans le mempool, toutes chaînes confondues.
+	 */
+	public int size() {
+		int total = 0;
+		for (MempoolShard s : shards.values()) {
+			total += s.size();
+		}
+		return total;
+	}
+
+	/**
+	 * Nombre de transactions classées (avec frais) de {@code chain}.
+	 */
+	public int size(CryptoType chain) {
+		return shard(chain).size();
 	}
 
+	/**
+	 * Nombre de transactions synthétiques classées dans le mempool.
+	 */
+	public int syntheticSize() {
+		int total = 0;
+		for (MempoolShard s : shards.values()) {
+			total += s.syntheticSize();
+		}
+		return total;
+	}
+
+	/**
+	 * Retire toutes les transactions synthétiques en temps constant, sans
+	 * toucher aux transactions des utilisateurs.
+	 *
+	 * @return le nombre de transactions retirées
+	 */
+	public int clearSynthetic() {
+		int removed = 0;
+		for (MempoolShard s : shards.values()) {
+			removed += s.clearSynthetic();
+		}
+		return removed;
+	}
+
+	/**
+	 * Transactions en attente, chaîne par chaîne, chacune dans l'ordre de son shard.
+	 */
 	public List<Transaction> getPendingSortedByFeeDesc() {
-		return pending.stream()
-				.filter(t -> t.getFeeAmount() != null)
-				.sorted(Comparator.comparing(Transaction::getFeeAmount).reversed())
-				.collect(Collectors.toList());
+		List<Transaction> out = new ArrayList<>();
+		for (MempoolShard s : shards.values()) {
+			out.addAll(s.getPendingSortedByFeeDesc());
+		}
+		return out;
 	}
 
+	/**
+	 * Les {@code limit} premières transactions de {@code chain}, dans l'ordre du mempool.
+	 */
+	public List<Transaction> getPendingSortedByFeeDesc(CryptoType chain, int limit) {
+		return shard(chain).getPendingSortedByFeeDesc(limit);
+	}
+
+	/**
+	 * Position 1-based de la transaction parmi celles de sa chaîne, ou -1.
+	 */
 	public int computePosition(Transaction myTx) {
-		List<Transaction> sorted = getPendingSortedByFeeDesc();
-		for (int i = 0; i < sorted.size(); i++) {
-			if (sorted.get(i).getId().equals(myTx.getId())) {
-				return i + 1; // position 1-based
+		return shard(myTx.getCryptoType()).computePosition(myTx);
+	}
+
+	/**
+	 * Poids (octets ou gas) des transactions de la même chaîne classées avant
+	 * {@code tx}, ou -1 si elle n'est pas dans le mempool.
+	 */
+	public long computeWeightAhead(Transaction tx) {
+		return shard(tx.getCryptoType()).computeWeightAhead(tx);
+	}
+
+	/**
+	 * Poids des transactions de {@code chain} qui passeraient devant une transaction
+	 * hypothétique de poids {@code weight} payant {@code hypotheticalFee}.
+	 */
+	public long computeHypotheticalWeightAhead(CryptoType chain, BigDecimal hypotheticalFee, long weight) {
+		return shard(chain).computeHypotheticalWeightAhead(hypotheticalFee, weight);
+	}
+
+	/**
+	 * Poids des transactions de {@code chain} classées au-dessus de {@code rate} et
+	 * poids total de la chaîne, lus sous le même verrou: {ahead, total}.
+	 */
+	long[] computeWeightAheadAndTotal(CryptoType chain, double rate) {
+		return shard(chain).computeWeightAheadAndTotal(rate);
+	}
+
+	/**
+	 * Retire en une seule passe les transactions de {@code chain} les mieux classées
+	 * qui tiennent dans {@code capacity} (vbytes ou gas), dans l'ordre du mempool.
+	 * Une transaction est incluse avec ses ancêtres encore en attente, placés avant
+	 * elle; les paquets trop gros pour la place restante sont sautés.
+	 *
+	 * Le bloc retourné doit être confirmé une fois les statuts écrits, ou rendu
+	 * au mempool sinon.
+	 */
+	MempoolShard.PolledBlock pollBlock(CryptoType chain, long capacity) {
+		return shard(chain).pollBlock(capacity);
+	}
+
+	/**
+	 * Écrit un snapshot binaire des transactions classées, chaîne par chaîne dans
+	 * l'ordre de chaque shard. L'état de chaque shard est copié sous son verrou puis
+	 * écrit sur disque hors verrou. Les transactions synthétiques n'y figurent pas:
+	 * leur générateur les reproduit.
+	 *
+	 * @return le nombre de transactions écrites
+	 */
+	public int writeSnapshot(Path file) throws IOException {
+		List<MempoolSnapshot.Record> records = new ArrayList<>();
+		for (MempoolShard s : shards.values()) {
+			int offset = records.size();
+			for (MempoolSnapshot.Record r : s.snapshotRecords()) {
+				records.add(offset == 0 || r.parent < 0 ? r
+						: new MempoolSnapshot.Record(r.tx, r.parent + offset, r.packageFee, r.packageWeight));
+			}
+		}
+		MempoolSnapshot.write(file, records);
+		return records.size();
+	}
+
+	/**
+	 * Recharge un snapshot écrit par {@link #writeSnapshot(Path)}. Les transactions
+	 * sont réparties par chaîne; dans un shard vide, l'index est reconstruit en O(n)
+	 * avec les ids, dates et paquets d'origine, sinon celles qui n'y sont pas déjà
+	 * sont ajoutées une à une.
+	 *
+	 * @return le nombre de transactions ajoutées
+	 */
+	public int restoreSnapshot(Path file) throws IOException {
+		List<MempoolSnapshot.Record> records = MempoolSnapshot.read(file);
+		// Position de chaque enregistrement dans la liste de sa chaîne; un parent
+		// peut être classé après son enfant, d'où les deux passes
+		int[] local = new int[records.size()];
+		int[] counts = new int[CryptoType.values().length];
+		for (int i = 0; i < records.size(); i++) {
+			local[i] = counts[records.get(i).tx.getCryptoType().ordinal()]++;
+		}
+		Map<CryptoType, List<MempoolSnapshot.Record>> byChain = new EnumMap<>(CryptoType.class);
+		for (MempoolSnapshot.Record r : records) {
+			List<MempoolSnapshot.Record> list = byChain.computeIfAbsent(r.tx.getCryptoType(), c -> new ArrayList<>());
+			list.add(r.parent < 0 ? r
+					: new MempoolSnapshot.Record(r.tx, local[r.parent], r.packageFee, r.packageWeight));
+		}
+		int restored = 0;
+		for (Map.Entry<CryptoType, List<MempoolSnapshot.Record>> e : byChain.entrySet()) {
+			restored += shard(e.getKey()).restore(e.getValue());
+		}
+		return restored;
+	}
+
+	/**
+	 * Aligne le mempool sur les transactions en attente en base, après
+	 * {@link #restoreSnapshot(Path)} ou à la place: le snapshot peut dater
+	 * d'avant les derniers envois, remplacements et confirmations. Les
+	 * transactions absentes de {@code pending} ne sont retirées que si
+	 * {@code settled} confirme qu'elles ne sont plus en attente (une lecture en
+	 * échec les garde); il est appelé hors verrou. Chaque chaîne est ensuite
+	 * alignée sous son verrou.
+	 *
+	 * @return {retirées, ajoutées, frais repris}, toutes chaînes confondues
+	 */
+	public int[] syncPending(Iterator<Transaction> pending, Predicate<String> settled) {
+		Map<CryptoType, List<Transaction>> byChain = new EnumMap<>(CryptoType.class);
+		Set<String> ids = new HashSet<>();
+		for (CryptoType chain : shards.keySet()) {
+			byChain.put(chain, new ArrayList<>());
+		}
+		while (pending.hasNext()) {
+			Transaction tx = pending.next();
+			byChain.get(tx.getCryptoType()).add(tx);
+			ids.add(tx.getId());
+		}
+		int[] total = new int[3];
+		for (Map.Entry<CryptoType, List<Transaction>> e : byChain.entrySet()) {
+			MempoolShard shard = shard(e.getKey());
+			List<String> gone = new ArrayList<>();
+			for (Transaction tx : shard.regularTransactions()) {
+				if (!ids.contains(tx.getId()) && settled.test(tx.getId())) {
+					gone.add(tx.getId());
+				}
+			}
+			int[] counts = shard.syncPending(e.getValue(), gone);
+			for (int i = 0; i < total.length; i++) {
+				total[i] += counts[i];
 			}
 		}
-		return -1; // non trouvé
+		return total;
 	}
 
 	/**
-	 * Retourne les informations de debug du mempool
+	 * Retourne les informations de debug du mempool: le total inclut les
+	 * transactions synthétiques, le détail ne liste que celles des utilisateurs
 	 * @return DebugInfo contenant toutes les données pour l'affichage
 	 */
 	public DebugInfo getDebugInfo() {
 		List<TransactionSummary> summaries = new ArrayList<>();
-		for (int i = 0; i < pending.size(); i++) {
-			Transaction t = pending.get(i);
-			summaries.add(new TransactionSummary(
-				i + 1, 
-				t.getId(), 
-				t.getFeeAmount(), 
-				t.getFromAddress()
-			));
+		int total = 0;
+		int i = 0;
+		for (MempoolShard s : shards.values()) {
+			total += s.size();
+			for (Transaction t : s.regularTransactions()) {
+				summaries.add(new TransactionSummary(
+					++i,
+					t.getId(),
+					t.getFeeAmount(),
+					t.getFromAddress()
+				));
+			}
 		}
-		return new DebugInfo(pending.size(), summaries);
+		return new DebugInfo(total, summaries);
 	}
-	
+
 	/**
 	 * Classe pour encapsuler les informations de debug
 	 */
 	public static class DebugInfo {
 		private final int totalTransactions;
 		private final List<TransactionSummary> transactions;
-		
+
 		public DebugInfo(int totalTransactions, List<TransactionSummary> transactions) {
 			this.totalTransactions = totalTransactions;
 			this.transactions = transactions;
 		}
-		
+
 		public int getTotalTransactions() { return totalTransactions; }
 		public List<TransactionSummary> getTransactions() { return transactions; }
 	}
-	
+
 	/**
 	 * Classe pour résumer une transaction pour le debug
 	 */
@@ -86,14 +482,14 @@ public class MempoolService {
 		private final String id;
 		private final BigDecimal feeAmount;
 		private final String fromAddress;
-		
+
 		public TransactionSummary(int position, String id, BigDecimal feeAmount, String fromAddress) {
 			this.position = position;
 			this.id = id;
 			this.feeAmount = feeAmount;
 			this.fromAddress = fromAddress;
 		}
-		
+
 		public int getPosition() { return position; }
 		public String getId() { return id; }
 		public BigDecimal getFeeAmount() { return feeAmount; }
@@ -101,61 +497,38 @@ public class MempoolService {
 	}
 
 	/**
-	 * Calcule la position hypothétique si une transaction avait un certain fee,
-	 * sans modifier le contenu actuel du mempool.
+	 * Calcule la position hypothétique exacte, parmi les transactions de
+	 * {@code chain}, d'une transaction de poids {@code weight} payant un certain
+	 * fee, sans modifier le contenu actuel du mempool. O(log n) sous verrou.
 	 */
-	public int computeHypotheticalPosition(java.math.BigDecimal hypotheticalFee) {
-		List<Transaction> sorted = getPendingSortedByFeeDesc();
-		int pos = 1;
-		for (Transaction t : sorted) {
-			if (t.getFeeAmount() != null && t.getFeeAmount().compareTo(hypotheticalFee) > 0) {
-				pos++;
-			}
-		}
-		return pos;
+	public int computeHypotheticalPosition(CryptoType chain, BigDecimal hypotheticalFee, long weight) {
+		return shard(chain).computeHypotheticalPosition(hypotheticalFee, weight);
 	}
 
-	public Duration estimateConfirmationTime(Transaction myTx) {
-		int pos = computePosition(myTx);
-		if (pos < 0) return Duration.ZERO;
-		return Duration.ofMinutes(pos * 10L);
-	}
-
-	public void generateRandomPending(int count) {
-		Random rnd = new Random();
-		// Sauvegarde les transactions existantes de l'utilisateur
-		List<Transaction> userTransactions = pending.stream()
-			.filter(t -> !isRandomTransaction(t))
-			.collect(Collectors.toList());
-		
-		pending.clear();
-		
-		// Restaure les transactions de l'utilisateur
-		pending.addAll(userTransactions);
-		
-		// Ajoute les transactions aléatoires
-		for (int i = 0; i < count; i++) {
-			Transaction t = new Transaction(anonymAddr(rnd), anonymAddr(rnd), new BigDecimal("0.01"), FeePriority.STANDARD, UUID.randomUUID().toString());
-			BigDecimal fee = new BigDecimal(rnd.nextInt(90) + 1).multiply(new BigDecimal("0.00000010"));
-			t.setFeeAmount(fee);
-			pending.add(t);
-		}
-	}
-	
-	/**
-	 * Vérifie si une transaction est générée aléatoirement (adresse courte)
-	 */
-	private boolean isRandomTransaction(Transaction t) {
-		// Les transactions aléatoires ont des adresses courtes (10 caractères + 0x)
-		return t.getFromAddress().length() <= 12 && t.getToAddress().length() <= 12;
-	}
-
-	private String anonymAddr(Random rnd) {
-		StringBuilder sb = new StringBuilder("0x");
-		String hex = "0123456789abcdef";
-		for (int i = 0; i < 8; i++) sb.append(hex.charAt(rnd.nextInt(hex.length())));
-		return sb.toString();
+	/**
+	 * Estime la position hypothétique parmi les transactions de {@code chain} à
+	 * partir de l'histogramme des taux de frais, en temps quasi constant et sans
+	 * verrou. Les ajouts encore dans la file d'attente ne sont pas comptés.
+	 */
+	public int estimateHypotheticalPosition(CryptoType chain, BigDecimal hypotheticalFee, long weight) {
+		return shard(chain).estimateHypotheticalPosition(hypotheticalFee, weight);
 	}
-}
 
+	/**
+	 * Estime le délai de confirmation à partir de la place occupée devant la
+	 * transaction et de la capacité des blocs de sa chaîne. Sans producteur de
+	 * blocs enregistré, retombe sur l'approximation position × 10 minutes.
+	 */
+	public Duration estimateConfirmationTime(Transaction myTx) {
+		return shard(myTx.getCryptoType()).estimateConfirmationTime(myTx);
+	}
 
+	/**
+	 * Estime, via l'histogramme des taux de frais, le délai de confirmation d'une
+	 * transaction hypothétique de poids {@code weight} payant {@code hypotheticalFee}
+	 * sur la chaîne {@code chain}.
+	 */
+	public Duration estimateHypotheticalConfirmationTime(CryptoType chain, BigDecimal hypotheticalFee, long weight) {
+		return shard(chain).estimateHypotheticalConfirmationTime(hypotheticalFee, weight);
+	}
+}
@@ -0,0 +1,1056 @@
+package metier.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import metier.enums.CryptoType;
+import metier.enums.PositionEventType;
+import metier.model.PositionEvent;
+import metier.model.Transaction;
+
+/**
+ * Mempool d'une seule chaîne, derrière {@link MempoolService}. Les transactions
+ * sont indexées par id (ordre d'arrivée) et dans un arbre de rang trié par taux
+ * de frais, ce qui rend les calculs de position en O(log n).
+ *
+ * Une transaction qui dépense la sortie d'une transaction en attente (même
+ * adresse source, ou adresse destinataire pour Bitcoin) en devient l'enfant:
+ * son arrivée met à jour le paquet de chaque ancêtre (child-pays-for-parent)
+ * en O(profondeur × log n), sans recalculer le reste du mempool.
+ *
+ * La taille du shard est bornée (nombre d'entrées et mémoire estimée): au-delà,
+ * les transactions au plus faible score sont évincées en O(log n) et le taux de
+ * frais minimum est relevé au-dessus du taux évincé. Ce plancher décroît ensuite
+ * de moitié à chaque demi-vie; les soumissions en dessous sont refusées. Les
+ * transactions évincées sont transmises au destinataire inscrit, s'il y en a un.
+ *
+ * Le shard est thread-safe et a son propre verrou: les producteurs déposent leurs
+ * transactions dans une file sans verrou, appliquée à l'index par le premier
+ * thread qui obtient le verrou (combinaison). Les lectures vident la file puis
+ * lisent sous verrou et voient donc toujours un état trié cohérent.
+ *
+ * Les abonnements ({@link PositionSubscription}) reçoivent l'entrée et la sortie
+ * des transactions qu'ils suivent au moment où elles se produisent; toute autre
+ * modification leur est seulement signalée, à charge pour eux de relire les
+ * positions qui les intéressent.
+ *
+ * Les transactions synthétiques (voir {@link SyntheticLoadGenerator}) sont
+ * classées avec les autres mais gardées à part, sans lien CPFP: elles
+ * peuvent être retirées toutes ensemble en temps constant.
+ */
+final class MempoolShard {
+
+	// Abandon du remplissage d'un bloc après autant d'échecs consécutifs
+	private static final int MAX_BLOCK_MISSES = 1000;
+
+	private final Map<String, MempoolIndex.Entry> pending;
+	private Map<String, MempoolIndex.Entry> syntheticPending;
+	private final MempoolIndex index;
+	// Dernière transaction en attente dont une sortie appartient à l'adresse
+	private final Map<String, MempoolIndex.Entry> lastByAddress;
+	private final ConcurrentLinkedQueue<MempoolIndex.Entry> inbox;
+	private final ReentrantLock lock;
+	private final CryptoType chain;
+	private volatile BlockProducer producer;
+	// Averti de chaque transaction non synthétique évincée, null si personne
+	private volatile Consumer<Transaction> evictionListener;
+
+	private final long maxEntries;
+	private final long maxBytes;
+	private final long minFeeHalfLifeMillis;
+	private final AtomicReference<FeeFloor> feeFloor;
+	private final LongAdder evictionCount;
+	// Arrivées acceptées (nombre et poids), pour mesurer le flux entrant
+	private final LongAdder arrivals;
+	private final LongAdder arrivalWeight;
+	private final long startedNanos;
+	private long usedBytes;
+	private long syntheticBytes;
+
+	// Abonnements aux changements de position, par id suivi
+	private final ConcurrentHashMap<String, List<PositionSubscription>> watchers;
+	private final Set<PositionSubscription> subscriptions;
+	// Modification de l'index depuis le dernier signal aux abonnements
+	private boolean changed;
+
+	MempoolShard(CryptoType chain, long maxEntries, long maxBytes, long minFeeHalfLifeMillis) {
+		this.chain = chain;
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.minFeeHalfLifeMillis = minFeeHalfLifeMillis;
+		this.feeFloor = new AtomicReference<>();
+		this.evictionCount = new LongAdder();
+		this.arrivals = new LongAdder();
+		this.arrivalWeight = new LongAdder();
+		this.startedNanos = System.nanoTime();
+		this.pending = new LinkedHashMap<>();
+		this.syntheticPending = new HashMap<>();
+		this.index = new MempoolIndex();
+		this.lastByAddress = new HashMap<>();
+		this.inbox = new ConcurrentLinkedQueue<>();
+		this.lock = new ReentrantLock();
+		this.watchers = new ConcurrentHashMap<>();
+		this.subscriptions = ConcurrentHashMap.newKeySet();
+	}
+
+	public CryptoType getChain() { return chain; }
+
+	/**
+	 * Enregistre le producteur de blocs de la chaîne, utilisé pour les estimations.
+	 */
+	void registerBlockProducer(BlockProducer producer) {
+		this.producer = producer;
+	}
+
+	BlockProducer getBlockProducer() {
+		return producer;
+	}
+
+	/**
+	 * Inscrit le destinataire des transactions évincées; appelé sous verrou, il
+	 * ne doit que transmettre.
+	 */
+	void setEvictionListener(Consumer<Transaction> listener) {
+		this.evictionListener = listener;
+	}
+
+	/**
+	 * Ajoute une transaction. N'attend jamais le verrou: si un autre thread
+	 * le détient, l'insertion sera appliquée par lui en le libérant.
+	 *
+	 * @return false si son taux de frais est sous le plancher courant
+	 */
+	public boolean addTransaction(Transaction tx) {
+		MempoolIndex.Entry entry = new MempoolIndex.Entry(tx);
+		if (!admits(entry)) {
+			return false;
+		}
+		arrivals.increment();
+		arrivalWeight.add(entry.weight);
+		inbox.offer(entry);
+		drainPending();
+		return true;
+	}
+
+	/**
+	 * Indique si {@link #addTransaction(Transaction)} accepterait maintenant
+	 * cette transaction.
+	 */
+	public boolean admits(Transaction tx) {
+		return admits(new MempoolIndex.Entry(tx));
+	}
+
+	private boolean admits(MempoolIndex.Entry entry) {
+		return entry.fee == null || MempoolIndex.feeRate(entry.fee, entry.weight) >= getMinFeeRate();
+	}
+
+	/**
+	 * Taux de frais minimum (unité de crypto par vbyte ou par gas) accepté
+	 * actuellement; 0 tant qu'aucune éviction n'a eu lieu.
+	 */
+	public double getMinFeeRate() {
+		FeeFloor floor = feeFloor.get();
+		return floor == null ? 0d : floor.rateAt(System.currentTimeMillis(), minFeeHalfLifeMillis);
+	}
+
+	/**
+	 * Nombre moyen de transactions acceptées par seconde depuis la création du shard.
+	 */
+	public double getArrivalRate() {
+		double seconds = Math.max(1d, (System.nanoTime() - startedNanos) / 1e9);
+		return arrivals.sum() / seconds;
+	}
+
+	/**
+	 * Poids moyen (octets ou gas) des transactions acceptées; 0 si aucune.
+	 */
+	public double getMeanArrivalWeight() {
+		long count = arrivals.sum();
+		return count == 0 ? 0d : (double) arrivalWeight.sum() / count;
+	}
+
+	/**
+	 * Nombre total de transactions évincées faute de place.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * Mémoire estimée occupée par les transactions en attente, en octets.
+	 */
+	public long getMemoryUsage() {
+		return locked(() -> usedBytes);
+	}
+
+	public long getMaxEntries() { return maxEntries; }
+	public long getMaxBytes() { return maxBytes; }
+
+	/**
+	 * Entrées déposées mais pas encore appliquées à l'index (lu sans verrou).
+	 */
+	int queuedCount() {
+		return inbox.size();
+	}
+
+	/**
+	 * Indique si la transaction est actuellement en attente dans le mempool.
+	 */
+	public boolean contains(String txId) {
+		return locked(() -> lookup(txId) != null);
+	}
+
+	/**
+	 * Remplace une transaction en attente par une version mieux payée portant le
+	 * même id (replace-by-fee). L'ancienne entrée est retirée et la nouvelle
+	 * insérée en O(log n); ses enfants lui sont rattachés et les paquets des
+	 * ancêtres ajustés de la différence, sans reconstruire l'index.
+	 *
+	 * @return false si la transaction n'est pas en attente ou si le remplacement
+	 *         ne paie pas au moins un pas de taux de frais de plus
+	 */
+	public boolean replaceTransaction(Transaction replacement) {
+		MempoolIndex.Entry fresh = new MempoolIndex.Entry(replacement);
+		return locked(() -> {
+			MempoolIndex.Entry old = lookup(fresh.id);
+			if (!outbids(old, fresh)) {
+				return false;
+			}
+			swap(old, fresh);
+			return true;
+		});
+	}
+
+	/**
+	 * Met {@code fresh} à la place de {@code old} (même id) sans condition.
+	 */
+	private void swap(MempoolIndex.Entry old, MempoolIndex.Entry fresh) {
+		index.remove(old);
+		fresh.parent = old.parent;
+		fresh.children = old.children;
+		if (fresh.children != null) {
+			for (MempoolIndex.Entry child : fresh.children) {
+				child.parent = fresh;
+			}
+		}
+		fresh.packageFee = old.packageFee.subtract(old.fee).add(fresh.fee);
+		fresh.packageWeight = old.packageWeight - old.weight + fresh.weight;
+		fresh.rescore();
+		index.insert(fresh);
+		if (fresh.parent != null) {
+			List<MempoolIndex.Entry> siblings = fresh.parent.children;
+			siblings.set(siblings.indexOf(old), fresh);
+			updateAncestors(fresh.parent, fresh.fee.subtract(old.fee), fresh.weight - old.weight);
+		}
+
+		forget(old);
+		store(fresh);
+		lastByAddress.replace(old.tx.getFromAddress(), old, fresh);
+		lastByAddress.replace(old.tx.getToAddress(), old, fresh);
+	}
+
+	/**
+	 * Indique si {@link #replaceTransaction(Transaction)} accepterait ce
+	 * remplacement maintenant, sans rien modifier.
+	 */
+	public boolean canReplace(Transaction replacement) {
+		MempoolIndex.Entry fresh = new MempoolIndex.Entry(replacement);
+		return locked(() -> outbids(lookup(fresh.id), fresh));
+	}
+
+	/**
+	 * Règle de remplacement: même nature, frais plus élevés et au moins un pas
+	 * de taux de frais de plus.
+	 */
+	private boolean outbids(MempoolIndex.Entry old, MempoolIndex.Entry fresh) {
+		if (old == null || old.fee == null || fresh.fee == null || fresh.synthetic != old.synthetic) {
+			return false;
+		}
+		double oldRate = MempoolIndex.feeRate(old.fee, old.weight);
+		double newRate = MempoolIndex.feeRate(fresh.fee, fresh.weight);
+		return fresh.fee.compareTo(old.fee) > 0 && newRate >= oldRate + incrementalFeeRate();
+	}
+
+	/**
+	 * Retire une transaction abandonnée du mempool, avec ses descendants
+	 * qui ne sont plus valides sans elle.
+	 */
+	public boolean removeTransaction(String txId) {
+		return locked(() -> {
+			MempoolIndex.Entry entry = lookup(txId);
+			if (entry == null) {
+				return false;
+			}
+			removeWithDescendants(entry, true);
+			return true;
+		});
+	}
+
+	/**
+	 * Nombre de transactions classées (avec frais) dans le mempool.
+	 */
+	public int size() {
+		return locked(index::size);
+	}
+
+	/**
+	 * Nombre de transactions synthétiques classées dans le mempool.
+	 */
+	public int syntheticSize() {
+		return locked(index::syntheticSize);
+	}
+
+	/**
+	 * Retire toutes les transactions synthétiques en temps constant, sans
+	 * toucher aux transactions des utilisateurs.
+	 *
+	 * @return le nombre de transactions retirées
+	 */
+	public int clearSynthetic() {
+		return locked(() -> {
+			int removed = syntheticPending.size();
+			for (String id : watchers.keySet()) {
+				MempoolIndex.Entry e = syntheticPending.get(id);
+				if (e != null) {
+					notifyWatchers(e, PositionEventType.EVICTED);
+				}
+			}
+			changed |= removed > 0;
+			index.clearSynthetic();
+			syntheticPending = new HashMap<>();
+			usedBytes -= syntheticBytes;
+			syntheticBytes = 0;
+			return removed;
+		});
+	}
+
+	public List<Transaction> getPendingSortedByFeeDesc() {
+		return locked(index::toList);
+	}
+
+	/**
+	 * Les {@code limit} premières transactions, dans l'ordre du mempool.
+	 */
+	public List<Transaction> getPendingSortedByFeeDesc(int limit) {
+		return locked(() -> index.toList(limit));
+	}
+
+	public int computePosition(Transaction myTx) {
+		return locked(() -> {
+			MempoolIndex.Entry entry = lookup(myTx.getId());
+			if (entry == null || entry.fee == null) {
+				return -1; // non trouvé
+			}
+			return index.rank(entry) + 1; // position 1-based
+		});
+	}
+
+	/**
+	 * Poids (octets ou gas) des transactions classées avant {@code tx}, ou -1
+	 * si elle n'est pas dans le mempool.
+	 */
+	public long computeWeightAhead(Transaction tx) {
+		return locked(() -> {
+			MempoolIndex.Entry entry = lookup(tx.getId());
+			if (entry == null || entry.fee == null) {
+				return -1L;
+			}
+			return index.weightAbove(entry);
+		});
+	}
+
+	/**
+	 * Poids des transactions qui passeraient devant une transaction hypothétique
+	 * de poids {@code weight} payant {@code hypotheticalFee}.
+	 */
+	public long computeHypotheticalWeightAhead(BigDecimal hypotheticalFee, long weight) {
+		double rate = MempoolIndex.feeRate(hypotheticalFee, weight);
+		return locked(() -> index.weightScoreAbove(rate));
+	}
+
+	/**
+	 * Poids classé au-dessus de {@code rate} et poids total, lus sous le même
+	 * verrou: {ahead, total}.
+	 */
+	long[] computeWeightAheadAndTotal(double rate) {
+		return locked(() -> new long[] { index.weightScoreAbove(rate), index.totalWeight() });
+	}
+
+	/**
+	 * Retire en une seule passe les transactions les mieux classées
+	 * qui tiennent dans {@code capacity} (vbytes ou gas), dans l'ordre du mempool.
+	 * Une transaction est incluse avec ses ancêtres encore en attente, placés avant
+	 * elle; les paquets trop gros pour la place restante sont sautés.
+	 *
+	 * Les abonnés ne sont pas encore avertis: le bloc doit être confirmé
+	 * ({@link PolledBlock#confirm()}) une fois les statuts écrits, ou rendu au
+	 * shard ({@link PolledBlock#restore()}) s'ils n'ont pas pu l'être.
+	 */
+	PolledBlock pollBlock(long capacity) {
+		return locked(() -> {
+			List<MempoolIndex.Entry> selected = new ArrayList<>();
+			Set<MempoolIndex.Entry> taken = new HashSet<>();
+			List<MempoolIndex.Entry> pkg = new ArrayList<>();
+			long remaining = capacity;
+			int misses = 0;
+			Iterator<MempoolIndex.Entry> it = index.iterator();
+			while (it.hasNext() && remaining > 0 && misses < MAX_BLOCK_MISSES) {
+				MempoolIndex.Entry e = it.next();
+				if (taken.contains(e)) {
+					continue;
+				}
+				pkg.clear();
+				long pkgWeight = 0;
+				for (MempoolIndex.Entry a = e; a != null && !taken.contains(a); a = a.parent) {
+					pkg.add(a);
+					pkgWeight += a.weight;
+				}
+				if (pkgWeight <= remaining) {
+					for (int i = pkg.size() - 1; i >= 0; i--) {
+						selected.add(pkg.get(i));
+						taken.add(pkg.get(i));
+					}
+					remaining -= pkgWeight;
+					misses = 0;
+				} else {
+					misses++;
+				}
+			}
+			// Parents relevés avant retrait, qui détache les enfants
+			List<MempoolIndex.Entry> parents = new ArrayList<>(selected.size());
+			for (MempoolIndex.Entry e : selected) {
+				parents.add(e.parent);
+			}
+			for (MempoolIndex.Entry e : selected) {
+				removeMined(e);
+			}
+			return new PolledBlock(selected, parents);
+		});
+	}
+
+	/**
+	 * Transactions retirées par {@link #pollBlock(long)}, en attente de
+	 * l'écriture de leur statut.
+	 */
+	final class PolledBlock {
+		private final List<MempoolIndex.Entry> entries;
+		// Parent de chaque entrée au moment du retrait (lui-même dans le bloc), ou null
+		private final List<MempoolIndex.Entry> parents;
+		private final List<Transaction> transactions;
+
+		private PolledBlock(List<MempoolIndex.Entry> entries, List<MempoolIndex.Entry> parents) {
+			this.entries = entries;
+			this.parents = parents;
+			this.transactions = new ArrayList<>(entries.size());
+			for (MempoolIndex.Entry e : entries) {
+				transactions.add(e.tx);
+			}
+		}
+
+		/**
+		 * Transactions du bloc, parents d'abord.
+		 */
+		List<Transaction> getTransactions() {
+			return transactions;
+		}
+
+		/**
+		 * Avertit les abonnés de la confirmation des transactions du bloc.
+		 */
+		void confirm() {
+			locked(() -> {
+				for (MempoolIndex.Entry e : entries) {
+					notifyWatchers(e, PositionEventType.CONFIRMED);
+				}
+				// Les événements déposés sont livrés au prochain signal
+				changed |= !entries.isEmpty();
+				return null;
+			});
+		}
+
+		/**
+		 * Remet les transactions du bloc dans le shard, comme si elles n'en
+		 * étaient jamais sorties: sans plancher de frais, sans compter de
+		 * nouvelle arrivée et sans événement pour les abonnés. Les liens CPFP
+		 * sont rétablis, y compris avec les enfants restés en attente.
+		 *
+		 * @return le nombre de transactions remises (celles revenues entre-temps
+		 *         sous le même id sont laissées telles quelles)
+		 */
+		int restore() {
+			return locked(() -> restoreEntries(entries, parents));
+		}
+	}
+
+	/**
+	 * Copie sous verrou des transactions classées non synthétiques, dans l'ordre
+	 * du shard, avec la position de leur parent dans la liste.
+	 */
+	List<MempoolSnapshot.Record> snapshotRecords() {
+		return locked(() -> {
+			Map<MempoolIndex.Entry, Integer> positions = new IdentityHashMap<>(pending.size() * 2);
+			List<MempoolIndex.Entry> ordered = new ArrayList<>(pending.size());
+			Iterator<MempoolIndex.Entry> it = index.regularIterator();
+			while (it.hasNext()) {
+				MempoolIndex.Entry e = it.next();
+				positions.put(e, ordered.size());
+				ordered.add(e);
+			}
+			List<MempoolSnapshot.Record> out = new ArrayList<>(ordered.size());
+			for (MempoolIndex.Entry e : ordered) {
+				int parent = e.parent == null ? -1 : positions.get(e.parent);
+				out.add(new MempoolSnapshot.Record(e.tx, parent, e.packageFee, e.packageWeight));
+			}
+			return out;
+		});
+	}
+
+	/**
+	 * Recharge des enregistrements produits par {@link #snapshotRecords()}. Dans un
+	 * shard vide, l'index est reconstruit en O(n) avec les ids, dates et paquets
+	 * d'origine; sinon les transactions absentes sont ajoutées une à une et celles
+	 * déjà en attente sous le même id gardées telles quelles.
+	 *
+	 * @return le nombre de transactions ajoutées
+	 */
+	int restore(List<MempoolSnapshot.Record> records) {
+		return locked(() -> {
+			if (count() > 0) {
+				int restored = 0;
+				for (MempoolSnapshot.Record r : records) {
+					// Une entrée déjà présente est plus récente que le snapshot
+					if (lookup(r.tx.getId()) == null) {
+						insertEntry(new MempoolIndex.Entry(r.tx));
+						restored++;
+					}
+				}
+				enforceLimits();
+				return restored;
+			}
+			MempoolIndex.Entry[] entries = new MempoolIndex.Entry[records.size()];
+			for (int i = 0; i < entries.length; i++) {
+				entries[i] = new MempoolIndex.Entry(records.get(i).tx);
+			}
+			boolean sorted = true;
+			for (int i = 0; i < entries.length; i++) {
+				MempoolSnapshot.Record r = records.get(i);
+				MempoolIndex.Entry e = entries[i];
+				if (r.parent >= 0) {
+					e.parent = entries[r.parent];
+					e.parent.addChild(e);
+				}
+				e.packageFee = r.packageFee;
+				e.packageWeight = r.packageWeight;
+				e.rescore();
+				store(e);
+				trackAddressesIfNewer(e);
+				if (i > 0 && MempoolIndex.ORDER.compare(entries[i - 1], e) >= 0) {
+					sorted = false;
+				}
+			}
+			List<MempoolIndex.Entry> list = Arrays.asList(entries);
+			if (!sorted) {
+				list.sort(MempoolIndex.ORDER);
+			}
+			index.buildFromSorted(list);
+			enforceLimits();
+			return entries.length;
+		});
+	}
+
+	/**
+	 * Aligne le shard sur la base: les transactions {@code settled} (plus en
+	 * attente) sont retirées, leurs enfants restant; parmi {@code pending}, celles
+	 * qui manquent sont ajoutées et celles dont les frais ont changé sont
+	 * remplacées. Ni plancher de frais ni arrivée comptée: ces transactions ont
+	 * déjà été acceptées.
+	 *
+	 * @return {retirées, ajoutées, frais repris}
+	 */
+	int[] syncPending(List<Transaction> pending, List<String> settled) {
+		return locked(() -> {
+			int[] counts = new int[3];
+			for (String id : settled) {
+				MempoolIndex.Entry e = this.pending.get(id);
+				if (e == null) {
+					continue;
+				}
+				if (e.fee == null) {
+					forget(e);
+				} else {
+					removeMined(e);
+				}
+				counts[0]++;
+			}
+			for (Transaction tx : pending) {
+				MempoolIndex.Entry current = lookup(tx.getId());
+				if (current == null) {
+					insertEntry(new MempoolIndex.Entry(tx));
+					counts[1]++;
+				} else if (current.fee != null && tx.getFeeAmount() != null
+						&& current.fee.compareTo(tx.getFeeAmount()) != 0) {
+					swap(current, new MempoolIndex.Entry(tx));
+					counts[2]++;
+				}
+			}
+			enforceLimits();
+			return counts;
+		});
+	}
+
+	/**
+	 * Exécute une opération sous verrou après avoir appliqué les ajouts en attente.
+	 */
+	private <T> T locked(Supplier<T> action) {
+		lock.lock();
+		try {
+			drainInbox();
+			T result = action.get();
+			publishChanges();
+			return result;
+		} finally {
+			lock.unlock();
+			drainPending();
+		}
+	}
+
+	/**
+	 * Applique la file tant qu'elle n'est pas vide et que le verrou est libre.
+	 * Appelé après chaque libération du verrou: un producteur qui l'a trouvé
+	 * pris a déposé son entrée avant, elle est donc vue ici et n'attend pas
+	 * la prochaine lecture. Sans effet si le verrou est encore tenu par ce
+	 * thread (appel imbriqué).
+	 */
+	private void drainPending() {
+		while (!inbox.isEmpty() && !lock.isHeldByCurrentThread() && lock.tryLock()) {
+			try {
+				drainInbox();
+				publishChanges();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Inscrit un abonnement au suivi d'une transaction.
+	 */
+	void addWatcher(String id, PositionSubscription subscription) {
+		subscriptions.add(subscription);
+		watchers.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(subscription);
+	}
+
+	void removeWatcher(String id, PositionSubscription subscription) {
+		watchers.computeIfPresent(id, (k, list) -> {
+			list.remove(subscription);
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+	void removeSubscription(PositionSubscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Position courante (événement RANK_CHANGED) de chacune des transactions
+	 * classées parmi {@code ids}, en O(log n) par transaction.
+	 */
+	List<PositionEvent> currentPositions(List<String> ids) {
+		return locked(() -> {
+			List<PositionEvent> out = new ArrayList<>(ids.size());
+			Instant now = Instant.now();
+			for (String id : ids) {
+				MempoolIndex.Entry e = lookup(id);
+				if (e != null && e.fee != null) {
+					out.add(new PositionEvent(id, chain, PositionEventType.RANK_CHANGED, index.rank(e) + 1,
+							index.size(), now));
+				}
+			}
+			return out;
+		});
+	}
+
+	// Les méthodes suivantes doivent être appelées sous verrou
+
+	private void drainInbox() {
+		MempoolIndex.Entry entry;
+		while ((entry = inbox.poll()) != null) {
+			insertEntry(entry);
+		}
+		enforceLimits();
+	}
+
+	/**
+	 * Signale aux abonnements que l'index a changé depuis le dernier signal.
+	 */
+	private void publishChanges() {
+		if (!changed) {
+			return;
+		}
+		changed = false;
+		for (PositionSubscription s : subscriptions) {
+			s.positionsChanged();
+		}
+	}
+
+	/**
+	 * Dépose l'entrée ou la sortie d'une transaction auprès des abonnements qui la suivent.
+	 */
+	private void notifyWatchers(MempoolIndex.Entry entry, PositionEventType type) {
+		if (watchers.isEmpty()) {
+			return;
+		}
+		List<PositionSubscription> list = watchers.get(entry.id);
+		if (list == null) {
+			return;
+		}
+		int position = type == PositionEventType.INSERTED ? index.rank(entry) + 1 : -1;
+		PositionEvent event = new PositionEvent(entry.id, chain, type, position, index.size(), Instant.now());
+		for (PositionSubscription s : list) {
+			s.offer(event);
+		}
+	}
+
+	private void enforceLimits() {
+		while (count() > maxEntries || usedBytes > maxBytes) {
+			if (!evictLowest()) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Évince la transaction la moins bien classée (et ses descendants) et relève
+	 * le plancher de frais.
+	 */
+	private boolean evictLowest() {
+		MempoolIndex.Entry lowest = index.last();
+		if (lowest == null) {
+			return false;
+		}
+		int before = count();
+		List<MempoolIndex.Entry> removed = removeWithDescendants(lowest, true);
+		evictionCount.add(before - count());
+		Consumer<Transaction> listener = evictionListener;
+		if (listener != null) {
+			for (MempoolIndex.Entry e : removed) {
+				if (!e.synthetic) {
+					listener.accept(e.tx);
+				}
+			}
+		}
+		raiseFeeFloor(lowest.score + incrementalFeeRate());
+		return true;
+	}
+
+	private void raiseFeeFloor(double rate) {
+		long now = System.currentTimeMillis();
+		FeeFloor current = feeFloor.get();
+		if (current == null || rate > current.rateAt(now, minFeeHalfLifeMillis)) {
+			feeFloor.set(new FeeFloor(rate, now, incrementalFeeRate() / 2));
+		}
+	}
+
+	/**
+	 * Pas minimal au-dessus du taux évincé: 1 sat/vbyte ou 1 gwei/gas.
+	 */
+	private double incrementalFeeRate() {
+		return chain == CryptoType.BITCOIN ? 1e-8 : 1e-9;
+	}
+
+	private int count() {
+		return pending.size() + syntheticPending.size();
+	}
+
+	private MempoolIndex.Entry lookup(String id) {
+		MempoolIndex.Entry entry = pending.get(id);
+		return entry != null ? entry : syntheticPending.get(id);
+	}
+
+	private void store(MempoolIndex.Entry entry) {
+		if (entry.synthetic) {
+			syntheticPending.put(entry.id, entry);
+			syntheticBytes += entry.memoryBytes;
+		} else {
+			pending.put(entry.id, entry);
+		}
+		usedBytes += entry.memoryBytes;
+		changed = true;
+	}
+
+	private void forget(MempoolIndex.Entry entry) {
+		if (entry.synthetic) {
+			syntheticPending.remove(entry.id);
+			syntheticBytes -= entry.memoryBytes;
+		} else {
+			pending.remove(entry.id);
+		}
+		usedBytes -= entry.memoryBytes;
+		changed = true;
+	}
+
+	private void insertEntry(MempoolIndex.Entry entry) {
+		MempoolIndex.Entry previous = lookup(entry.id);
+		if (previous != null) {
+			removeWithDescendants(previous, false);
+		}
+		store(entry);
+		if (entry.fee == null) {
+			return;
+		}
+		if (entry.synthetic) {
+			// Sans parent ni enfant: retirable en bloc par clearSynthetic()
+			index.insert(entry);
+		} else {
+			MempoolIndex.Entry parent = lastByAddress.get(entry.tx.getFromAddress());
+			if (parent != null) {
+				entry.parent = parent;
+				parent.addChild(entry);
+			}
+			index.insert(entry);
+			trackAddresses(entry);
+			updateAncestors(entry.parent, entry.fee, entry.weight);
+		}
+		notifyWatchers(entry, PositionEventType.INSERTED);
+	}
+
+	/**
+	 * Ajoute (ou retire, si négatifs) des frais et un poids au paquet de chaque
+	 * ancêtre, en repositionnant chacun dans l'index.
+	 */
+	private void updateAncestors(MempoolIndex.Entry ancestor, BigDecimal fee, long weight) {
+		for (MempoolIndex.Entry a = ancestor; a != null; a = a.parent) {
+			index.remove(a);
+			a.packageFee = a.packageFee.add(fee);
+			a.packageWeight += weight;
+			a.rescore();
+			index.insert(a);
+		}
+	}
+
+	/**
+	 * Retire une transaction incluse dans un bloc; ses enfants deviennent sans
+	 * parent. Les abonnés sont avertis à la confirmation du bloc.
+	 */
+	private void removeMined(MempoolIndex.Entry entry) {
+		forget(entry);
+		index.remove(entry);
+		untrackAddresses(entry);
+		if (entry.children != null) {
+			for (MempoolIndex.Entry child : entry.children) {
+				child.parent = null;
+			}
+		}
+	}
+
+	/**
+	 * Réinsère des entrées retirées par {@link #pollBlock(long)}, parents d'abord,
+	 * et leur rattache les enfants restés dans le shard.
+	 */
+	private int restoreEntries(List<MempoolIndex.Entry> entries, List<MempoolIndex.Entry> parents) {
+		Map<MempoolIndex.Entry, MempoolIndex.Entry> restored = new IdentityHashMap<>(entries.size() * 2);
+		for (int i = 0; i < entries.size(); i++) {
+			MempoolIndex.Entry old = entries.get(i);
+			if (lookup(old.id) != null) {
+				continue;
+			}
+			MempoolIndex.Entry fresh = new MempoolIndex.Entry(old.tx);
+			store(fresh);
+			restored.put(old, fresh);
+			MempoolIndex.Entry parent = parents.get(i) == null ? null : restored.get(parents.get(i));
+			if (parent != null) {
+				fresh.parent = parent;
+				parent.addChild(fresh);
+			}
+			index.insert(fresh);
+			if (!fresh.synthetic) {
+				trackAddressesIfNewer(fresh);
+			}
+			updateAncestors(parent, fresh.fee, fresh.weight);
+		}
+		for (Map.Entry<MempoolIndex.Entry, MempoolIndex.Entry> r : restored.entrySet()) {
+			if (r.getKey().children == null) {
+				continue;
+			}
+			MempoolIndex.Entry fresh = r.getValue();
+			for (MempoolIndex.Entry child : r.getKey().children) {
+				MempoolIndex.Entry current = restored.containsKey(child) ? null : lookup(child.id);
+				if (current != null && current.parent == null && current.fee != null && !current.synthetic) {
+					current.parent = fresh;
+					fresh.addChild(current);
+					updateAncestors(fresh, current.packageFee, current.packageWeight);
+				}
+			}
+		}
+		enforceLimits();
+		return restored.size();
+	}
+
+	/**
+	 * Retire une transaction et tous ses descendants, et déduit leur paquet des
+	 * ancêtres. Les abonnés sont avertis de la sortie des descendants, et de celle
+	 * de la transaction elle-même si {@code notifyEntry} (pas lors d'un remplacement).
+	 *
+	 * @return les entrées retirées, {@code entry} en tête
+	 */
+	private List<MempoolIndex.Entry> removeWithDescendants(MempoolIndex.Entry entry, boolean notifyEntry) {
+		List<MempoolIndex.Entry> removed = new ArrayList<>();
+		if (entry.fee == null) {
+			forget(entry);
+			removed.add(entry);
+			return removed;
+		}
+		MempoolIndex.Entry parent = entry.parent;
+		if (parent != null) {
+			parent.children.remove(entry);
+			updateAncestors(parent, entry.packageFee.negate(), -entry.packageWeight);
+		}
+		List<MempoolIndex.Entry> stack = new ArrayList<>();
+		stack.add(entry);
+		while (!stack.isEmpty()) {
+			MempoolIndex.Entry e = stack.remove(stack.size() - 1);
+			removed.add(e);
+			forget(e);
+			index.remove(e);
+			untrackAddresses(e);
+			if (notifyEntry || e != entry) {
+				notifyWatchers(e, PositionEventType.EVICTED);
+			}
+			if (e.children != null) {
+				stack.addAll(e.children);
+			}
+		}
+		return removed;
+	}
+
+	private void trackAddresses(MempoolIndex.Entry entry) {
+		lastByAddress.put(entry.tx.getFromAddress(), entry);
+		if (entry.chain == CryptoType.BITCOIN) {
+			// Sur Bitcoin le destinataire peut aussi dépenser la sortie reçue
+			lastByAddress.put(entry.tx.getToAddress(), entry);
+		}
+	}
+
+	private void trackAddressesIfNewer(MempoolIndex.Entry entry) {
+		trackIfNewer(entry.tx.getFromAddress(), entry);
+		if (entry.chain == CryptoType.BITCOIN) {
+			trackIfNewer(entry.tx.getToAddress(), entry);
+		}
+	}
+
+	private void trackIfNewer(String address, MempoolIndex.Entry entry) {
+		MempoolIndex.Entry current = lastByAddress.get(address);
+		if (current == null || current.createdAt.isBefore(entry.createdAt)) {
+			lastByAddress.put(address, entry);
+		}
+	}
+
+	private void untrackAddresses(MempoolIndex.Entry entry) {
+		lastByAddress.remove(entry.tx.getFromAddress(), entry);
+		lastByAddress.remove(entry.tx.getToAddress(), entry);
+	}
+
+	/**
+	 * Plancher de frais relevé lors d'une éviction, décroissant de moitié à chaque demi-vie.
+	 */
+	private static final class FeeFloor {
+		private final double rate;
+		private final long since;
+		private final double negligible;
+
+		FeeFloor(double rate, long since, double negligible) {
+			this.rate = rate;
+			this.since = since;
+			this.negligible = negligible;
+		}
+
+		double rateAt(long now, long halfLifeMillis) {
+			double decayed = rate * Math.pow(0.5, (double) Math.max(0L, now - since) / halfLifeMillis);
+			// Sous la moitié du pas minimal, le plancher est levé
+			return decayed < negligible ? 0d : decayed;
+		}
+	}
+
+	/**
+	 * Transactions non synthétiques dans l'ordre d'arrivée.
+	 */
+	List<Transaction> regularTransactions() {
+		return locked(() -> {
+			List<Transaction> out = new ArrayList<>(pending.size());
+			for (MempoolIndex.Entry e : pending.values()) {
+				out.add(e.tx);
+			}
+			return out;
+		});
+	}
+
+	/**
+	 * Calcule la position hypothétique exacte d'une transaction de poids
+	 * {@code weight} payant un certain fee, sans modifier le contenu actuel du
+	 * mempool. O(log n) sous verrou.
+	 */
+	public int computeHypotheticalPosition(BigDecimal hypotheticalFee, long weight) {
+		double rate = MempoolIndex.feeRate(hypotheticalFee, weight);
+		return locked(() -> index.countScoreAbove(rate) + 1);
+	}
+
+	/**
+	 * Estime la position hypothétique à partir de l'histogramme des taux de frais,
+	 * en temps quasi constant et sans verrou. Les ajouts encore dans la file
+	 * d'attente ne sont pas comptés.
+	 */
+	public int estimateHypotheticalPosition(BigDecimal hypotheticalFee, long weight) {
+		double rate = MempoolIndex.feeRate(hypotheticalFee, weight);
+		return (int) Math.round(index.estimateCountAbove(rate)) + 1;
+	}
+
+	/**
+	 * Estime le délai de confirmation à partir de la place occupée devant la
+	 * transaction et de la capacité des blocs. Sans producteur de blocs
+	 * enregistré, retombe sur l'approximation position × 10 minutes.
+	 */
+	public Duration estimateConfirmationTime(Transaction myTx) {
+		BlockProducer producer = this.producer;
+		if (producer != null) {
+			long ahead = computeWeightAhead(myTx);
+			if (ahead < 0) return Duration.ZERO;
+			return producer.estimateDelay(ahead, FeeCalculatorFactory.forType(chain).estimateWeight(myTx));
+		}
+		int pos = computePosition(myTx);
+		if (pos < 0) return Duration.ZERO;
+		return Duration.ofMinutes(pos * 10L);
+	}
+
+	/**
+	 * Estime, via l'histogramme des taux de frais, le délai de confirmation d'une
+	 * transaction hypothétique de poids {@code weight} payant {@code hypotheticalFee}.
+	 */
+	public Duration estimateHypotheticalConfirmationTime(BigDecimal hypotheticalFee, long weight) {
+		BlockProducer producer = this.producer;
+		if (producer != null) {
+			double rate = MempoolIndex.feeRate(hypotheticalFee, weight);
+			long ahead = Math.round(index.estimateWeightAbove(rate));
+			return producer.estimateDelay(ahead, weight);
+		}
+		return Duration.ofMinutes(estimateHypotheticalPosition(hypotheticalFee, weight) * 10L);
+	}
+}
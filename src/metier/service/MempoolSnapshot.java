@@ -0,0 +1,279 @@
+package metier.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import metier.enums.CryptoType;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+
+/**
+ * Format binaire compact d'un snapshot du mempool.
+ *
+ * En-tête: magic, version, date d'écriture, nombre d'enregistrements. Les
+ * enregistrements suivent dans l'ordre de l'index (score décroissant), ce qui
+ * permet de reconstruire l'arbre en O(n). Chacun conserve l'id (16 octets pour
+ * un UUID), la date de création exacte, le poids, les montants, le paquet CPFP
+ * et la position de son parent. Le fichier se termine par le CRC32 de tout ce
+ * qui précède.
+ *
+ * La lecture passe par un fichier mappé en mémoire. Un snapshot dont le CRC, la
+ * longueur ou les liens de parenté (index hors bornes, parent d'une autre chaîne,
+ * cycle) sont incohérents est rejeté en entier.
+ */
+final class MempoolSnapshot {
+
+	private static final int MAGIC = 0x4D504F4F; // "MPOO"
+	private static final byte VERSION = 2;
+	// magic, version, date d'écriture, nombre d'enregistrements
+	private static final int HEADER_BYTES = 4 + 1 + 8 + 4;
+	private static final int TRAILER_BYTES = 4;
+
+	private static final int FLAG_UUID_ID = 1;
+	private static final int FLAG_PARENT = 2;
+
+	// Marqueur d'un montant dont la partie entière tient dans un long
+	private static final byte LONG_UNSCALED = -1;
+
+	private MempoolSnapshot() {}
+
+	/**
+	 * Transaction indexée et état de son paquet au moment du snapshot.
+	 */
+	static final class Record {
+		final Transaction tx;
+		final int parent;
+		final BigDecimal packageFee;
+		final long packageWeight;
+
+		Record(Transaction tx, int parent, BigDecimal packageFee, long packageWeight) {
+			this.tx = tx;
+			this.parent = parent;
+			this.packageFee = packageFee;
+			this.packageWeight = packageWeight;
+		}
+	}
+
+	/**
+	 * Écrit le snapshot dans un fichier temporaire puis le renomme, pour qu'un
+	 * arrêt brutal ne laisse jamais de snapshot partiel.
+	 */
+	static void write(Path file, List<Record> records) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) {
+			Files.createDirectories(dir);
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		CRC32 crc = new CRC32();
+		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+			DataOutputStream out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(records.size());
+			for (Record r : records) {
+				writeRecord(out, r);
+			}
+			out.flush();
+			new DataOutputStream(stream).writeInt((int) crc.getValue());
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	static List<Record> read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot trop volumineux: " + length + " octets");
+			}
+			if (length < HEADER_BYTES + TRAILER_BYTES) {
+				throw new IOException("Snapshot du mempool tronqué: " + length + " octets");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			ByteBuffer buf = mapped.duplicate();
+			buf.limit((int) length - TRAILER_BYTES);
+			CRC32 crc = new CRC32();
+			crc.update(buf.duplicate());
+			if (mapped.getInt((int) length - TRAILER_BYTES) != (int) crc.getValue()) {
+				throw new IOException("Snapshot du mempool corrompu (CRC): " + file);
+			}
+			if (buf.getInt() != MAGIC) {
+				throw new IOException("Fichier de snapshot du mempool invalide: " + file);
+			}
+			byte version = buf.get();
+			if (version != VERSION) {
+				throw new IOException("Version de snapshot non supportée: " + version);
+			}
+			buf.getLong(); // date d'écriture
+			int count = buf.getInt();
+			if (count < 0 || count > buf.remaining()) {
+				throw new IOException("Nombre d'enregistrements invalide dans le snapshot: " + count);
+			}
+			List<Record> records = new ArrayList<>(count);
+			try {
+				for (int i = 0; i < count; i++) {
+					records.add(readRecord(buf));
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Snapshot du mempool illisible: enregistrement " + records.size() + " incomplet", e);
+			}
+			if (buf.hasRemaining()) {
+				throw new IOException("Snapshot du mempool invalide: " + buf.remaining() + " octets après le dernier enregistrement");
+			}
+			validateParents(records);
+			return records;
+		}
+	}
+
+	/**
+	 * Chaque parent doit être un autre enregistrement de la même chaîne, et les
+	 * liens ne doivent pas former de cycle.
+	 */
+	private static void validateParents(List<Record> records) throws IOException {
+		int count = records.size();
+		for (int i = 0; i < count; i++) {
+			Record r = records.get(i);
+			if (r.parent < -1 || r.parent >= count || r.parent == i) {
+				throw new IOException("Parent invalide pour l'enregistrement " + i + ": " + r.parent);
+			}
+			if (r.parent >= 0 && records.get(r.parent).tx.getCryptoType() != r.tx.getCryptoType()) {
+				throw new IOException("Parent d'une autre chaîne pour l'enregistrement " + i);
+			}
+		}
+		// 0: non visité, 1: sur le chemin courant, 2: mène à une racine
+		byte[] state = new byte[count];
+		for (int i = 0; i < count; i++) {
+			int j = i;
+			while (j >= 0 && state[j] == 0) {
+				state[j] = 1;
+				j = records.get(j).parent;
+			}
+			if (j >= 0 && state[j] == 1) {
+				throw new IOException("Cycle de parenté dans le snapshot à l'enregistrement " + j);
+			}
+			for (j = i; j >= 0 && state[j] == 1; j = records.get(j).parent) {
+				state[j] = 2;
+			}
+		}
+	}
+
+	private static void writeRecord(DataOutputStream out, Record r) throws IOException {
+		Transaction tx = r.tx;
+		UUID uuid = parseUuid(tx.getId());
+		int flags = (uuid != null ? FLAG_UUID_ID : 0) | (r.parent >= 0 ? FLAG_PARENT : 0);
+		out.writeByte(flags);
+		if (uuid != null) {
+			out.writeLong(uuid.getMostSignificantBits());
+			out.writeLong(uuid.getLeastSignificantBits());
+		} else {
+			writeString(out, tx.getId());
+		}
+		out.writeByte(tx.getCryptoType().ordinal());
+		out.writeByte(tx.getFeePriority().ordinal());
+		out.writeLong(tx.getCreatedAt().getEpochSecond());
+		out.writeInt(tx.getCreatedAt().getNano());
+		out.writeLong(tx.getSize());
+		writeDecimal(out, tx.getAmount());
+		writeDecimal(out, tx.getFeeAmount());
+		writeDecimal(out, r.packageFee);
+		out.writeLong(r.packageWeight);
+		if (r.parent >= 0) {
+			out.writeInt(r.parent);
+		}
+		writeString(out, tx.getFromAddress());
+		writeString(out, tx.getToAddress());
+		writeString(out, tx.getWalletId());
+	}
+
+	private static Record readRecord(ByteBuffer buf) {
+		int flags = buf.get();
+		String id = (flags & FLAG_UUID_ID) != 0
+				? new UUID(buf.getLong(), buf.getLong()).toString()
+				: readString(buf);
+		CryptoType chain = CryptoType.values()[buf.get()];
+		FeePriority priority = FeePriority.values()[buf.get()];
+		Instant createdAt = Instant.ofEpochSecond(buf.getLong(), buf.getInt());
+		long size = buf.getLong();
+		BigDecimal amount = readDecimal(buf);
+		BigDecimal fee = readDecimal(buf);
+		BigDecimal packageFee = readDecimal(buf);
+		long packageWeight = buf.getLong();
+		int parent = (flags & FLAG_PARENT) != 0 ? buf.getInt() : -1;
+		String from = readString(buf);
+		String to = readString(buf);
+		String walletId = readString(buf);
+
+		Transaction tx = new Transaction(id, from, to, amount, priority, createdAt, fee,
+				TransactionStatus.PENDING, walletId, chain);
+		tx.setSize(size);
+		return new Record(tx, parent, packageFee, packageWeight);
+	}
+
+	private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+		BigInteger unscaled = value.unscaledValue();
+		out.writeInt(value.scale());
+		if (unscaled.bitLength() < 64) {
+			out.writeByte(LONG_UNSCALED);
+			out.writeLong(unscaled.longValue());
+		} else {
+			byte[] bytes = unscaled.toByteArray();
+			out.writeByte(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static BigDecimal readDecimal(ByteBuffer buf) {
+		int scale = buf.getInt();
+		byte len = buf.get();
+		if (len == LONG_UNSCALED) {
+			return BigDecimal.valueOf(buf.getLong(), scale);
+		}
+		byte[] bytes = new byte[len & 0xFF];
+		buf.get(bytes);
+		return new BigDecimal(new BigInteger(bytes), scale);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static UUID parseUuid(String id) {
+		if (id == null || id.length() != 36) {
+			return null;
+		}
+		try {
+			UUID uuid = UUID.fromString(id);
+			// Ne garde la forme binaire que si elle redonne exactement le même texte
+			return uuid.toString().equals(id) ? uuid : null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package metier.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metier.enums.PositionEventType;
+import metier.model.PositionEvent;
+import util.Flow;
+
+/**
+ * Abonnement aux changements de position d'un ensemble de transactions.
+ *
+ * Les shards y déposent, sous leur verrou, les événements d'entrée et de sortie
+ * des transactions suivies, et signalent toute modification par un simple
+ * drapeau. La livraison se fait sur l'exécuteur, par une seule tâche à la fois:
+ * elle recalcule alors en O(log n) la position de chaque transaction suivie,
+ * sans reconstruire l'ordre du mempool, et n'émet que les positions qui ont
+ * changé. Les événements en attente sont fusionnés (au plus un par transaction)
+ * et livrés dans la limite de la demande de l'abonné.
+ */
+final class PositionSubscription implements Flow.Subscription {
+
+	private final Flow.Subscriber<? super PositionEvent> subscriber;
+	private final Executor executor;
+	// Ids suivis par shard, retirés dès qu'un événement terminal est déposé
+	private final Map<MempoolShard, Set<String>> watched;
+	// Au plus un événement par id, dans l'ordre de première arrivée
+	private final Map<String, PositionEvent> pending = new LinkedHashMap<>();
+	// Dernière position livrée par id (tâche de livraison uniquement)
+	private final Map<String, Integer> delivered = new HashMap<>();
+
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicBoolean positionsDirty = new AtomicBoolean(true);
+	private volatile boolean cancelled;
+	private volatile Throwable requestError;
+	private boolean subscribed;
+
+	PositionSubscription(Flow.Subscriber<? super PositionEvent> subscriber, Executor executor,
+			Map<MempoolShard, Set<String>> watched) {
+		this.subscriber = subscriber;
+		this.executor = executor;
+		this.watched = watched;
+	}
+
+	/**
+	 * Inscrit l'abonnement auprès des shards puis planifie la première livraison,
+	 * qui appelle {@code onSubscribe} et publie la position courante des
+	 * transactions déjà présentes.
+	 */
+	void start() {
+		for (Map.Entry<MempoolShard, Set<String>> e : watched.entrySet()) {
+			for (String id : e.getValue()) {
+				e.getKey().addWatcher(id, this);
+			}
+		}
+		signal();
+	}
+
+	@Override
+	public void request(long n) {
+		if (n <= 0) {
+			requestError = new IllegalArgumentException("Demande non positive: " + n);
+		} else {
+			long current;
+			long next;
+			do {
+				current = demand.get();
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			} while (!demand.compareAndSet(current, next));
+		}
+		signal();
+	}
+
+	@Override
+	public void cancel() {
+		cancelled = true;
+		unregister();
+	}
+
+	/**
+	 * Dépose un événement d'entrée ou de sortie, fusionné avec celui en attente.
+	 * Appelé par un shard sous son verrou.
+	 */
+	void offer(PositionEvent event) {
+		if (event.isTerminal()) {
+			for (Map.Entry<MempoolShard, Set<String>> e : watched.entrySet()) {
+				if (e.getValue().remove(event.getTransactionId())) {
+					e.getKey().removeWatcher(event.getTransactionId(), this);
+				}
+			}
+		}
+		synchronized (pending) {
+			PositionEvent queued = pending.get(event.getTransactionId());
+			pending.put(event.getTransactionId(), queued == null ? event : merge(queued, event));
+		}
+	}
+
+	/**
+	 * Signalé par un shard après une modification: les positions seront
+	 * recalculées à la prochaine livraison.
+	 */
+	void positionsChanged() {
+		positionsDirty.set(true);
+		signal();
+	}
+
+	private void signal() {
+		if (wip.getAndIncrement() == 0) {
+			executor.execute(this::drain);
+		}
+	}
+
+	private void drain() {
+		int missed = 1;
+		while (true) {
+			if (!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+			if (cancelled) {
+				return;
+			}
+			Throwable error = requestError;
+			if (error != null) {
+				cancel();
+				subscriber.onError(error);
+				return;
+			}
+			if (positionsDirty.getAndSet(false)) {
+				refreshPositions();
+			}
+			while (demand.get() > 0 && !cancelled) {
+				PositionEvent event = poll();
+				if (event == null) {
+					break;
+				}
+				if (demand.get() != Long.MAX_VALUE) {
+					demand.decrementAndGet();
+				}
+				delivered.put(event.getTransactionId(), event.getPosition());
+				try {
+					subscriber.onNext(event);
+				} catch (RuntimeException e) {
+					cancel();
+					subscriber.onError(e);
+					return;
+				}
+			}
+			if (!cancelled && isDone()) {
+				cancel();
+				subscriber.onComplete();
+				return;
+			}
+			missed = wip.addAndGet(-missed);
+			if (missed == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Compare la position courante de chaque transaction suivie à la dernière
+	 * position livrée ou en attente, et dépose un événement si elle a changé.
+	 */
+	private void refreshPositions() {
+		for (Map.Entry<MempoolShard, Set<String>> e : watched.entrySet()) {
+			if (e.getValue().isEmpty()) {
+				continue;
+			}
+			List<PositionEvent> current = e.getKey().currentPositions(new ArrayList<>(e.getValue()));
+			synchronized (pending) {
+				for (PositionEvent event : current) {
+					String id = event.getTransactionId();
+					PositionEvent queued = pending.get(id);
+					if (queued != null) {
+						if (!queued.isTerminal() && queued.getPosition() != event.getPosition()) {
+							pending.put(id, merge(queued, event));
+						}
+					} else if (!Integer.valueOf(event.getPosition()).equals(delivered.get(id))) {
+						pending.put(id, event);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fusionne deux événements d'une même transaction: une sortie l'emporte, une
+	 * entrée garde son type mais prend la position la plus récente.
+	 */
+	private static PositionEvent merge(PositionEvent queued, PositionEvent newer) {
+		if (queued.isTerminal()) {
+			return queued;
+		}
+		if (queued.getType() == PositionEventType.INSERTED && !newer.isTerminal()) {
+			return new PositionEvent(newer.getTransactionId(), newer.getCryptoType(), PositionEventType.INSERTED,
+					newer.getPosition(), newer.getPendingCount(), newer.getOccurredAt());
+		}
+		return newer;
+	}
+
+	private PositionEvent poll() {
+		synchronized (pending) {
+			Iterator<PositionEvent> it = pending.values().iterator();
+			if (!it.hasNext()) {
+				return null;
+			}
+			PositionEvent event = it.next();
+			it.remove();
+			return event;
+		}
+	}
+
+	private boolean isDone() {
+		for (Set<String> ids : watched.values()) {
+			if (!ids.isEmpty()) {
+				return false;
+			}
+		}
+		synchronized (pending) {
+			return pending.isEmpty();
+		}
+	}
+
+	private void unregister() {
+		for (Map.Entry<MempoolShard, Set<String>> e : watched.entrySet()) {
+			for (String id : e.getValue()) {
+				e.getKey().removeWatcher(id, this);
+			}
+			e.getKey().removeSubscription(this);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package metier.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.UUID;
+
+import config.ConfigManager;
+import metier.enums.CryptoType;
+import metier.enums.FeeDistribution;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+
+/**
+ * Générateur de transactions synthétiques pour charger le mempool.
+ *
+ * Pour une graine, une distribution et une date de départ données, la suite
+ * produite est toujours la même (ids, adresses, poids, frais et dates de
+ * création), ce qui rend les simulations reproductibles. Les taux de frais
+ * suivent une loi uniforme, log-normale ou log-normale avec rafales (périodes
+ * où les arrivées s'accélèrent et les frais montent). Les dates de création
+ * avancent selon des arrivées exponentielles à partir de la date de départ.
+ *
+ * Les transactions produites sont marquées synthétiques: le mempool les range
+ * à part et {@link MempoolService#clearSynthetic()} les retire en temps constant.
+ * Une instance n'est pas thread-safe.
+ */
+public class SyntheticLoadGenerator {
+
+	public static final String SYNTHETIC_WALLET_ID = "synthetic";
+
+	private static final CryptoType[] CHAINS = CryptoType.values();
+	private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// Taux en sat/vbyte (Bitcoin) ou gwei/gas (Ethereum)
+	private static final double MIN_RATE = 1d;
+	private static final double MAX_RATE = 2_000d;
+	private static final double UNIFORM_MAX_RATE = 100d;
+	private static final double LOG_NORMAL_MEDIAN = 15d;
+	private static final double LOG_NORMAL_SIGMA = 0.8;
+
+	// Rafales: probabilité d'en démarrer une, longueur moyenne, frais et débit multipliés
+	private static final double BURST_START_PROBABILITY = 0.001;
+	private static final double BURST_MEAN_LENGTH = 2_000d;
+	private static final double BURST_FEE_FACTOR = 8d;
+	private static final double BURST_RATE_FACTOR = 10d;
+
+	// Intervalle moyen entre deux arrivées
+	private static final double MEAN_INTERVAL_MICROS = 10_000d;
+
+	private final long seed;
+	private final FeeDistribution distribution;
+	private final Instant start;
+	private final Random random;
+	private long elapsedMicros;
+	private long generatedCount;
+	private long burstRemaining;
+
+	public SyntheticLoadGenerator(long seed, FeeDistribution distribution, Instant start) {
+		if (distribution == null || start == null) {
+			throw new IllegalArgumentException("Distribution et date de départ obligatoires");
+		}
+		this.seed = seed;
+		this.distribution = distribution;
+		this.start = start;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Générateur configuré par synthetic.seed et synthetic.distribution, démarrant maintenant.
+	 */
+	public static SyntheticLoadGenerator fromConfig() {
+		return new SyntheticLoadGenerator(ConfigManager.getSyntheticSeed(),
+				ConfigManager.getSyntheticDistribution(), Instant.now());
+	}
+
+	/**
+	 * Produit la transaction synthétique suivante de la séquence.
+	 */
+	public Transaction next() {
+		CryptoType chain = CHAINS[random.nextInt(CHAINS.length)];
+		long size = chain == CryptoType.BITCOIN ? 110 + random.nextInt(900) : 21_000 + random.nextInt(180_000);
+		boolean inBurst = advanceBurst();
+		double rate = Math.max(MIN_RATE, Math.min(MAX_RATE, sampleRate(inBurst)));
+		// 1 sat = 1e-8 BTC, 1 gwei = 1e-9 ETH
+		BigDecimal fee = BigDecimal.valueOf(Math.max(1L, Math.round(rate * size)),
+				chain == CryptoType.BITCOIN ? 8 : 9);
+
+		String id = nextUuid().toString();
+		Instant createdAt = start.plus(elapsedMicros, ChronoUnit.MICROS);
+		double meanInterval = inBurst ? MEAN_INTERVAL_MICROS / BURST_RATE_FACTOR : MEAN_INTERVAL_MICROS;
+		elapsedMicros += Math.round(-Math.log(1d - random.nextDouble()) * meanInterval);
+
+		Transaction tx = new Transaction(id, nextAddress(), nextAddress(), AMOUNT, FeePriority.STANDARD,
+				createdAt, fee, TransactionStatus.PENDING, SYNTHETIC_WALLET_ID, chain);
+		tx.setSize(size);
+		tx.setSynthetic(true);
+		generatedCount++;
+		return tx;
+	}
+
+	/**
+	 * Ajoute {@code count} transactions au mempool sans retirer celles déjà présentes.
+	 *
+	 * @return le nombre de transactions acceptées (au-dessus du plancher de frais)
+	 */
+	public int feed(MempoolService mempool, int count) {
+		int accepted = 0;
+		for (int i = 0; i < count; i++) {
+			if (mempool.addTransaction(next())) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	public long getSeed() { return seed; }
+	public FeeDistribution getDistribution() { return distribution; }
+	public long getGeneratedCount() { return generatedCount; }
+
+	/**
+	 * Fait avancer l'état des rafales; retourne true si la transaction courante en fait partie.
+	 */
+	private boolean advanceBurst() {
+		if (distribution != FeeDistribution.BURSTY) {
+			return false;
+		}
+		if (burstRemaining > 0) {
+			burstRemaining--;
+			return true;
+		}
+		if (random.nextDouble() < BURST_START_PROBABILITY) {
+			burstRemaining = Math.round(-Math.log(1d - random.nextDouble()) * BURST_MEAN_LENGTH);
+			return true;
+		}
+		return false;
+	}
+
+	private double sampleRate(boolean inBurst) {
+		switch (distribution) {
+			case UNIFORM:
+				return MIN_RATE + random.nextDouble() * (UNIFORM_MAX_RATE - MIN_RATE);
+			case BURSTY:
+				return logNormal() * (inBurst ? BURST_FEE_FACTOR : 1d);
+			case LOG_NORMAL:
+			default:
+				return logNormal();
+		}
+	}
+
+	private double logNormal() {
+		return LOG_NORMAL_MEDIAN * Math.exp(LOG_NORMAL_SIGMA * random.nextGaussian());
+	}
+
+	/**
+	 * UUID de version 4 tiré de la graine, pour des ids reproductibles.
+	 */
+	private UUID nextUuid() {
+		long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb);
+	}
+
+	private String nextAddress() {
+		char[] chars = new char[10];
+		chars[0] = '0';
+		chars[1] = 'x';
+		int bits = random.nextInt();
+		for (int i = 0; i < 8; i++) {
+			chars[2 + i] = HEX[(bits >>> (28 - 4 * i)) & 0xF];
+		}
+		return new String(chars);
+	}
+}
@@ -1,11 +1,15 @@
 package metier.service;
 
 import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
 import metier.model.Transaction;
 import metier.model.Wallet;
+import repository.TransactionRepository;
 import repository.WalletRepository;
 import util.LoggerProvider;
 
@@ -17,9 +21,11 @@ public class TransactionService {
     private static final Logger LOGGER = LoggerProvider.getLogger(TransactionService.class.getName());
     
     private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
     
-    public TransactionService(WalletRepository walletRepository) {
+    public TransactionService(WalletRepository walletRepository, TransactionRepository transactionRepository) {
         this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
     }
     
     /**
@@ -34,9 +40,19 @@ public class TransactionService {
      */
     public TransactionResult createTransaction(Wallet wallet, String toAddress, 
                                              BigDecimal amount, FeePriority priority) {
+        return createTransaction(wallet, toAddress, amount, priority, tx -> true);
+    }
+    
+    /**
+     * Comme {@link #createTransaction(Wallet, String, BigDecimal, FeePriority)},
+     * mais la transaction n'est débitée et enregistrée que si {@code admissible}
+     * l'accepte (plancher de frais du mempool): un envoi refusé ne débite rien.
+     */
+    public TransactionResult createTransaction(Wallet wallet, String toAddress, BigDecimal amount,
+                                               FeePriority priority, Predicate<Transaction> admissible) {
         
         // 1. Calculer les frais
-        Transaction tempTx = new Transaction(wallet.getAddress(), toAddress, amount, priority, wallet.getId());
+        Transaction tempTx = new Transaction(wallet.getAddress(), toAddress, amount, priority, wallet.getId(), wallet.getCryptoType());
         FeeCalculator calc = FeeCalculatorFactory.forType(wallet.getCryptoType());
         BigDecimal fee = calc.calculateFee(tempTx, wallet, priority);
         
@@ -54,16 +70,27 @@ public class TransactionService {
         }
         
         // 4. Créer la transaction
-        Transaction transaction = new Transaction(wallet.getAddress(), toAddress, amount, priority, wallet.getId());
+        Transaction transaction = new Transaction(wallet.getAddress(), toAddress, amount, priority, wallet.getId(), wallet.getCryptoType());
+        transaction.setSize(calc.estimateWeight(transaction));
         transaction.setFeeAmount(fee);
+        if (!admissible.test(transaction)) {
+            return TransactionResult.failure(String.format(
+                "Frais (%s) sous le minimum actuel du mempool: transaction refusée, rien n'a été débité", fee));
+        }
         
-        // 5. Déduire le montant + frais de la balance
-        BigDecimal newBalance = wallet.getBalance().subtract(totalRequired);
+        // 5. Débiter montant + frais et enregistrer la transaction, atomiquement:
+        //    le débit est refusé si un envoi concurrent a entamé la balance entre-temps
+        Optional<BigDecimal> debited = transactionRepository.saveWithDebit(transaction, totalRequired);
+        if (!debited.isPresent()) {
+            String message = String.format(
+                "Débit refusé: fonds insuffisants (balance modifiée entre-temps) ou base indisponible. Requis: %s",
+                totalRequired);
+            LOGGER.warning(message);
+            return TransactionResult.failure(message);
+        }
+        BigDecimal newBalance = debited.get();
         wallet.setBalance(newBalance);
         
-        // 6. Sauvegarder le wallet avec la nouvelle balance
-        walletRepository.save(wallet);
-        
         LOGGER.info(String.format(
             "Transaction créée avec succès. Montant: %s, Frais: %s, Nouvelle balance: %s",
             amount, fee, newBalance
@@ -76,17 +103,129 @@ public class TransactionService {
     }
     
     /**
-     * Ajoute des fonds à un wallet (simulation de réception de crypto)
+     * Prépare le remplacement d'une transaction en attente par une version mieux
+     * payée (replace-by-fee). La ligne existante est mise à jour en base (tant
+     * qu'elle est en attente) et seule la différence de frais est débitée du
+     * wallet: le montant et les frais initiaux ont déjà été déduits à la création.
+     * 
+     * @param wallet Le wallet source de la transaction
+     * @param original La transaction en attente à remplacer
+     * @param newPriority La nouvelle priorité, qui doit coûter plus cher
+     * @return La transaction de remplacement (même id, nouveaux frais)
      */
-    public void addFunds(Wallet wallet, BigDecimal amount) {
-        BigDecimal newBalance = wallet.getBalance().add(amount);
+    public TransactionResult replaceFee(Wallet wallet, Transaction original, FeePriority newPriority) {
+        return replaceFee(wallet, original, newPriority, tx -> true);
+    }
+    
+    /**
+     * Comme {@link #replaceFee(Wallet, Transaction, FeePriority)}, mais le
+     * remplacement n'est écrit que si {@code admissible} l'accepte (règle de
+     * remplacement du mempool): un remplacement refusé ne débite rien.
+     */
+    public TransactionResult replaceFee(Wallet wallet, Transaction original, FeePriority newPriority,
+                                        Predicate<Transaction> admissible) {
+        if (original.getStatus() != TransactionStatus.PENDING) {
+            return TransactionResult.failure("Seule une transaction en attente peut être accélérée");
+        }
+        
+        FeeCalculator calc = FeeCalculatorFactory.forType(wallet.getCryptoType());
+        BigDecimal newFee = calc.calculateFee(original, wallet, newPriority);
+        BigDecimal delta = newFee.subtract(original.getFeeAmount());
+        if (delta.signum() <= 0) {
+            return TransactionResult.failure(String.format(
+                "Les nouveaux frais (%s) doivent dépasser les frais actuels (%s)", newFee, original.getFeeAmount()));
+        }
+        
+        if (wallet.getBalance().compareTo(delta) < 0) {
+            String message = String.format(
+                "Fonds insuffisants pour accélérer. Balance: %s, Supplément requis: %s", wallet.getBalance(), delta);
+            LOGGER.warning(message);
+            return TransactionResult.failure(message);
+        }
+        
+        Transaction replacement = new Transaction(original.getId(), original.getFromAddress(), original.getToAddress(),
+            original.getAmount(), newPriority, original.getCreatedAt(), newFee, TransactionStatus.PENDING,
+            original.getWalletId(), original.getCryptoType());
+        replacement.setSize(calc.estimateWeight(original));
+        if (!admissible.test(replacement)) {
+            return TransactionResult.failure(
+                "Remplacement refusé par le mempool: taux de frais insuffisant, ou transaction plus en attente");
+        }
+        
+        // Frais et débit du supplément écrits ensemble, ou pas du tout
+        Optional<BigDecimal> debited = transactionRepository.updateFeeWithDebit(replacement, delta);
+        if (!debited.isPresent()) {
+            return TransactionResult.failure("Transaction déjà confirmée ou introuvable en base, ou fonds insuffisants");
+        }
+        
+        BigDecimal newBalance = debited.get();
+        wallet.setBalance(newBalance);
+        
+        String message = String.format(
+            "Transaction accélérée. Nouveaux frais: %s (supplément: %s), Nouvelle balance: %s",
+            newFee, delta, newBalance);
+        LOGGER.info(message);
+        return TransactionResult.success(replacement, message);
+    }
+    
+    /**
+     * Annule un remplacement écrit en base mais que le mempool n'a pas pris: les
+     * frais d'origine sont remis et le supplément recrédité, ensemble.
+     * 
+     * @return false si la transaction n'est plus en attente en base
+     */
+    public boolean revertFee(Wallet wallet, Transaction replacement, Transaction original) {
+        BigDecimal delta = replacement.getFeeAmount().subtract(original.getFeeAmount());
+        // Un débit négatif recrédite le wallet dans la même transaction SQL
+        Optional<BigDecimal> credited = transactionRepository.updateFeeWithDebit(original, delta.negate());
+        if (!credited.isPresent()) {
+            LOGGER.warning("Annulation du remplacement impossible pour la transaction " + original.getId());
+            return false;
+        }
+        wallet.setBalance(credited.get());
+        LOGGER.info("Remplacement annulé, frais d'origine rétablis: " + original.getFeeAmount());
+        return true;
+    }
+    
+    /**
+     * Rejette une transaction en attente que le mempool n'a pas gardée (refusée
+     * sous le plancher de frais ou évincée faute de place): son statut passe à
+     * REJECTED et son wallet est recrédité du montant et des frais, ensemble.
+     * 
+     * @return false si la transaction n'est plus en attente en base
+     */
+    public boolean rejectTransaction(Transaction tx) {
+        Optional<BigDecimal> refund = transactionRepository.rejectWithRefund(tx);
+        if (!refund.isPresent()) {
+            LOGGER.warning("Rejet impossible pour la transaction " + tx.getId() + ": plus en attente en base");
+            return false;
+        }
+        tx.setStatus(TransactionStatus.REJECTED);
+        LOGGER.info(String.format("Transaction %s rejetée, wallet %s recrédité de %s",
+            tx.getId(), tx.getWalletId(), refund.get()));
+        return true;
+    }
+    
+    /**
+     * Ajoute des fonds à un wallet (simulation de réception de crypto). Le crédit
+     * est relatif en base: il ne peut pas écraser un débit concurrent.
+     * 
+     * @return false si le wallet n'a pas pu être crédité
+     */
+    public boolean addFunds(Wallet wallet, BigDecimal amount) {
+        Optional<BigDecimal> credited = walletRepository.credit(wallet.getId(), amount);
+        if (!credited.isPresent()) {
+            LOGGER.warning("Echec du crédit du wallet " + wallet.getId());
+            return false;
+        }
+        BigDecimal newBalance = credited.get();
         wallet.setBalance(newBalance);
-        walletRepository.save(wallet);
         
         LOGGER.info(String.format(
             "Fonds ajoutés au wallet %s. Montant: %s, Nouvelle balance: %s",
             wallet.getId(), amount, newBalance
         ));
+        return true;
     }
     
     /**
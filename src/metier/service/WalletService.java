@@ -3,12 +3,18 @@ package metier.service;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import metier.enums.CryptoType;
 import metier.enums.FeePriority;
 import metier.model.Transaction;
 import metier.model.Wallet;
+import repository.AsyncTransactionRepository;
+import repository.AsyncWalletRepository;
+import repository.Page;
+import repository.PageCursor;
 import repository.TransactionRepository;
 import repository.WalletRepository;
 import util.LoggerProvider;
@@ -24,11 +30,22 @@ public class WalletService {
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
     private final TransactionService transactionService;
+    // Pendants asynchrones des dépôts (null: les méthodes *Async s'exécutent dans l'appelant)
+    private final AsyncWalletRepository asyncWalletRepository;
+    private final AsyncTransactionRepository asyncTransactionRepository;
     
     public WalletService(WalletRepository walletRepository, TransactionRepository transactionRepository) {
+        this(walletRepository, transactionRepository, null, null);
+    }
+    
+    public WalletService(WalletRepository walletRepository, TransactionRepository transactionRepository,
+                         AsyncWalletRepository asyncWalletRepository,
+                         AsyncTransactionRepository asyncTransactionRepository) {
         this.walletRepository = walletRepository;
         this.transactionRepository = transactionRepository;
-        this.transactionService = new TransactionService(walletRepository);
+        this.transactionService = new TransactionService(walletRepository, transactionRepository);
+        this.asyncWalletRepository = asyncWalletRepository;
+        this.asyncTransactionRepository = asyncTransactionRepository;
     }
     
     /**
@@ -89,7 +106,24 @@ public class WalletService {
             return ServiceResult.failure("ID du wallet requis");
         }
         
-        Optional<Wallet> wallet = walletRepository.findById(walletId.trim());
+        return toWalletResult(walletRepository.findById(walletId.trim()));
+    }
+    
+    /**
+     * Trouve un wallet par ID sans bloquer l'appelant, qui peut poursuivre un
+     * autre traitement pendant la lecture
+     */
+    public CompletableFuture<ServiceResult<Wallet>> findWalletAsync(String walletId) {
+        if (walletId == null || walletId.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(ServiceResult.failure("ID du wallet requis"));
+        }
+        if (asyncWalletRepository == null) {
+            return CompletableFuture.completedFuture(findWallet(walletId));
+        }
+        return asyncWalletRepository.findById(walletId.trim()).thenApply(this::toWalletResult);
+    }
+    
+    private ServiceResult<Wallet> toWalletResult(Optional<Wallet> wallet) {
         if (wallet.isPresent()) {
             return ServiceResult.success(wallet.get(), "Wallet trouvé");
         } else {
@@ -121,7 +155,9 @@ public class WalletService {
         // Logique métier
         Wallet wallet = walletResult.getData();
         BigDecimal oldBalance = wallet.getBalance();
-        transactionService.addFunds(wallet, amount);
+        if (!transactionService.addFunds(wallet, amount)) {
+            return ServiceResult.failure("Echec de l'ajout des fonds en base");
+        }
         
         String message = String.format("Fonds ajoutés avec succès. Ancienne balance: %s, Nouvelle balance: %s", 
             oldBalance, wallet.getBalance());
@@ -134,6 +170,15 @@ public class WalletService {
      */
     public ServiceResult<Transaction> createTransaction(String walletId, String toAddress, 
                                                        String amountStr, String priorityInput) {
+        return createTransaction(walletId, toAddress, amountStr, priorityInput, tx -> true);
+    }
+    
+    /**
+     * Comme {@link #createTransaction(String, String, String, String)}, pour le
+     * mempool: {@code admissible} vérifie le plancher de frais avant tout débit.
+     */
+    public ServiceResult<Transaction> createTransaction(String walletId, String toAddress, String amountStr,
+                                                       String priorityInput, Predicate<Transaction> admissible) {
         // Validation du wallet
         ServiceResult<Wallet> walletResult = findWallet(walletId);
         if (!walletResult.isSuccess()) {
@@ -169,17 +214,114 @@ public class WalletService {
         }
         
         // Création de la transaction
-        TransactionService.TransactionResult result = transactionService.createTransaction(wallet, toAddress, amount, priority);
+        TransactionService.TransactionResult result =
+            transactionService.createTransaction(wallet, toAddress, amount, priority, admissible);
         
         if (result.isSuccess()) {
-            Transaction transaction = result.getTransaction();
-            transactionRepository.save(transaction);
-            return ServiceResult.success(transaction, result.getMessage());
+            // Déjà insérée avec le débit du wallet
+            return ServiceResult.success(result.getTransaction(), result.getMessage());
         } else {
             return ServiceResult.failure(result.getMessage());
         }
     }
     
+    /**
+     * Accélère une transaction en attente en augmentant ses frais (replace-by-fee).
+     * La ligne existante est mise à jour en base, aucune transaction n'est insérée.
+     */
+    public ServiceResult<Transaction> bumpFee(String transactionId, String priorityInput) {
+        return bumpFee(transactionId, priorityInput, tx -> true, tx -> true);
+    }
+    
+    /**
+     * Comme {@link #bumpFee(String, String)}, pour une transaction du mempool:
+     * {@code admissible} vérifie la règle de remplacement avant toute écriture, puis
+     * {@code install} met le remplacement à la place de l'original. S'il échoue
+     * (transaction minée ou évincée entre-temps), les frais d'origine sont remis
+     * et le supplément recrédité.
+     */
+    public ServiceResult<Transaction> bumpFee(String transactionId, String priorityInput,
+                                              Predicate<Transaction> admissible, Predicate<Transaction> install) {
+        if (transactionId == null || transactionId.trim().isEmpty()) {
+            return ServiceResult.failure("ID de la transaction requis");
+        }
+        
+        Optional<Transaction> original = transactionRepository.findById(transactionId.trim());
+        if (!original.isPresent()) {
+            return ServiceResult.failure("Transaction introuvable");
+        }
+        
+        FeePriority priority;
+        try {
+            priority = parsePriority(priorityInput);
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.failure("Priorité invalide. Utilisez 1=ECONOMIQUE, 2=STANDARD, 3=RAPIDE");
+        }
+        
+        ServiceResult<Wallet> walletResult = findWallet(original.get().getWalletId());
+        if (!walletResult.isSuccess()) {
+            return ServiceResult.failure(walletResult.getMessage());
+        }
+        
+        Wallet wallet = walletResult.getData();
+        TransactionService.TransactionResult result =
+            transactionService.replaceFee(wallet, original.get(), priority, admissible);
+        if (!result.isSuccess()) {
+            return ServiceResult.failure(result.getMessage());
+        }
+        if (!install.test(result.getTransaction())) {
+            if (!transactionService.revertFee(wallet, result.getTransaction(), original.get())) {
+                return ServiceResult.failure("Transaction sortie du mempool pendant le remplacement (confirmée)");
+            }
+            return ServiceResult.failure("Transaction sortie du mempool pendant le remplacement, frais d'origine rétablis");
+        }
+        return ServiceResult.success(result.getTransaction(), result.getMessage());
+    }
+    
+    /**
+     * Rejette une transaction que le mempool n'a pas gardée et recrédite son
+     * wallet du montant et des frais.
+     */
+    public ServiceResult<Transaction> rejectTransaction(Transaction tx) {
+        if (!transactionService.rejectTransaction(tx)) {
+            return ServiceResult.failure("Transaction " + tx.getId() + " plus en attente en base");
+        }
+        return ServiceResult.success(tx, "Transaction rejetée, montant et frais recrédités");
+    }
+    
+    /**
+     * Page de l'historique des transactions d'un wallet, de la plus récente à la
+     * plus ancienne; {@code after} est le curseur de la page précédente (null au début).
+     */
+    public ServiceResult<Page<Transaction>> findHistoryPage(String walletId, PageCursor after, int pageSize) {
+        ServiceResult<Wallet> walletResult = findWallet(walletId);
+        if (!walletResult.isSuccess()) {
+            return ServiceResult.failure(walletResult.getMessage());
+        }
+        Page<Transaction> page = transactionRepository.findPageByWalletId(walletResult.getData().getId(), after, pageSize);
+        return ServiceResult.success(page, page.getItems().size() + " transaction(s)");
+    }
+    
+    /**
+     * Comme {@link #findHistoryPage}, mais le wallet et la page sont lus en
+     * parallèle: la page d'un wallet inconnu est simplement vide, et écartée.
+     */
+    public CompletableFuture<ServiceResult<Page<Transaction>>> findHistoryPageAsync(String walletId, PageCursor after,
+                                                                                   int pageSize) {
+        if (walletId == null || walletId.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(ServiceResult.failure("ID du wallet requis"));
+        }
+        if (asyncWalletRepository == null || asyncTransactionRepository == null) {
+            return CompletableFuture.completedFuture(findHistoryPage(walletId, after, pageSize));
+        }
+        String id = walletId.trim();
+        CompletableFuture<Optional<Wallet>> wallet = asyncWalletRepository.findById(id);
+        CompletableFuture<Page<Transaction>> page = asyncTransactionRepository.findPageByWalletId(id, after, pageSize);
+        return wallet.thenCombine(page, (w, p) -> w.isPresent()
+            ? ServiceResult.success(p, p.getItems().size() + " transaction(s)")
+            : ServiceResult.<Page<Transaction>>failure("Wallet introuvable"));
+    }
+    
     /**
      * Compare les frais pour différentes priorités
      */
@@ -0,0 +1,30 @@
+package repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+
+/**
+ * Pendant asynchrone de {@link TransactionRepository}. Les lectures en flux
+ * n'y figurent pas: un flux garde sa connexion jusqu'à sa fermeture par
+ * l'appelant, les pages en tiennent lieu.
+ */
+public interface AsyncTransactionRepository {
+    CompletableFuture<Void> save(Transaction tx);
+    CompletableFuture<Void> saveAll(Collection<Transaction> transactions);
+    CompletableFuture<Optional<BigDecimal>> saveWithDebit(Transaction tx, BigDecimal debit);
+    CompletableFuture<Optional<Transaction>> findById(String id);
+    CompletableFuture<List<Transaction>> findPending();
+    CompletableFuture<List<Transaction>> findByWalletId(String walletId);
+    CompletableFuture<Page<Transaction>> findPageByWalletId(String walletId, PageCursor after, int limit);
+    CompletableFuture<Void> updateStatus(String id, TransactionStatus status);
+    CompletableFuture<Boolean> updateStatusAll(Collection<String> ids, TransactionStatus status);
+    CompletableFuture<Boolean> updateFee(String id, FeePriority feePriority, BigDecimal feeAmount);
+    CompletableFuture<Optional<BigDecimal>> updateFeeWithDebit(Transaction replacement, BigDecimal debit);
+}
@@ -0,0 +1,25 @@
+package repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import metier.model.Wallet;
+
+/**
+ * Pendant asynchrone de {@link WalletRepository}: chaque appel rend aussitôt
+ * un {@link CompletableFuture} complété à la fin de l'appel au dépôt.
+ */
+public interface AsyncWalletRepository {
+    CompletableFuture<Void> save(Wallet wallet);
+    CompletableFuture<Void> saveAll(Collection<Wallet> wallets);
+    CompletableFuture<Optional<Wallet>> findById(String id);
+    CompletableFuture<Optional<Wallet>> findByAddress(String address);
+    CompletableFuture<Void> updateBalance(String id, BigDecimal newBalance);
+    CompletableFuture<Boolean> updateBalanceAll(Map<String, BigDecimal> balances);
+    CompletableFuture<Optional<BigDecimal>> credit(String id, BigDecimal amount);
+    CompletableFuture<List<Wallet>> findAll();
+}
@@ -0,0 +1,21 @@
+package repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page de résultats et curseur de la page suivante (null sur la dernière page).
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final PageCursor next;
+
+    public Page(List<T> items, PageCursor next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    public List<T> getItems() { return items; }
+    public PageCursor getNext() { return next; }
+    public boolean hasNext() { return next != null; }
+}
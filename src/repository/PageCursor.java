@@ -0,0 +1,29 @@
+package repository;
+
+import java.time.Instant;
+
+/**
+ * Position dans un parcours paginé par clé (created_at, pk): la page suivante
+ * commence strictement après cette ligne, quel que soit le nombre de lignes
+ * déjà parcourues ou insérées entre-temps.
+ */
+public final class PageCursor {
+    private final Instant createdAt;
+    private final long pk;
+
+    public PageCursor(Instant createdAt, long pk) {
+        if (createdAt == null) {
+            throw new IllegalArgumentException("Date du curseur obligatoire");
+        }
+        this.createdAt = createdAt;
+        this.pk = pk;
+    }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public long getPk() { return pk; }
+
+    @Override
+    public String toString() {
+        return createdAt + "#" + pk;
+    }
+}
@@ -0,0 +1,9 @@
+package repository;
+
+/**
+ * Stockage des wallets et des transactions: base de données ou mémoire.
+ */
+public enum RepositoryType {
+	JDBC,
+	MEMORY
+}
@@ -1,17 +1,31 @@
 package repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import metier.enums.FeePriority;
 import metier.enums.TransactionStatus;
 import metier.model.Transaction;
 
 public interface TransactionRepository {
     void save(Transaction tx);
+    boolean insert(Transaction tx);
+    void saveAll(Collection<Transaction> transactions);
+    Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit);
     Optional<Transaction> findById(String id);
     List<Transaction> findPending();
     List<Transaction> findByWalletId(String walletId);
+    Stream<Transaction> streamPending();
+    Stream<Transaction> streamByWalletId(String walletId);
+    Page<Transaction> findPageByWalletId(String walletId, PageCursor after, int limit);
     void updateStatus(String id, TransactionStatus status);
+    boolean updateStatusAll(Collection<String> ids, TransactionStatus status);
+    boolean updateFee(String id, FeePriority feePriority, BigDecimal feeAmount);
+    Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit);
+    Optional<BigDecimal> rejectWithRefund(Transaction tx);
 }
 
 
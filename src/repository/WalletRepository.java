@@ -1,16 +1,21 @@
 package repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import metier.model.Wallet;
 
 public interface WalletRepository {
     void save(Wallet wallet);
+    void saveAll(Collection<Wallet> wallets);
     Optional<Wallet> findById(String id);
     Optional<Wallet> findByAddress(String address);
     void updateBalance(String id, BigDecimal newBalance);
+    boolean updateBalanceAll(Map<String, BigDecimal> balances);
+    Optional<BigDecimal> credit(String id, BigDecimal amount);
     List<Wallet> findAll();
 }
 
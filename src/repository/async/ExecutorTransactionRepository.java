@@ -0,0 +1,85 @@
+package repository.async;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import repository.AsyncTransactionRepository;
+import repository.Page;
+import repository.PageCursor;
+import repository.TransactionRepository;
+
+/**
+ * Dépôt de transactions asynchrone: chaque appel est confié au
+ * {@link RepositoryExecutor} et exécuté sur le dépôt synchrone.
+ */
+public class ExecutorTransactionRepository implements AsyncTransactionRepository {
+
+	private final TransactionRepository delegate;
+	private final RepositoryExecutor executor;
+
+	public ExecutorTransactionRepository(TransactionRepository delegate, RepositoryExecutor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<Void> save(Transaction tx) {
+		return executor.run(() -> delegate.save(tx));
+	}
+
+	@Override
+	public CompletableFuture<Void> saveAll(Collection<Transaction> transactions) {
+		return executor.run(() -> delegate.saveAll(transactions));
+	}
+
+	@Override
+	public CompletableFuture<Optional<BigDecimal>> saveWithDebit(Transaction tx, BigDecimal debit) {
+		return executor.supply(() -> delegate.saveWithDebit(tx, debit));
+	}
+
+	@Override
+	public CompletableFuture<Optional<Transaction>> findById(String id) {
+		return executor.supply(() -> delegate.findById(id));
+	}
+
+	@Override
+	public CompletableFuture<List<Transaction>> findPending() {
+		return executor.supply(delegate::findPending);
+	}
+
+	@Override
+	public CompletableFuture<List<Transaction>> findByWalletId(String walletId) {
+		return executor.supply(() -> delegate.findByWalletId(walletId));
+	}
+
+	@Override
+	public CompletableFuture<Page<Transaction>> findPageByWalletId(String walletId, PageCursor after, int limit) {
+		return executor.supply(() -> delegate.findPageByWalletId(walletId, after, limit));
+	}
+
+	@Override
+	public CompletableFuture<Void> updateStatus(String id, TransactionStatus status) {
+		return executor.run(() -> delegate.updateStatus(id, status));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> updateStatusAll(Collection<String> ids, TransactionStatus status) {
+		return executor.supply(() -> delegate.updateStatusAll(ids, status));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> updateFee(String id, FeePriority feePriority, BigDecimal feeAmount) {
+		return executor.supply(() -> delegate.updateFee(id, feePriority, feeAmount));
+	}
+
+	@Override
+	public CompletableFuture<Optional<BigDecimal>> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		return executor.supply(() -> delegate.updateFeeWithDebit(replacement, debit));
+	}
+}
@@ -0,0 +1,68 @@
+package repository.async;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import metier.model.Wallet;
+import repository.AsyncWalletRepository;
+import repository.WalletRepository;
+
+/**
+ * Dépôt de wallets asynchrone: chaque appel est confié au
+ * {@link RepositoryExecutor} et exécuté sur le dépôt synchrone, avec ses
+ * éventuels cache, écriture différée et ledger.
+ */
+public class ExecutorWalletRepository implements AsyncWalletRepository {
+
+	private final WalletRepository delegate;
+	private final RepositoryExecutor executor;
+
+	public ExecutorWalletRepository(WalletRepository delegate, RepositoryExecutor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<Void> save(Wallet wallet) {
+		return executor.run(() -> delegate.save(wallet));
+	}
+
+	@Override
+	public CompletableFuture<Void> saveAll(Collection<Wallet> wallets) {
+		return executor.run(() -> delegate.saveAll(wallets));
+	}
+
+	@Override
+	public CompletableFuture<Optional<Wallet>> findById(String id) {
+		return executor.supply(() -> delegate.findById(id));
+	}
+
+	@Override
+	public CompletableFuture<Optional<Wallet>> findByAddress(String address) {
+		return executor.supply(() -> delegate.findByAddress(address));
+	}
+
+	@Override
+	public CompletableFuture<Void> updateBalance(String id, BigDecimal newBalance) {
+		return executor.run(() -> delegate.updateBalance(id, newBalance));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> updateBalanceAll(Map<String, BigDecimal> balances) {
+		return executor.supply(() -> delegate.updateBalanceAll(balances));
+	}
+
+	@Override
+	public CompletableFuture<Optional<BigDecimal>> credit(String id, BigDecimal amount) {
+		return executor.supply(() -> delegate.credit(id, amount));
+	}
+
+	@Override
+	public CompletableFuture<List<Wallet>> findAll() {
+		return executor.supply(delegate::findAll);
+	}
+}
@@ -0,0 +1,128 @@
+package repository.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import util.LoggerProvider;
+
+/**
+ * Exécute les appels bloquants aux dépôts hors du thread appelant.
+ *
+ * Sur un JDK qui en dispose (21 et plus), chaque appel a son thread virtuel:
+ * un appel bloqué sur la base ne retient aucun thread système, et des milliers
+ * d'appels en attente ne coûtent que quelques threads. Sinon, un pool de
+ * {@code maxConcurrency} threads système est utilisé.
+ *
+ * Dans les deux cas, au plus {@code maxConcurrency} appels s'exécutent à la
+ * fois (en pratique db.maxConnections): les suivants attendent leur tour ici,
+ * sans emprunter de connexion ni atteindre le délai d'attente du pool.
+ */
+public final class RepositoryExecutor implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(RepositoryExecutor.class.getName());
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final boolean virtualThreads;
+
+	private RepositoryExecutor(ExecutorService executor, int maxConcurrency, boolean virtualThreads) {
+		this.executor = executor;
+		this.permits = new Semaphore(maxConcurrency, true);
+		this.virtualThreads = virtualThreads;
+	}
+
+	public static RepositoryExecutor create(int maxConcurrency) {
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("Concurrence maximale invalide: " + maxConcurrency);
+		}
+		ExecutorService virtual = newVirtualThreadExecutor();
+		if (virtual != null) {
+			LOGGER.info("Appels asynchrones aux dépôts sur threads virtuels, " + maxConcurrency + " à la fois");
+			return new RepositoryExecutor(virtual, maxConcurrency, true);
+		}
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "repository-async-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		LOGGER.info("Threads virtuels indisponibles, appels asynchrones aux dépôts sur " + maxConcurrency
+				+ " threads");
+		return new RepositoryExecutor(Executors.newFixedThreadPool(maxConcurrency, factory), maxConcurrency, false);
+	}
+
+	public boolean isVirtualThreads() { return virtualThreads; }
+
+	/**
+	 * Lance l'appel; le résultat est complété par sa valeur ou son exception.
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> call) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					result.completeExceptionally(e);
+					return;
+				}
+				try {
+					result.complete(call.get());
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	public CompletableFuture<Void> run(Runnable call) {
+		return supply(() -> {
+			call.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Attend la fin des appels lancés, quelques secondes au plus.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.warning("Appels asynchrones aux dépôts encore en cours à l'arrêt");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * {@code Executors.newVirtualThreadPerTaskExecutor()} par réflexion: le code
+	 * reste compilable et exécutable sur les JDK antérieurs.
+	 *
+	 * @return null si le JDK n'a pas de threads virtuels
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
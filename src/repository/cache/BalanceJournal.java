@@ -0,0 +1,251 @@
+package repository.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import util.LoggerProvider;
+
+/**
+ * Journal de durabilité des balances, découpé en segments numérotés.
+ *
+ * Chaque enregistrement porte l'id du wallet, un numéro de version propre au
+ * wallet et la balance absolue: à la relecture, la version la plus haute de
+ * chaque wallet l'emporte, quel que soit l'ordre d'écriture entre threads.
+ * Un enregistrement est encadré par sa longueur et son CRC32; une fin de
+ * segment tronquée par un arrêt brutal est ignorée.
+ *
+ * Les écritures ne sont acquittées qu'après {@code force()}: les threads qui
+ * attendent ensemble la synchronisation la partagent (group commit), un seul
+ * {@code force()} couvrant toutes les écritures faites jusque-là.
+ */
+final class BalanceJournal implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(BalanceJournal.class.getName());
+	private static final String PREFIX = "balances-";
+	private static final String SUFFIX = ".journal";
+	// Id et balance sont écrits en UTF modifié (64 Ko au plus chacun)
+	private static final int MAX_RECORD_BYTES = 2 * 65_537 + 8;
+
+	/**
+	 * Balance relue du journal et sa version.
+	 */
+	static final class Record {
+		final BigDecimal balance;
+		final long version;
+
+		Record(BigDecimal balance, long version) {
+			this.balance = balance;
+			this.version = version;
+		}
+	}
+
+	private final Path directory;
+	private final Object syncLock = new Object();
+	// Gardés par this
+	private FileChannel channel;
+	private long segment;
+	private long segmentStartSeq;
+	private long writtenSeq;
+	private volatile long syncedSeq;
+
+	/**
+	 * Ouvre un nouveau segment après les segments existants, qui restent en
+	 * place jusqu'à {@link #deleteSegmentsBefore(long)}.
+	 */
+	BalanceJournal(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+		List<Long> existing = segments();
+		this.segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+		this.channel = open(segment);
+	}
+
+	/**
+	 * Relit tous les segments présents: version la plus haute de chaque wallet.
+	 */
+	Map<String, Record> replay() throws IOException {
+		Map<String, Record> latest = new HashMap<>();
+		for (long s : segments()) {
+			int count = 0;
+			try (InputStream in = Files.newInputStream(path(s));
+				 DataInputStream data = new DataInputStream(in)) {
+				while (true) {
+					int length;
+					try {
+						length = data.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					if (length <= 0 || length > MAX_RECORD_BYTES) {
+						LOGGER.warning("Longueur d'enregistrement invalide dans " + path(s) + ", fin du segment ignorée");
+						break;
+					}
+					byte[] payload = new byte[length];
+					data.readFully(payload);
+					int crc = data.readInt();
+					if (crc != crc(payload)) {
+						LOGGER.warning("Enregistrement corrompu dans " + path(s) + ", fin du segment ignorée");
+						break;
+					}
+					DataInputStream p = new DataInputStream(new ByteArrayInputStream(payload));
+					String id = p.readUTF();
+					long version = p.readLong();
+					BigDecimal balance = new BigDecimal(p.readUTF());
+					Record previous = latest.get(id);
+					if (previous == null || previous.version < version) {
+						latest.put(id, new Record(balance, version));
+					}
+					count++;
+				}
+			} catch (EOFException e) {
+				LOGGER.warning("Segment " + path(s) + " tronqué, fin ignorée");
+			}
+			LOGGER.info("Journal des balances relu: " + path(s) + " (" + count + " enregistrements)");
+		}
+		return latest;
+	}
+
+	/**
+	 * Ajoute un enregistrement (sans attendre sa synchronisation).
+	 *
+	 * @return son numéro, à passer à {@link #sync(long)}
+	 */
+	synchronized long append(String walletId, long version, BigDecimal balance) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(walletId);
+		out.writeLong(version);
+		out.writeUTF(balance.toPlainString());
+		byte[] payload = bytes.toByteArray();
+		ByteBuffer buffer = ByteBuffer.allocate(payload.length + 8);
+		buffer.putInt(payload.length).put(payload).putInt(crc(payload));
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		return ++writtenSeq;
+	}
+
+	/**
+	 * Attend que l'enregistrement {@code seq} soit sur disque. Un seul thread
+	 * synchronise à la fois; ceux qui attendaient derrière lui sont en général
+	 * déjà couverts quand ils obtiennent le verrou.
+	 */
+	void sync(long seq) throws IOException {
+		if (syncedSeq >= seq) {
+			return;
+		}
+		synchronized (syncLock) {
+			if (syncedSeq >= seq) {
+				return;
+			}
+			long target;
+			FileChannel current;
+			synchronized (this) {
+				target = writtenSeq;
+				current = channel;
+			}
+			current.force(false);
+			syncedSeq = target;
+		}
+	}
+
+	/**
+	 * Ferme le segment courant et en ouvre un nouveau.
+	 *
+	 * @return le numéro du nouveau segment: les précédents ne contiennent que des
+	 *         écritures antérieures à la rotation
+	 */
+	long rotate() throws IOException {
+		synchronized (syncLock) {
+			synchronized (this) {
+				channel.force(false);
+				channel.close();
+				syncedSeq = writtenSeq;
+				segment++;
+				segmentStartSeq = writtenSeq;
+				channel = open(segment);
+				return segment;
+			}
+		}
+	}
+
+	/**
+	 * Supprime les segments antérieurs à {@code segment}, une fois leurs balances
+	 * écrites en base.
+	 */
+	void deleteSegmentsBefore(long segment) throws IOException {
+		for (long s : segments()) {
+			if (s < segment) {
+				Files.deleteIfExists(path(s));
+			}
+		}
+	}
+
+	/**
+	 * Ferme le segment courant; supprimé s'il est vide, pour que les ouvertures
+	 * successives sans écriture n'accumulent pas de segments.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (syncLock) {
+			synchronized (this) {
+				channel.force(false);
+				channel.close();
+				syncedSeq = writtenSeq;
+				if (writtenSeq == segmentStartSeq) {
+					Files.deleteIfExists(path(segment));
+				}
+			}
+		}
+	}
+
+	private List<Long> segments() throws IOException {
+		List<Long> result = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					result.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+				} catch (NumberFormatException e) {
+					LOGGER.warning("Fichier ignoré dans le journal: " + name);
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private Path path(long s) {
+		return directory.resolve(String.format("%s%012d%s", PREFIX, s, SUFFIX));
+	}
+
+	private FileChannel open(long s) throws IOException {
+		return FileChannel.open(path(s), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private static int crc(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+}
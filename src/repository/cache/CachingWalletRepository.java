@@ -0,0 +1,296 @@
+package repository.cache;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import metier.enums.CryptoType;
+import metier.model.BitcoinWallet;
+import metier.model.EthereumWallet;
+import metier.model.Wallet;
+import repository.WalletRepository;
+
+/**
+ * Cache en lecture des wallets devant un {@link WalletRepository}.
+ *
+ * {@code findById} et {@code findByAddress} sont servis depuis la mémoire tant
+ * que l'entrée n'a pas expiré (TTL), sinon lus dans le dépôt sous-jacent puis
+ * mis en cache. Le cache est borné: quand il est plein, l'entrée la moins
+ * récemment utilisée n'est remplacée que si le nouveau wallet est plus
+ * fréquemment demandé qu'elle (admission TinyLFU, voir {@link FrequencySketch}),
+ * ce qui évite qu'un parcours ponctuel chasse les wallets les plus consultés.
+ *
+ * Toute écriture passe par le dépôt sous-jacent puis invalide l'entrée du
+ * wallet. Une lecture commencée avant une invalidation du même wallet n'est pas
+ * mise en cache; les invalidations sont comptées par tranche d'ids, de sorte
+ * qu'une écriture ne bloque que les lectures de sa tranche.
+ * Les wallets rendus sont des copies: les modifier n'altère pas le cache.
+ */
+public class CachingWalletRepository implements WalletRepository {
+
+	// Tranches de compteurs d'invalidations (puissance de 2)
+	private static final int GENERATION_STRIPES = 64;
+
+	/**
+	 * Wallet en cache et son échéance.
+	 */
+	private static final class CachedWallet {
+		final Wallet wallet;
+		final long expiresAt;
+
+		CachedWallet(Wallet wallet, long expiresAt) {
+			this.wallet = wallet;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final WalletRepository delegate;
+	private final int maximumSize;
+	private final long ttlNanos;
+	// Gardés par this; ordre d'accès: l'entrée la moins récemment utilisée en tête
+	private final LinkedHashMap<String, CachedWallet> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, String> idsByAddress = new HashMap<>();
+	private final FrequencySketch sketch;
+	// Gardé par this; invalidations de chaque tranche d'ids
+	private final long[] invalidations = new long[GENERATION_STRIPES];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	public CachingWalletRepository(WalletRepository delegate, int maximumSize, long ttlMillis) {
+		if (maximumSize <= 0 || ttlMillis <= 0) {
+			throw new IllegalArgumentException("Paramètres du cache des wallets invalides");
+		}
+		this.delegate = delegate;
+		this.maximumSize = maximumSize;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	@Override
+	public Optional<Wallet> findById(String id) {
+		Wallet cached = lookup(id);
+		if (cached != null) {
+			hits.increment();
+			return Optional.of(copy(cached));
+		}
+		misses.increment();
+		long generation = generation(id);
+		Optional<Wallet> loaded = delegate.findById(id);
+		loaded.ifPresent(wallet -> admit(wallet, generation));
+		return loaded;
+	}
+
+	@Override
+	public Optional<Wallet> findByAddress(String address) {
+		Wallet cached = lookupByAddress(address);
+		if (cached != null) {
+			hits.increment();
+			return Optional.of(copy(cached));
+		}
+		misses.increment();
+		// L'id n'est connu qu'après la lecture: toutes les tranches sont relevées
+		long[] generations = generations();
+		Optional<Wallet> loaded = delegate.findByAddress(address);
+		loaded.ifPresent(wallet -> {
+			synchronized (this) {
+				sketch.increment(wallet.getId());
+			}
+			admit(wallet, generations[stripe(wallet.getId())]);
+		});
+		return loaded;
+	}
+
+	@Override
+	public List<Wallet> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public void save(Wallet wallet) {
+		delegate.save(wallet);
+		invalidate(wallet.getId());
+	}
+
+	@Override
+	public void saveAll(Collection<Wallet> wallets) {
+		delegate.saveAll(wallets);
+		for (Wallet wallet : wallets) {
+			invalidate(wallet.getId());
+		}
+	}
+
+	@Override
+	public void updateBalance(String id, BigDecimal newBalance) {
+		delegate.updateBalance(id, newBalance);
+		invalidate(id);
+	}
+
+	@Override
+	public boolean updateBalanceAll(Map<String, BigDecimal> balances) {
+		boolean updated = delegate.updateBalanceAll(balances);
+		for (String id : balances.keySet()) {
+			invalidate(id);
+		}
+		return updated;
+	}
+
+	@Override
+	public Optional<BigDecimal> credit(String id, BigDecimal amount) {
+		Optional<BigDecimal> balance = delegate.credit(id, amount);
+		invalidate(id);
+		return balance;
+	}
+
+	/**
+	 * Retire le wallet du cache, après une modification faite hors de ce dépôt
+	 * (débit par le dépôt des transactions par exemple).
+	 */
+	public synchronized void invalidate(String id) {
+		invalidations[stripe(id)]++;
+		CachedWallet removed = entries.remove(id);
+		if (removed != null) {
+			idsByAddress.remove(removed.wallet.getAddress());
+		}
+	}
+
+	/**
+	 * Compteurs du cache (succès, échecs, évictions).
+	 */
+	public Stats getStats() {
+		int size;
+		synchronized (this) {
+			size = entries.size();
+		}
+		return new Stats(size, maximumSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(),
+				rejections.sum());
+	}
+
+	private synchronized long generation(String id) {
+		return invalidations[stripe(id)];
+	}
+
+	private synchronized long[] generations() {
+		return invalidations.clone();
+	}
+
+	private static int stripe(String id) {
+		int h = id.hashCode();
+		return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+	}
+
+	private synchronized Wallet lookup(String id) {
+		sketch.increment(id);
+		CachedWallet entry = entries.get(id);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expiresAt - System.nanoTime() <= 0) {
+			remove(id, entry);
+			expirations.increment();
+			return null;
+		}
+		return entry.wallet;
+	}
+
+	private synchronized Wallet lookupByAddress(String address) {
+		String id = idsByAddress.get(address);
+		return id == null ? null : lookup(id);
+	}
+
+	/**
+	 * Met en cache un wallet lu dans le dépôt, sauf si sa tranche a été
+	 * invalidée depuis le début de la lecture ou si le cache est plein et que le
+	 * wallet est moins demandé que l'entrée la moins récemment utilisée.
+	 */
+	private synchronized void admit(Wallet wallet, long generation) {
+		if (generation != invalidations[stripe(wallet.getId())]) {
+			return;
+		}
+		String id = wallet.getId();
+		if (!entries.containsKey(id) && entries.size() >= maximumSize) {
+			Iterator<Map.Entry<String, CachedWallet>> it = entries.entrySet().iterator();
+			Map.Entry<String, CachedWallet> victim = it.next();
+			if (victim.getValue().expiresAt - System.nanoTime() <= 0) {
+				expirations.increment();
+			} else if (sketch.frequency(id) > sketch.frequency(victim.getKey())) {
+				evictions.increment();
+			} else {
+				rejections.increment();
+				return;
+			}
+			it.remove();
+			idsByAddress.remove(victim.getValue().wallet.getAddress());
+		}
+		CachedWallet previous = entries.put(id, new CachedWallet(copy(wallet), System.nanoTime() + ttlNanos));
+		if (previous != null) {
+			idsByAddress.remove(previous.wallet.getAddress());
+		}
+		idsByAddress.put(wallet.getAddress(), id);
+	}
+
+	private void remove(String id, CachedWallet entry) {
+		entries.remove(id);
+		idsByAddress.remove(entry.wallet.getAddress());
+	}
+
+	private static Wallet copy(Wallet wallet) {
+		return wallet.getCryptoType() == CryptoType.BITCOIN
+				? new BitcoinWallet(wallet.getId(), wallet.getAddress(), wallet.getBalance(), wallet.getCreatedAt())
+				: new EthereumWallet(wallet.getId(), wallet.getAddress(), wallet.getBalance(), wallet.getCreatedAt());
+	}
+
+	/**
+	 * Instantané des compteurs du cache.
+	 */
+	public static class Stats {
+		private final int size;
+		private final int maximumSize;
+		private final long hitCount;
+		private final long missCount;
+		private final long evictionCount;
+		private final long expirationCount;
+		private final long rejectionCount;
+
+		public Stats(int size, int maximumSize, long hitCount, long missCount, long evictionCount,
+				long expirationCount, long rejectionCount) {
+			this.size = size;
+			this.maximumSize = maximumSize;
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.expirationCount = expirationCount;
+			this.rejectionCount = rejectionCount;
+		}
+
+		public int getSize() { return size; }
+		public int getMaximumSize() { return maximumSize; }
+		public long getHitCount() { return hitCount; }
+		public long getMissCount() { return missCount; }
+		public long getEvictionCount() { return evictionCount; }
+		public long getExpirationCount() { return expirationCount; }
+		public long getRejectionCount() { return rejectionCount; }
+
+		public double getHitRate() {
+			long requests = hitCount + missCount;
+			return requests == 0 ? 0.0 : (double) hitCount / requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("taille=%d/%d succès=%d échecs=%d (%.1f%%) évictions=%d expirations=%d refus=%d",
+					size, maximumSize, hitCount, missCount, 100 * getHitRate(), evictionCount, expirationCount,
+					rejectionCount);
+		}
+	}
+}
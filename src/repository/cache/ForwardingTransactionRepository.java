@@ -0,0 +1,85 @@
+package repository.cache;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import repository.Page;
+import repository.PageCursor;
+import repository.TransactionRepository;
+
+/**
+ * Base des dépôts de transactions qui en décorent un autre: toutes les
+ * opérations sont déléguées, les sous-classes ne redéfinissent que celles
+ * qu'elles modifient.
+ */
+public abstract class ForwardingTransactionRepository implements TransactionRepository {
+
+	protected final TransactionRepository delegate;
+
+	protected ForwardingTransactionRepository(TransactionRepository delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void save(Transaction tx) { delegate.save(tx); }
+
+	@Override
+	public boolean insert(Transaction tx) { return delegate.insert(tx); }
+
+	@Override
+	public void saveAll(Collection<Transaction> transactions) { delegate.saveAll(transactions); }
+
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		return delegate.saveWithDebit(tx, debit);
+	}
+
+	@Override
+	public Optional<Transaction> findById(String id) { return delegate.findById(id); }
+
+	@Override
+	public List<Transaction> findPending() { return delegate.findPending(); }
+
+	@Override
+	public List<Transaction> findByWalletId(String walletId) { return delegate.findByWalletId(walletId); }
+
+	@Override
+	public Stream<Transaction> streamPending() { return delegate.streamPending(); }
+
+	@Override
+	public Stream<Transaction> streamByWalletId(String walletId) { return delegate.streamByWalletId(walletId); }
+
+	@Override
+	public Page<Transaction> findPageByWalletId(String walletId, PageCursor after, int limit) {
+		return delegate.findPageByWalletId(walletId, after, limit);
+	}
+
+	@Override
+	public void updateStatus(String id, TransactionStatus status) { delegate.updateStatus(id, status); }
+
+	@Override
+	public boolean updateStatusAll(Collection<String> ids, TransactionStatus status) {
+		return delegate.updateStatusAll(ids, status);
+	}
+
+	@Override
+	public boolean updateFee(String id, FeePriority feePriority, BigDecimal feeAmount) {
+		return delegate.updateFee(id, feePriority, feeAmount);
+	}
+
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		return delegate.updateFeeWithDebit(replacement, debit);
+	}
+
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		return delegate.rejectWithRefund(tx);
+	}
+}
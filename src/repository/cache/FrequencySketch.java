@@ -0,0 +1,73 @@
+package repository.cache;
+
+/**
+ * Estimation compacte de la fréquence d'accès récente des clés (count-min
+ * sketch à compteurs 4 bits), utilisée pour l'admission dans le cache des
+ * wallets à la manière de TinyLFU.
+ *
+ * Quatre rangées de compteurs saturant à 15; la fréquence d'une clé est le
+ * minimum de ses quatre compteurs. Tous les compteurs sont divisés par deux
+ * après {@code 10 * capacité} incréments, pour que les accès anciens pèsent
+ * de moins en moins. Non thread-safe: utilisé sous le verrou du cache.
+ */
+final class FrequencySketch {
+
+	private static final int DEPTH = 4;
+	private static final int MAX_COUNT = 15;
+	private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+	private final byte[] counters;
+	private final int widthMask;
+	private final int sampleSize;
+	private int additions;
+
+	FrequencySketch(int capacity) {
+		int width = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+		this.counters = new byte[DEPTH * width];
+		this.widthMask = width - 1;
+		this.sampleSize = 10 * Math.max(16, capacity);
+	}
+
+	/**
+	 * Enregistre un accès à la clé.
+	 */
+	void increment(Object key) {
+		int hash = key.hashCode();
+		boolean added = false;
+		for (int row = 0; row < DEPTH; row++) {
+			int index = index(hash, row);
+			if (counters[index] < MAX_COUNT) {
+				counters[index]++;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Fréquence estimée de la clé (jamais sous-estimée, 15 au plus).
+	 */
+	int frequency(Object key) {
+		int hash = key.hashCode();
+		int min = MAX_COUNT;
+		for (int row = 0; row < DEPTH; row++) {
+			min = Math.min(min, counters[index(hash, row)]);
+		}
+		return min;
+	}
+
+	private void reset() {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = (byte) (counters[i] >>> 1);
+		}
+		additions /= 2;
+	}
+
+	private int index(int hash, int row) {
+		int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+		h ^= h >>> 15;
+		return row * (widthMask + 1) + (h & widthMask);
+	}
+}
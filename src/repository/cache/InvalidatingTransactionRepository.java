@@ -0,0 +1,49 @@
+package repository.cache;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import metier.model.Transaction;
+import repository.TransactionRepository;
+
+/**
+ * Dépôt de transactions associé à un {@link CachingWalletRepository}: les
+ * opérations qui débitent un wallet sans passer par le dépôt des wallets
+ * invalident son entrée en cache. Tout le reste est délégué.
+ */
+public class InvalidatingTransactionRepository extends ForwardingTransactionRepository {
+
+	private final CachingWalletRepository wallets;
+
+	public InvalidatingTransactionRepository(TransactionRepository delegate, CachingWalletRepository wallets) {
+		super(delegate);
+		this.wallets = wallets;
+	}
+
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		try {
+			return delegate.saveWithDebit(tx, debit);
+		} finally {
+			wallets.invalidate(tx.getWalletId());
+		}
+	}
+
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		try {
+			return delegate.updateFeeWithDebit(replacement, debit);
+		} finally {
+			wallets.invalidate(replacement.getWalletId());
+		}
+	}
+
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		try {
+			return delegate.rejectWithRefund(tx);
+		} finally {
+			wallets.invalidate(tx.getWalletId());
+		}
+	}
+}
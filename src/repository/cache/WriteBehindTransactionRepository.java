@@ -0,0 +1,71 @@
+package repository.cache;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import metier.model.Transaction;
+import repository.TransactionRepository;
+
+/**
+ * Dépôt de transactions associé à un {@link WriteBehindWalletRepository}: les
+ * débits se font sur les balances en mémoire, qui font foi, et non par une
+ * mise à jour conditionnelle en base. Tout le reste est délégué.
+ */
+public class WriteBehindTransactionRepository extends ForwardingTransactionRepository {
+
+	private final WriteBehindWalletRepository wallets;
+
+	public WriteBehindTransactionRepository(TransactionRepository delegate, WriteBehindWalletRepository wallets) {
+		super(delegate);
+		this.wallets = wallets;
+	}
+
+	/**
+	 * Débite la balance en mémoire (refusé si elle ne couvre pas le montant, sous
+	 * le verrou du wallet), puis insère la transaction. Le débit n'est recrédité
+	 * (et l'envoi refusé) que si l'insertion elle-même a échoué.
+	 */
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		Optional<BigDecimal> balance = wallets.debit(tx.getWalletId(), debit);
+		if (!balance.isPresent()) {
+			return balance;
+		}
+		if (!delegate.insert(tx)) {
+			wallets.credit(tx.getWalletId(), debit);
+			return Optional.empty();
+		}
+		return balance;
+	}
+
+	/**
+	 * Débite le supplément en mémoire puis met à jour les frais; le débit est
+	 * recrédité si la transaction n'est plus en attente.
+	 */
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		Optional<BigDecimal> balance = wallets.debit(replacement.getWalletId(), debit);
+		if (!balance.isPresent()) {
+			return balance;
+		}
+		if (!delegate.updateFee(replacement.getId(), replacement.getFeePriority(), replacement.getFeeAmount())) {
+			wallets.credit(replacement.getWalletId(), debit);
+			return Optional.empty();
+		}
+		return balance;
+	}
+
+	/**
+	 * Rejette la transaction en base puis recrédite aussi la balance en mémoire:
+	 * le crédit écrit en base sera recouvert par la prochaine écriture différée
+	 * du wallet, qui l'inclut.
+	 */
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		Optional<BigDecimal> refund = delegate.rejectWithRefund(tx);
+		if (refund.isPresent()) {
+			wallets.credit(tx.getWalletId(), refund.get());
+		}
+		return refund;
+	}
+}
@@ -0,0 +1,305 @@
+package repository.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+import metier.model.Wallet;
+import repository.WalletRepository;
+import util.LoggerProvider;
+
+/**
+ * Couche d'écriture différée des balances devant un {@link WalletRepository}.
+ *
+ * Les balances des wallets touchés sont tenues en mémoire et font foi: crédits,
+ * débits et mises à jour y sont appliqués atomiquement par wallet, écrits au
+ * journal ({@link BalanceJournal}) et acquittés dès que le journal est sur
+ * disque, sans aller-retour vers la base. Les balances modifiées sont
+ * fusionnées (seule la dernière valeur de chaque wallet compte) puis écrites
+ * en base par lots ({@code updateBalanceAll}), dès que {@code flushSize}
+ * wallets sont en attente ou toutes les {@code flushIntervalMillis} ms. Un
+ * segment de journal n'est supprimé qu'une fois ses balances écrites en base.
+ *
+ * Au démarrage, les segments restants d'une exécution interrompue sont relus
+ * et leurs balances, les dernières acquittées, réécrites en base.
+ *
+ * Les créations de wallets passent directement par le dépôt sous-jacent: la
+ * ligne doit exister pour les transactions qui la référencent.
+ */
+public class WriteBehindWalletRepository implements WalletRepository, AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(WriteBehindWalletRepository.class.getName());
+
+	/**
+	 * Balance en mémoire et sa version, incrémentée à chaque modification.
+	 */
+	private static final class Entry {
+		final BigDecimal balance;
+		final long version;
+
+		Entry(BigDecimal balance, long version) {
+			this.balance = balance;
+			this.version = version;
+		}
+	}
+
+	private final WalletRepository delegate;
+	private final BalanceJournal journal;
+	private final int flushSize;
+	private final ConcurrentHashMap<String, Entry> balances = new ConcurrentHashMap<>();
+	// Dernière balance non encore écrite en base, par wallet
+	private volatile ConcurrentHashMap<String, BigDecimal> dirty = new ConcurrentHashMap<>();
+	// Lecture: modification d'une balance et son journal; écriture: bascule du lot à écrire
+	private final ReadWriteLock switchLock = new ReentrantReadWriteLock();
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+	private final ScheduledExecutorService flusher;
+
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong flushedBalances = new AtomicLong();
+	private final AtomicLong coalescedUpdates = new AtomicLong();
+
+	public WriteBehindWalletRepository(WalletRepository delegate, Path journalDirectory, int flushSize,
+			long flushIntervalMillis) throws IOException {
+		if (flushSize <= 0 || flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Paramètres d'écriture différée invalides");
+		}
+		this.delegate = delegate;
+		this.flushSize = flushSize;
+		this.journal = new BalanceJournal(journalDirectory);
+		recover();
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "wallet-write-behind");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reprend les balances acquittées mais peut-être pas écrites en base avant
+	 * l'arrêt, et les écrit en base avant tout nouvel accès.
+	 */
+	private void recover() throws IOException {
+		Map<String, BalanceJournal.Record> replayed = journal.replay();
+		for (Map.Entry<String, BalanceJournal.Record> e : replayed.entrySet()) {
+			balances.put(e.getKey(), new Entry(e.getValue().balance, e.getValue().version));
+			dirty.put(e.getKey(), e.getValue().balance);
+		}
+		if (!replayed.isEmpty()) {
+			LOGGER.info("Balances reprises du journal: " + replayed.size());
+		}
+		flush();
+	}
+
+	@Override
+	public void save(Wallet wallet) {
+		if (balances.containsKey(wallet.getId())) {
+			updateBalance(wallet.getId(), wallet.getBalance());
+		} else {
+			delegate.save(wallet);
+		}
+	}
+
+	@Override
+	public void saveAll(Collection<Wallet> wallets) {
+		for (Wallet wallet : wallets) {
+			save(wallet);
+		}
+	}
+
+	@Override
+	public Optional<Wallet> findById(String id) {
+		return delegate.findById(id).map(this::overlay);
+	}
+
+	@Override
+	public Optional<Wallet> findByAddress(String address) {
+		return delegate.findByAddress(address).map(this::overlay);
+	}
+
+	@Override
+	public List<Wallet> findAll() {
+		List<Wallet> wallets = delegate.findAll();
+		for (Wallet w : wallets) {
+			overlay(w);
+		}
+		return wallets;
+	}
+
+	@Override
+	public void updateBalance(String id, BigDecimal newBalance) {
+		apply(id, current -> newBalance);
+	}
+
+	@Override
+	public boolean updateBalanceAll(Map<String, BigDecimal> newBalances) {
+		for (Map.Entry<String, BigDecimal> e : newBalances.entrySet()) {
+			updateBalance(e.getKey(), e.getValue());
+		}
+		return true;
+	}
+
+	@Override
+	public Optional<BigDecimal> credit(String id, BigDecimal amount) {
+		return Optional.ofNullable(apply(id, current -> current.add(amount)));
+	}
+
+	/**
+	 * Débite le wallet si sa balance en mémoire couvre le montant.
+	 *
+	 * @return la nouvelle balance, vide si les fonds sont insuffisants ou le wallet inconnu
+	 */
+	public Optional<BigDecimal> debit(String id, BigDecimal amount) {
+		return Optional.ofNullable(apply(id, current -> current.compareTo(amount) >= 0 ? current.subtract(amount) : null));
+	}
+
+	/**
+	 * Écrit immédiatement en base les balances en attente.
+	 *
+	 * @return false si l'écriture a échoué (les balances restent en attente)
+	 */
+	public boolean flush() {
+		synchronized (flushLock) {
+			flushRequested.set(false);
+			if (dirty.isEmpty()) {
+				return true;
+			}
+			Map<String, BigDecimal> batch;
+			long firstKeptSegment;
+			switchLock.writeLock().lock();
+			try {
+				batch = dirty;
+				dirty = new ConcurrentHashMap<>();
+				firstKeptSegment = journal.rotate();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				switchLock.writeLock().unlock();
+			}
+			if (!delegate.updateBalanceAll(new HashMap<>(batch))) {
+				// Remis en attente sans écraser les valeurs plus récentes; segments conservés
+				for (Map.Entry<String, BigDecimal> e : batch.entrySet()) {
+					dirty.putIfAbsent(e.getKey(), e.getValue());
+				}
+				LOGGER.warning("Ecriture différée de " + batch.size() + " balances reportée");
+				return false;
+			}
+			flushCount.incrementAndGet();
+			flushedBalances.addAndGet(batch.size());
+			deleteSegmentsBefore(firstKeptSegment);
+			return true;
+		}
+	}
+
+	/**
+	 * Écrit les balances en attente en base puis ferme le journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		flusher.shutdownNow();
+		flush();
+		journal.close();
+		LOGGER.info(String.format("Ecriture différée: %d lots, %d balances écrites, %d mises à jour fusionnées",
+				flushCount.get(), flushedBalances.get(), coalescedUpdates.get()));
+	}
+
+	public long getFlushCount() { return flushCount.get(); }
+	public long getFlushedBalances() { return flushedBalances.get(); }
+	public long getCoalescedUpdates() { return coalescedUpdates.get(); }
+	public int getPendingCount() { return dirty.size(); }
+
+	/**
+	 * Applique une modification à la balance d'un wallet (chargée de la base au
+	 * premier accès), la journalise et attend sa synchronisation.
+	 *
+	 * @param update nouvelle balance à partir de l'actuelle, null pour refuser
+	 * @return la nouvelle balance, null si refusée ou wallet inconnu
+	 */
+	private BigDecimal apply(String id, UnaryOperator<BigDecimal> update) {
+		if (!balances.containsKey(id)) {
+			Optional<Wallet> stored = delegate.findById(id);
+			if (!stored.isPresent()) {
+				return null;
+			}
+			balances.putIfAbsent(id, new Entry(stored.get().getBalance(), 0L));
+		}
+		long seq;
+		Entry[] updated = new Entry[1];
+		switchLock.readLock().lock();
+		try {
+			Map<String, BigDecimal> pending = dirty;
+			balances.computeIfPresent(id, (k, current) -> {
+				BigDecimal next = update.apply(current.balance);
+				if (next == null) {
+					return current;
+				}
+				updated[0] = new Entry(next, current.version + 1);
+				// Sous le verrou du wallet: la valeur en attente est toujours la dernière.
+				// Une balance déjà en attente est remplacée: une seule écriture en base
+				if (pending.put(k, next) != null) {
+					coalescedUpdates.incrementAndGet();
+				}
+				return updated[0];
+			});
+			if (updated[0] == null) {
+				return null;
+			}
+			seq = journal.append(id, updated[0].version, updated[0].balance);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Echec d'écriture du journal des balances", e);
+		} finally {
+			switchLock.readLock().unlock();
+		}
+		try {
+			journal.sync(seq);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Echec de synchronisation du journal des balances", e);
+		}
+		if (dirty.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+			flusher.execute(this::flushQuietly);
+		}
+		return updated[0].balance;
+	}
+
+	private Wallet overlay(Wallet wallet) {
+		Entry entry = balances.get(wallet.getId());
+		if (entry != null) {
+			wallet.setBalance(entry.balance);
+		}
+		return wallet;
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			LOGGER.severe("Echec de l'écriture différée des balances: " + e.getMessage());
+		}
+	}
+
+	private void deleteSegmentsBefore(long segment) {
+		try {
+			journal.deleteSegmentsBefore(segment);
+		} catch (IOException e) {
+			LOGGER.warning("Suppression des segments du journal: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package repository.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import config.ConfigManager;
+import config.Database;
+
+/**
+ * Exécution d'une même requête pour une collection d'éléments, par lots
+ * ({@code addBatch}/{@code executeBatch}) sur une seule connexion et dans une
+ * seule transaction: soit tous les éléments sont écrits, soit aucun.
+ */
+final class JdbcBatch {
+
+	/**
+	 * Renseigne les paramètres de la requête pour un élément.
+	 */
+	@FunctionalInterface
+	interface Binder<T> {
+		void bind(PreparedStatement ps, T item) throws SQLException;
+	}
+
+	private JdbcBatch() {
+	}
+
+	/**
+	 * @return le nombre total de lignes modifiées (les lignes au compte inconnu
+	 *         pour le driver comptent pour une)
+	 */
+	static <T> int execute(String sql, Collection<? extends T> items, Binder<T> binder) throws SQLException {
+		if (items.isEmpty()) {
+			return 0;
+		}
+		int batchSize = Math.max(1, ConfigManager.getBatchSize());
+		try (Connection c = Database.getInstance().getConnection()) {
+			c.setAutoCommit(false);
+			int updated = 0;
+			try (PreparedStatement ps = c.prepareStatement(sql)) {
+				int pending = 0;
+				for (T item : items) {
+					binder.bind(ps, item);
+					ps.addBatch();
+					if (++pending == batchSize) {
+						updated += count(ps.executeBatch());
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					updated += count(ps.executeBatch());
+				}
+				c.commit();
+			} catch (SQLException | RuntimeException e) {
+				c.rollback();
+				throw e;
+			} finally {
+				c.setAutoCommit(true);
+			}
+			return updated;
+		}
+	}
+
+	private static int count(int[] results) {
+		int total = 0;
+		for (int r : results) {
+			total += r == PreparedStatement.SUCCESS_NO_INFO ? 1 : Math.max(0, r);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,105 @@
+package repository.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import config.ConfigManager;
+import config.Database;
+import util.LoggerProvider;
+
+/**
+ * Lecture en flux d'un résultat de requête: les lignes sont converties une à
+ * une au fil de la consommation du {@link Stream}, lues par paquets de
+ * db.fetchSize. L'auto-commit est coupé pendant la lecture pour que PostgreSQL
+ * utilise un curseur côté serveur au lieu de tout charger en mémoire.
+ *
+ * Le flux garde une connexion du pool jusqu'à sa fermeture: il doit être
+ * consommé dans un try-with-resources.
+ */
+final class JdbcStream {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(JdbcStream.class.getName());
+
+	@FunctionalInterface
+	interface Parameters {
+		void set(PreparedStatement ps) throws SQLException;
+	}
+
+	@FunctionalInterface
+	interface RowMapper<T> {
+		T map(ResultSet rs) throws SQLException;
+	}
+
+	private JdbcStream() {
+	}
+
+	/**
+	 * @return le flux des lignes, vide si la requête n'a pas pu être exécutée
+	 */
+	static <T> Stream<T> query(String sql, Parameters parameters, RowMapper<T> mapper) {
+		Connection c = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			c = Database.getInstance().getConnection();
+			c.setAutoCommit(false);
+			ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(ConfigManager.getFetchSize());
+			parameters.set(ps);
+			rs = ps.executeQuery();
+		} catch (SQLException e) {
+			LOGGER.severe(e.getMessage());
+			close(c, ps, rs);
+			return Stream.empty();
+		}
+		Connection conn = c;
+		PreparedStatement stmt = ps;
+		ResultSet results = rs;
+		Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					if (!results.next()) {
+						return false;
+					}
+					action.accept(mapper.map(results));
+					return true;
+				} catch (SQLException e) {
+					throw new IllegalStateException("Erreur de lecture en flux: " + e.getMessage(), e);
+				}
+			}
+		};
+		return StreamSupport.stream(rows, false).onClose(() -> close(conn, stmt, results));
+	}
+
+	private static void close(Connection c, PreparedStatement ps, ResultSet rs) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+			if (ps != null) {
+				ps.close();
+			}
+		} catch (SQLException e) {
+			LOGGER.warning("Fermeture d'un flux: " + e.getMessage());
+		} finally {
+			if (c != null) {
+				try {
+					// Lecture seule: rien à valider, le pool annule et rétablit l'auto-commit
+					c.close();
+				} catch (SQLException e) {
+					LOGGER.warning("Fermeture d'un flux: " + e.getMessage());
+				}
+			}
+		}
+	}
+}
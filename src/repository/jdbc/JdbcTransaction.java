@@ -0,0 +1,45 @@
+package repository.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import config.Database;
+
+/**
+ * Exécution de plusieurs requêtes sur une même connexion, dans une seule
+ * transaction SQL: validée si le travail retourne un résultat, annulée s'il
+ * retourne null ou échoue.
+ */
+final class JdbcTransaction {
+
+	@FunctionalInterface
+	interface Work<T> {
+		T run(Connection c) throws SQLException;
+	}
+
+	private JdbcTransaction() {
+	}
+
+	/**
+	 * @return le résultat du travail, null si la transaction a été annulée
+	 */
+	static <T> T run(Work<T> work) throws SQLException {
+		try (Connection c = Database.getInstance().getConnection()) {
+			c.setAutoCommit(false);
+			try {
+				T result = work.run(c);
+				if (result != null) {
+					c.commit();
+				} else {
+					c.rollback();
+				}
+				return result;
+			} catch (SQLException | RuntimeException e) {
+				c.rollback();
+				throw e;
+			} finally {
+				c.setAutoCommit(true);
+			}
+		}
+	}
+}
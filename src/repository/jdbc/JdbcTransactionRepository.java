@@ -1,46 +1,114 @@
 package repository.jdbc;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import metier.enums.CryptoType;
 import metier.enums.FeePriority;
 import metier.enums.TransactionStatus;
 import metier.model.Transaction;
+import repository.Page;
+import repository.PageCursor;
+import config.ConfigManager;
 import config.Database;
+import config.DatabaseDialect;
 import util.LoggerProvider;
 
 public class JdbcTransactionRepository implements repository.TransactionRepository {
 
 	@Override
 	public void save(Transaction tx) {
-		String sql = "INSERT INTO transactions(id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		insert(tx);
+	}
+
+	/**
+	 * @return false si l'INSERT a échoué (erreur journalisée)
+	 */
+	@Override
+	public boolean insert(Transaction tx) {
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
-			ps.setString(1, tx.getId());
-			ps.setString(2, tx.getFromAddress());
-			ps.setString(3, tx.getToAddress());
-			ps.setBigDecimal(4, tx.getAmount());
-			ps.setString(5, tx.getFeePriority().name());
-			ps.setBigDecimal(6, tx.getFeeAmount());
-			ps.setString(7, tx.getStatus().name());
-			ps.setTimestamp(8, new java.sql.Timestamp(tx.getCreatedAt().toEpochMilli()));
-			ps.setString(9, tx.getWalletId());
-			ps.executeUpdate();
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_INSERT)) {
+			bindInsert(ps, tx);
+			return ps.executeUpdate() == 1;
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Débite le wallet source de {@code debit} et insère la transaction, dans une
+	 * seule transaction SQL. Le débit n'a lieu que si la balance le couvre: deux
+	 * envois concurrents depuis un même wallet ne peuvent pas dépenser deux fois
+	 * les mêmes fonds, et la transaction n'est jamais insérée sans son débit.
+	 *
+	 * @return la nouvelle balance, vide si les fonds sont insuffisants ou en cas d'erreur
+	 */
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		try {
+			return Optional.ofNullable(JdbcTransaction.run(c -> {
+				BigDecimal balance = JdbcWalletRepository.debit(c, tx.getWalletId(), debit);
+				if (balance == null) {
+					return null;
+				}
+				try (PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_INSERT)) {
+					bindInsert(ps, tx);
+					ps.executeUpdate();
+				}
+				return balance;
+			}));
 		} catch (SQLException e) {
 			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Insère les transactions en une seule transaction SQL, par lots de
+	 * db.batchSize. Sur PostgreSQL, à partir de db.copyThreshold transactions,
+	 * les lignes sont envoyées par COPY.
+	 */
+	@Override
+	public void saveAll(Collection<Transaction> transactions) {
+		int copyThreshold = ConfigManager.getCopyThreshold();
+		try {
+			if (copyThreshold > 0 && transactions.size() >= copyThreshold
+					&& Database.getInstance().getDialect() == DatabaseDialect.POSTGRESQL) {
+				PgCopyLoader.copyTransactions(transactions);
+			} else {
+				JdbcBatch.execute(SqlStatements.TRANSACTION_INSERT, transactions, JdbcTransactionRepository::bindInsert);
+			}
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Echec de l'insertion en masse de "
+				+ transactions.size() + " transactions: " + e.getMessage());
 		}
 	}
 
+	private static void bindInsert(PreparedStatement ps, Transaction tx) throws SQLException {
+		ps.setString(1, tx.getId());
+		ps.setString(2, tx.getFromAddress());
+		ps.setString(3, tx.getToAddress());
+		ps.setBigDecimal(4, tx.getAmount());
+		ps.setString(5, tx.getFeePriority().name());
+		ps.setBigDecimal(6, tx.getFeeAmount());
+		ps.setString(7, tx.getStatus().name());
+		ps.setTimestamp(8, java.sql.Timestamp.from(tx.getCreatedAt()));
+		ps.setString(9, tx.getWalletId());
+	}
+
 	@Override
 	public Optional<Transaction> findById(String id) {
-		String sql = "SELECT id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id FROM transactions WHERE id = ?";
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_FIND_BY_ID)) {
 			ps.setString(1, id);
 			try (ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
@@ -56,10 +124,9 @@ public class JdbcTransactionRepository implements repository.TransactionReposito
 
 	@Override
 	public List<Transaction> findPending() {
-		String sql = "SELECT id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id FROM transactions WHERE status = 'PENDING'";
 		List<Transaction> list = new ArrayList<>();
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql);
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_FIND_PENDING);
 			 ResultSet rs = ps.executeQuery()) {
 			while (rs.next()) {
 				list.add(mapRow(rs));
@@ -72,10 +139,9 @@ public class JdbcTransactionRepository implements repository.TransactionReposito
 
 	@Override
 	public List<Transaction> findByWalletId(String walletId) {
-		String sql = "SELECT id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id FROM transactions WHERE wallet_id = ?";
 		List<Transaction> list = new ArrayList<>();
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_FIND_BY_WALLET)) {
 			ps.setString(1, walletId);
 			try (ResultSet rs = ps.executeQuery()) {
 				while (rs.next()) {
@@ -88,11 +154,66 @@ public class JdbcTransactionRepository implements repository.TransactionReposito
 		return list;
 	}
 
+	/**
+	 * Transactions en attente, lues en flux (à fermer après usage).
+	 */
 	@Override
-	public void updateStatus(String id, TransactionStatus status) {
-		String sql = "UPDATE transactions SET status = ? WHERE id = ?";
+	public Stream<Transaction> streamPending() {
+		return JdbcStream.query(SqlStatements.TRANSACTION_STREAM_PENDING, ps -> { }, this::mapRow);
+	}
+
+	/**
+	 * Historique d'un wallet, du plus récent au plus ancien, lu en flux (à fermer après usage).
+	 */
+	@Override
+	public Stream<Transaction> streamByWalletId(String walletId) {
+		return JdbcStream.query(SqlStatements.TRANSACTION_STREAM_BY_WALLET, ps -> ps.setString(1, walletId),
+			this::mapRow);
+	}
+
+	/**
+	 * Page de l'historique d'un wallet, du plus récent au plus ancien, après
+	 * {@code after} (null pour la première page). La condition porte sur la clé
+	 * (created_at, pk) et suit l'index idx_transactions_wallet_created_pk: le coût
+	 * d'une page ne dépend pas de sa profondeur dans l'historique.
+	 */
+	@Override
+	public Page<Transaction> findPageByWalletId(String walletId, PageCursor after, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Taille de page invalide: " + limit);
+		}
+		String sql = after != null ? SqlStatements.TRANSACTION_PAGE_AFTER : SqlStatements.TRANSACTION_PAGE_FIRST;
+		List<Transaction> items = new ArrayList<>(Math.min(limit, 1024));
+		PageCursor last = null;
 		try (Connection c = Database.getInstance().getConnection();
 			 PreparedStatement ps = c.prepareStatement(sql)) {
+			int i = 1;
+			ps.setString(i++, walletId);
+			if (after != null) {
+				ps.setTimestamp(i++, java.sql.Timestamp.from(after.getCreatedAt()));
+				ps.setLong(i++, after.getPk());
+			}
+			// Une ligne de plus pour savoir s'il existe une page suivante
+			ps.setInt(i, limit + 1);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					if (items.size() == limit) {
+						return new Page<>(items, last);
+					}
+					items.add(mapRow(rs));
+					last = new PageCursor(rs.getTimestamp("created_at").toInstant(), rs.getLong("pk"));
+				}
+			}
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+		}
+		return new Page<>(items, null);
+	}
+
+	@Override
+	public void updateStatus(String id, TransactionStatus status) {
+		try (Connection c = Database.getInstance().getConnection();
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_UPDATE_STATUS)) {
 			ps.setString(1, status.name());
 			ps.setString(2, id);
 			ps.executeUpdate();
@@ -101,17 +222,125 @@ public class JdbcTransactionRepository implements repository.TransactionReposito
 		}
 	}
 
+	/**
+	 * Met à jour le statut de plusieurs transactions en une seule transaction SQL,
+	 * par lots de db.batchSize.
+	 *
+	 * @return false si la transaction a été annulée (aucun statut écrit)
+	 */
+	@Override
+	public boolean updateStatusAll(Collection<String> ids, TransactionStatus status) {
+		try {
+			JdbcBatch.<String>execute(SqlStatements.TRANSACTION_UPDATE_STATUS, ids, (ps, id) -> {
+				ps.setString(1, status.name());
+				ps.setString(2, id);
+			});
+			return true;
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Echec de la mise à jour du statut de "
+				+ ids.size() + " transactions: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Met à jour les frais d'une transaction encore en attente (replace-by-fee).
+	 */
+	@Override
+	public boolean updateFee(String id, FeePriority feePriority, BigDecimal feeAmount) {
+		try (Connection c = Database.getInstance().getConnection();
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_UPDATE_FEE)) {
+			ps.setString(1, feePriority.name());
+			ps.setBigDecimal(2, feeAmount);
+			ps.setString(3, id);
+			return ps.executeUpdate() > 0;
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Met à jour les frais d'une transaction en attente et débite le supplément
+	 * du wallet, dans une seule transaction SQL: rien n'est écrit si la
+	 * transaction a été confirmée entre-temps ou si la balance ne couvre plus le
+	 * supplément.
+	 *
+	 * @return la nouvelle balance, vide si le remplacement est refusé ou en cas d'erreur
+	 */
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		try {
+			return Optional.ofNullable(JdbcTransaction.run(c -> {
+				try (PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_UPDATE_FEE)) {
+					ps.setString(1, replacement.getFeePriority().name());
+					ps.setBigDecimal(2, replacement.getFeeAmount());
+					ps.setString(3, replacement.getId());
+					if (ps.executeUpdate() == 0) {
+						return null;
+					}
+				}
+				return JdbcWalletRepository.debit(c, replacement.getWalletId(), debit);
+			}));
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Passe une transaction encore en attente au statut REJECTED et recrédite son
+	 * wallet du montant et des frais enregistrés en base, dans une seule
+	 * transaction SQL: rien n'est écrit si elle a été confirmée ou rejetée
+	 * entre-temps.
+	 *
+	 * @return le montant recrédité, vide si la transaction n'est plus en attente ou en cas d'erreur
+	 */
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		try {
+			return Optional.ofNullable(JdbcTransaction.run(c -> {
+				try (PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_REJECT)) {
+					ps.setString(1, tx.getId());
+					if (ps.executeUpdate() == 0) {
+						return null;
+					}
+				}
+				// Ligne verrouillée par la mise à jour: frais d'un remplacement compris
+				String walletId;
+				BigDecimal refund;
+				try (PreparedStatement ps = c.prepareStatement(SqlStatements.TRANSACTION_SELECT_REFUND)) {
+					ps.setString(1, tx.getId());
+					try (ResultSet rs = ps.executeQuery()) {
+						if (!rs.next()) {
+							return null;
+						}
+						walletId = rs.getString("wallet_id");
+						BigDecimal fee = rs.getBigDecimal("fee_amount");
+						refund = fee == null ? rs.getBigDecimal("amount") : rs.getBigDecimal("amount").add(fee);
+					}
+				}
+				return JdbcWalletRepository.credit(c, walletId, refund) == null ? null : refund;
+			}));
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return Optional.empty();
+		}
+	}
+
 	private Transaction mapRow(ResultSet rs) throws SQLException {
-		Transaction t = new Transaction(
+		return new Transaction(
+			rs.getString("id"),
 			rs.getString("from_address"),
 			rs.getString("to_address"),
 			rs.getBigDecimal("amount"),
 			FeePriority.valueOf(rs.getString("fee_priority")),
-			rs.getString("wallet_id")
+			rs.getTimestamp("created_at").toInstant(),
+			rs.getBigDecimal("fee_amount"),
+			TransactionStatus.valueOf(rs.getString("status")),
+			rs.getString("wallet_id"),
+			CryptoType.valueOf(rs.getString("type"))
 		);
-		t.setFeeAmount(rs.getBigDecimal("fee_amount"));
-		t.setStatus(TransactionStatus.valueOf(rs.getString("status")));
-		return t;
 	}
 }
 
@@ -6,7 +6,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import metier.enums.CryptoType;
@@ -18,64 +20,96 @@ import util.LoggerProvider;
 
 public class JdbcWalletRepository implements repository.WalletRepository {
 
+	/**
+	 * Crée le wallet ou met à jour sa balance, en une seule requête atomique
+	 * (ON CONFLICT pour PostgreSQL, MERGE pour H2). Pour un SGBD non reconnu, la
+	 * mise à jour est tentée d'abord et l'insertion seulement si aucune ligne
+	 * n'existe.
+	 */
 	@Override
 	public void save(Wallet wallet) {
-		if (findById(wallet.getId()).isPresent()) {
-			updateWallet(wallet);
-		} else {
-			insertWallet(wallet);
+		String sql = SqlStatements.walletUpsert(Database.getInstance().getDialect());
+		if (sql == null) {
+			if (!updateWallet(wallet)) {
+				insertWallet(wallet);
+			}
+			return;
+		}
+		try (Connection c = Database.getInstance().getConnection();
+			 PreparedStatement ps = c.prepareStatement(sql)) {
+			bindWallet(ps, wallet);
+			ps.executeUpdate();
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+		}
+	}
+
+	/**
+	 * Crée ou met à jour les wallets en une seule transaction SQL, par lots de
+	 * db.batchSize, avec la même requête d'upsert que {@link #save(Wallet)}.
+	 */
+	@Override
+	public void saveAll(Collection<Wallet> wallets) {
+		String sql = SqlStatements.walletUpsert(Database.getInstance().getDialect());
+		try {
+			if (sql == null) {
+				for (Wallet wallet : wallets) {
+					save(wallet);
+				}
+			} else {
+				JdbcBatch.execute(sql, wallets, JdbcWalletRepository::bindWallet);
+			}
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Echec de l'enregistrement en masse de "
+				+ wallets.size() + " wallets: " + e.getMessage());
 		}
 	}
+
+	private static void bindWallet(PreparedStatement ps, Wallet wallet) throws SQLException {
+		ps.setString(1, wallet.getId());
+		ps.setString(2, wallet.getCryptoType().name());
+		ps.setString(3, wallet.getAddress());
+		ps.setBigDecimal(4, wallet.getBalance());
+		ps.setTimestamp(5, new java.sql.Timestamp(wallet.getCreatedAt().toEpochMilli()));
+	}
 	
 	private void insertWallet(Wallet wallet) {
-		String sql = "INSERT INTO wallets(id, type, address, balance, created_at) VALUES (?, ?, ?, ?, ?)";
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
-			ps.setString(1, wallet.getId());
-			ps.setString(2, wallet.getCryptoType().name());
-			ps.setString(3, wallet.getAddress());
-			ps.setBigDecimal(4, wallet.getBalance());
-			ps.setTimestamp(5, new java.sql.Timestamp(wallet.getCreatedAt().toEpochMilli()));
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_INSERT)) {
+			bindWallet(ps, wallet);
 			ps.executeUpdate();
 		} catch (SQLException e) {
 			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
 		}
 	}
 	
-	private void updateWallet(Wallet wallet) {
-		String sql = "UPDATE wallets SET balance = ? WHERE id = ?";
+	/**
+	 * @return true si le wallet existait
+	 */
+	private boolean updateWallet(Wallet wallet) {
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_UPDATE_BALANCE)) {
 			ps.setBigDecimal(1, wallet.getBalance());
 			ps.setString(2, wallet.getId());
 			int rowsUpdated = ps.executeUpdate();
 			if (rowsUpdated > 0) {
 				LoggerProvider.getLogger(getClass().getName()).info("Balance mise à jour pour wallet: " + wallet.getId() + " -> " + wallet.getBalance());
 			}
+			return rowsUpdated > 0;
 		} catch (SQLException e) {
 			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return false;
 		}
 	}
 
 	@Override
 	public Optional<Wallet> findById(String id) {
-		String sql = "SELECT id, type, address, balance, created_at FROM wallets WHERE id = ?";
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_FIND_BY_ID)) {
 			ps.setString(1, id);
 			try (ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
-					String walletId = rs.getString("id");
-					CryptoType type = CryptoType.valueOf(rs.getString("type"));
-					String address = rs.getString("address");
-					BigDecimal balance = rs.getBigDecimal("balance");
-					java.time.Instant createdAt = rs.getTimestamp("created_at").toInstant();
-					
-					Wallet w = type == CryptoType.BITCOIN ? 
-						new BitcoinWallet(walletId, address, balance, createdAt) : 
-						new EthereumWallet(walletId, address, balance, createdAt);
-					
-					return Optional.of(w);
+					return Optional.of(mapRow(rs));
 				}
 			}
 		} catch (SQLException e) {
@@ -86,23 +120,12 @@ public class JdbcWalletRepository implements repository.WalletRepository {
 
 	@Override
 	public Optional<Wallet> findByAddress(String address) {
-		String sql = "SELECT id, type, address, balance, created_at FROM wallets WHERE address = ?";
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_FIND_BY_ADDRESS)) {
 			ps.setString(1, address);
 			try (ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
-					String walletId = rs.getString("id");
-					CryptoType type = CryptoType.valueOf(rs.getString("type"));
-					String addr = rs.getString("address");
-					BigDecimal balance = rs.getBigDecimal("balance");
-					java.time.Instant createdAt = rs.getTimestamp("created_at").toInstant();
-					
-					Wallet w = type == CryptoType.BITCOIN ? 
-						new BitcoinWallet(walletId, addr, balance, createdAt) : 
-						new EthereumWallet(walletId, addr, balance, createdAt);
-					
-					return Optional.of(w);
+					return Optional.of(mapRow(rs));
 				}
 			}
 		} catch (SQLException e) {
@@ -113,9 +136,8 @@ public class JdbcWalletRepository implements repository.WalletRepository {
 
 	@Override
 	public void updateBalance(String id, BigDecimal newBalance) {
-		String sql = "UPDATE wallets SET balance = ? WHERE id = ?";
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql)) {
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_UPDATE_BALANCE)) {
 			ps.setBigDecimal(1, newBalance);
 			ps.setString(2, id);
 			ps.executeUpdate();
@@ -124,29 +146,107 @@ public class JdbcWalletRepository implements repository.WalletRepository {
 		}
 	}
 
+	/**
+	 * Met à jour plusieurs balances en une seule transaction SQL, par lots de db.batchSize.
+	 *
+	 * @return false si la transaction a été annulée (aucune balance écrite)
+	 */
+	@Override
+	public boolean updateBalanceAll(Map<String, BigDecimal> balances) {
+		try {
+			JdbcBatch.<Map.Entry<String, BigDecimal>>execute(SqlStatements.WALLET_UPDATE_BALANCE,
+					balances.entrySet(), (ps, e) -> {
+				ps.setBigDecimal(1, e.getValue());
+				ps.setString(2, e.getKey());
+			});
+			return true;
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Echec de la mise à jour de "
+				+ balances.size() + " balances: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Crédite le wallet par une mise à jour relative ({@code balance = balance + ?}):
+	 * deux crédits concurrents s'additionnent au lieu de s'écraser.
+	 *
+	 * @return la nouvelle balance, vide si le wallet n'existe pas ou en cas d'erreur
+	 */
+	@Override
+	public Optional<BigDecimal> credit(String id, BigDecimal amount) {
+		try {
+			return Optional.ofNullable(JdbcTransaction.run(c -> adjustBalance(c, id, amount, false)));
+		} catch (SQLException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Débite le wallet dans la transaction de {@code c}, seulement si sa balance
+	 * couvre le montant: la vérification et le débit forment une seule requête,
+	 * sans fenêtre entre lecture et écriture.
+	 *
+	 * @return la nouvelle balance, null si les fonds sont insuffisants ou le wallet absent
+	 */
+	static BigDecimal debit(Connection c, String id, BigDecimal amount) throws SQLException {
+		return adjustBalance(c, id, amount.negate(), true);
+	}
+
+	/**
+	 * Crédite le wallet dans la transaction de {@code c}.
+	 *
+	 * @return la nouvelle balance, null si le wallet est absent
+	 */
+	static BigDecimal credit(Connection c, String id, BigDecimal amount) throws SQLException {
+		return adjustBalance(c, id, amount, false);
+	}
+
+	private static BigDecimal adjustBalance(Connection c, String id, BigDecimal delta, boolean requireFunds)
+			throws SQLException {
+		String sql = requireFunds ? SqlStatements.WALLET_DEBIT : SqlStatements.WALLET_CREDIT;
+		try (PreparedStatement ps = c.prepareStatement(sql)) {
+			ps.setBigDecimal(1, delta);
+			ps.setString(2, id);
+			if (requireFunds) {
+				ps.setBigDecimal(3, delta.negate());
+			}
+			if (ps.executeUpdate() == 0) {
+				return null;
+			}
+		}
+		// Ligne verrouillée par la mise à jour jusqu'à la fin de la transaction
+		try (PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_SELECT_BALANCE)) {
+			ps.setString(1, id);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getBigDecimal(1) : null;
+			}
+		}
+	}
+
 	@Override
 	public List<Wallet> findAll() {
-		String sql = "SELECT id, type, address, balance, created_at FROM wallets";
 		List<Wallet> list = new ArrayList<>();
 		try (Connection c = Database.getInstance().getConnection();
-			 PreparedStatement ps = c.prepareStatement(sql);
+			 PreparedStatement ps = c.prepareStatement(SqlStatements.WALLET_FIND_ALL);
 			 ResultSet rs = ps.executeQuery()) {
 			while (rs.next()) {
-				String walletId = rs.getString("id");
-				CryptoType type = CryptoType.valueOf(rs.getString("type"));
-				String address = rs.getString("address");
-				BigDecimal balance = rs.getBigDecimal("balance");
-				java.time.Instant createdAt = rs.getTimestamp("created_at").toInstant();
-				
-				Wallet w = type == CryptoType.BITCOIN ? 
-					new BitcoinWallet(walletId, address, balance, createdAt) : 
-					new EthereumWallet(walletId, address, balance, createdAt);
-				
-				list.add(w);
+				list.add(mapRow(rs));
 			}
 		} catch (SQLException e) {
 			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
 		}
 		return list;
 	}
+
+	private static Wallet mapRow(ResultSet rs) throws SQLException {
+		String id = rs.getString("id");
+		String address = rs.getString("address");
+		BigDecimal balance = rs.getBigDecimal("balance");
+		java.time.Instant createdAt = rs.getTimestamp("created_at").toInstant();
+		return CryptoType.valueOf(rs.getString("type")) == CryptoType.BITCOIN
+			? new BitcoinWallet(id, address, balance, createdAt)
+			: new EthereumWallet(id, address, balance, createdAt);
+	}
 }
\ No newline at end of file
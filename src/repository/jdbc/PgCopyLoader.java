@@ -0,0 +1,103 @@
+package repository.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import config.Database;
+import metier.model.Transaction;
+
+/**
+ * Chargement massif de transactions par COPY ... FROM STDIN (PostgreSQL).
+ *
+ * Les lignes sont encodées en CSV et envoyées au serveur par blocs de 64 Ko,
+ * sans requête préparée par ligne ni liste intermédiaire. Classe chargée
+ * seulement pour PostgreSQL: le driver n'est pas requis pour les autres bases.
+ */
+final class PgCopyLoader {
+
+	private static final int CHUNK_BYTES = 64 * 1024;
+
+	private PgCopyLoader() {
+	}
+
+	/**
+	 * @return le nombre de lignes chargées
+	 */
+	static long copyTransactions(Collection<? extends Transaction> transactions) throws SQLException {
+		try (Connection c = Database.getInstance().getConnection()) {
+			CopyIn copy = c.unwrap(PGConnection.class).getCopyAPI().copyIn(SqlStatements.TRANSACTION_COPY);
+			try {
+				StringBuilder sb = new StringBuilder(CHUNK_BYTES + 512);
+				for (Transaction tx : transactions) {
+					appendRow(sb, tx);
+					if (sb.length() >= CHUNK_BYTES) {
+						write(copy, sb);
+					}
+				}
+				write(copy, sb);
+				return copy.endCopy();
+			} finally {
+				if (copy.isActive()) {
+					copy.cancelCopy();
+				}
+			}
+		}
+	}
+
+	private static void appendRow(StringBuilder sb, Transaction tx) {
+		field(sb, tx.getId()).append(',');
+		field(sb, tx.getFromAddress()).append(',');
+		field(sb, tx.getToAddress()).append(',');
+		sb.append(tx.getAmount().toPlainString()).append(',');
+		sb.append(tx.getFeePriority().name()).append(',');
+		sb.append(tx.getFeeAmount().toPlainString()).append(',');
+		sb.append(tx.getStatus().name()).append(',');
+		// Même conversion que setTimestamp: heure locale de la JVM
+		sb.append(Timestamp.from(tx.getCreatedAt())).append(',');
+		field(sb, tx.getWalletId()).append('\n');
+	}
+
+	/**
+	 * Champ CSV. En CSV, COPY lit un champ vide sans guillemets comme NULL: seul
+	 * null est écrit ainsi, une chaîne vide l'est entre guillemets ({@code ""}).
+	 * Une valeur est aussi mise entre guillemets si elle contient un séparateur,
+	 * un guillemet ou un saut de ligne, ou si elle vaut le marqueur de fin {@code \.}.
+	 */
+	private static StringBuilder field(StringBuilder sb, String value) {
+		if (value == null) {
+			return sb;
+		}
+		boolean quote = value.isEmpty() || value.equals("\\.");
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char ch = value.charAt(i);
+			quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+		}
+		if (!quote) {
+			return sb.append(value);
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch == '"') {
+				sb.append('"');
+			}
+			sb.append(ch);
+		}
+		return sb.append('"');
+	}
+
+	private static void write(CopyIn copy, StringBuilder sb) throws SQLException {
+		if (sb.length() == 0) {
+			return;
+		}
+		byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+		copy.writeToCopy(bytes, 0, bytes.length);
+		sb.setLength(0);
+	}
+}
@@ -0,0 +1,95 @@
+package repository.jdbc;
+
+import config.DatabaseDialect;
+
+/**
+ * Requêtes SQL des dépôts JDBC, en un seul endroit.
+ *
+ * Chaque requête est une constante: le même texte est préparé à chaque appel,
+ * ce qui permet au pool de réutiliser l'instruction déjà préparée sur la
+ * connexion (db.statementCacheSize) et au serveur d'en réutiliser le plan.
+ * Aucune requête n'est construite par concaténation au moment de l'appel.
+ */
+final class SqlStatements {
+
+	// Wallets
+
+	private static final String WALLET_SELECT = "SELECT id, type, address, balance, created_at FROM wallets";
+
+	static final String WALLET_FIND_BY_ID = WALLET_SELECT + " WHERE id = ?";
+	static final String WALLET_FIND_BY_ADDRESS = WALLET_SELECT + " WHERE address = ?";
+	static final String WALLET_FIND_ALL = WALLET_SELECT;
+
+	static final String WALLET_INSERT =
+		"INSERT INTO wallets(id, type, address, balance, created_at) VALUES (?, ?, ?, ?, ?)";
+	static final String WALLET_UPDATE_BALANCE = "UPDATE wallets SET balance = ? WHERE id = ?";
+	static final String WALLET_CREDIT = "UPDATE wallets SET balance = balance + ? WHERE id = ?";
+	static final String WALLET_DEBIT = "UPDATE wallets SET balance = balance + ? WHERE id = ? AND balance >= ?";
+	static final String WALLET_SELECT_BALANCE = "SELECT balance FROM wallets WHERE id = ?";
+
+	// Insertion ou mise à jour de la balance en un seul aller-retour, selon le SGBD
+	private static final String WALLET_UPSERT_POSTGRESQL =
+		"INSERT INTO wallets(id, type, address, balance, created_at) VALUES (?, ?, ?, ?, ?) " +
+		"ON CONFLICT (id) DO UPDATE SET balance = EXCLUDED.balance";
+	private static final String WALLET_UPSERT_H2 =
+		"MERGE INTO wallets w USING (VALUES (CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(32)), CAST(? AS VARCHAR(128)), " +
+		"CAST(? AS NUMERIC(38, 18)), CAST(? AS TIMESTAMP))) s(id, type, address, balance, created_at) ON w.id = s.id " +
+		"WHEN MATCHED THEN UPDATE SET w.balance = s.balance " +
+		"WHEN NOT MATCHED THEN INSERT (id, type, address, balance, created_at) " +
+		"VALUES (s.id, s.type, s.address, s.balance, s.created_at)";
+	private static final String WALLET_UPSERT_MYSQL =
+		"INSERT INTO wallets(id, type, address, balance, created_at) VALUES (?, ?, ?, ?, ?) " +
+		"ON DUPLICATE KEY UPDATE balance = VALUES(balance)";
+
+	// Transactions
+
+	private static final String TRANSACTION_SELECT =
+		"SELECT t.pk, t.id, t.from_address, t.to_address, t.amount, t.fee_priority, t.fee_amount, t.status, " +
+		"t.created_at, t.wallet_id, w.type FROM transactions t JOIN wallets w ON w.id = t.wallet_id";
+
+	static final String TRANSACTION_FIND_BY_ID = TRANSACTION_SELECT + " WHERE t.id = ?";
+	static final String TRANSACTION_FIND_PENDING = TRANSACTION_SELECT + " WHERE t.status = 'PENDING'";
+	static final String TRANSACTION_FIND_BY_WALLET = TRANSACTION_SELECT + " WHERE t.wallet_id = ?";
+	static final String TRANSACTION_STREAM_PENDING =
+		TRANSACTION_SELECT + " WHERE t.status = 'PENDING' ORDER BY t.created_at, t.pk";
+	static final String TRANSACTION_STREAM_BY_WALLET =
+		TRANSACTION_SELECT + " WHERE t.wallet_id = ? ORDER BY t.created_at DESC, t.pk DESC";
+	// Pagination par clé (created_at, pk), selon l'index idx_transactions_wallet_created_pk
+	static final String TRANSACTION_PAGE_FIRST =
+		TRANSACTION_SELECT + " WHERE t.wallet_id = ? ORDER BY t.created_at DESC, t.pk DESC LIMIT ?";
+	static final String TRANSACTION_PAGE_AFTER =
+		TRANSACTION_SELECT + " WHERE t.wallet_id = ? AND (t.created_at, t.pk) < (?, ?) " +
+		"ORDER BY t.created_at DESC, t.pk DESC LIMIT ?";
+
+	static final String TRANSACTION_INSERT =
+		"INSERT INTO transactions(id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id) " +
+		"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String TRANSACTION_UPDATE_STATUS = "UPDATE transactions SET status = ? WHERE id = ?";
+	static final String TRANSACTION_REJECT =
+		"UPDATE transactions SET status = 'REJECTED' WHERE id = ? AND status = 'PENDING'";
+	static final String TRANSACTION_SELECT_REFUND = "SELECT wallet_id, amount, fee_amount FROM transactions WHERE id = ?";
+	static final String TRANSACTION_UPDATE_FEE =
+		"UPDATE transactions SET fee_priority = ?, fee_amount = ? WHERE id = ? AND status = 'PENDING'";
+	static final String TRANSACTION_COPY =
+		"COPY transactions(id, from_address, to_address, amount, fee_priority, fee_amount, status, created_at, wallet_id) " +
+		"FROM STDIN WITH (FORMAT csv)";
+
+	private SqlStatements() {
+	}
+
+	/**
+	 * Upsert d'un wallet pour le SGBD, null s'il n'en a pas de connu.
+	 */
+	static String walletUpsert(DatabaseDialect dialect) {
+		switch (dialect) {
+			case POSTGRESQL:
+				return WALLET_UPSERT_POSTGRESQL;
+			case H2:
+				return WALLET_UPSERT_H2;
+			case MYSQL:
+				return WALLET_UPSERT_MYSQL;
+			default:
+				return null;
+		}
+	}
+}
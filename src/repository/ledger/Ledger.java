@@ -0,0 +1,319 @@
+package repository.ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import metier.model.Wallet;
+import util.LoggerProvider;
+
+/**
+ * Ledger des mouvements de balance, en ajout seul.
+ *
+ * Chaque crédit et débit est ajouté, numéroté, au segment courant
+ * ({@link LedgerSegment}, projeté en mémoire); un segment plein est fermé et
+ * le suivant créé. Les balances courantes sont tenues en mémoire. Toutes les
+ * {@code snapshotEvery} écritures, un instantané des balances est écrit en
+ * arrière-plan ({@link LedgerSnapshot}): à l'ouverture, les balances sont
+ * reconstruites en projetant le dernier instantané valide puis en rejouant
+ * les seules écritures postérieures, à partir du segment qui les contient.
+ *
+ * Les segments sont conservés: ils forment l'historique des mouvements. Les
+ * projections sont forcées sur disque toutes les {@code forceIntervalMillis}
+ * ms et à la fermeture; un arrêt du processus ne perd rien, une coupure du
+ * système au plus cet intervalle.
+ *
+ * Le ledger est un journal d'audit: les balances servies et les débits
+ * autorisés restent ceux de la base, qui font foi. Ses balances en sont une
+ * reconstruction vérifiable, rapprochée de la base au démarrage
+ * ({@link #reconcile}); elles ne la remplacent pas, puisqu'une coupure du
+ * système peut y perdre des écritures déjà validées en base.
+ */
+public final class Ledger implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(Ledger.class.getName());
+	// Instantanés conservés, les plus récents (le précédent sert si le dernier est illisible)
+	private static final int SNAPSHOTS_KEPT = 2;
+	private static final int MAX_FIELD_BYTES = 0xFFFF;
+	// Référence des ajustements inscrits par reconcile
+	static final String RECONCILE_REFERENCE = "rapprochement";
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final long snapshotEvery;
+	private final ConcurrentHashMap<String, BigDecimal> balances = new ConcurrentHashMap<>();
+	private final Object appendLock = new Object();
+	private final Object snapshotLock = new Object();
+	private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+	private final ScheduledExecutorService maintenance;
+	// Gardés par appendLock
+	private LedgerSegment active;
+	private long lastSequence;
+	private volatile long snapshotSequence;
+
+	private Ledger(Path directory, int segmentBytes, long snapshotEvery) {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.snapshotEvery = snapshotEvery;
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ledger-maintenance");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Ouvre le ledger de {@code directory}, reconstruit les balances et ouvre un
+	 * nouveau segment pour les écritures à venir.
+	 */
+	public static Ledger open(Path directory, int segmentBytes, long snapshotEvery, long forceIntervalMillis)
+			throws IOException {
+		if (segmentBytes < 4096 || snapshotEvery <= 0 || forceIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Paramètres du ledger invalides");
+		}
+		Files.createDirectories(directory);
+		Ledger ledger = new Ledger(directory, segmentBytes, snapshotEvery);
+		ledger.recover();
+		// Un segment à ce numéro ne peut contenir aucune écriture valide
+		Files.deleteIfExists(LedgerSegment.path(directory, ledger.lastSequence + 1));
+		ledger.active = LedgerSegment.create(directory, ledger.lastSequence + 1, segmentBytes);
+		ledger.maintenance.scheduleWithFixedDelay(ledger::forceActive, forceIntervalMillis, forceIntervalMillis,
+				TimeUnit.MILLISECONDS);
+		return ledger;
+	}
+
+	public long credit(String walletId, BigDecimal amount, String reference) {
+		return append(LedgerEntryType.CREDIT, walletId, amount, reference);
+	}
+
+	public long debit(String walletId, BigDecimal amount, String reference) {
+		return append(LedgerEntryType.DEBIT, walletId, amount, reference);
+	}
+
+	/**
+	 * Rapproche le ledger des balances enregistrées, qui font foi. Chaque écart
+	 * (wallet antérieur au ledger, mouvement perdu dans une coupure du système)
+	 * est signalé pour son wallet, puis inscrit comme un ajustement explicite,
+	 * de référence {@value #RECONCILE_REFERENCE}: l'historique n'est jamais
+	 * réécrit, l'écart y reste visible.
+	 *
+	 * @return l'écart (enregistrée moins ledger) de chaque wallet ajusté
+	 */
+	public Map<String, BigDecimal> reconcile(Collection<Wallet> wallets) {
+		Map<String, BigDecimal> gaps = new LinkedHashMap<>();
+		for (Wallet wallet : wallets) {
+			BigDecimal inLedger = balanceOf(wallet.getId());
+			BigDecimal gap = wallet.getBalance().subtract(inLedger);
+			if (gap.signum() != 0) {
+				LOGGER.warning(String.format("Ledger: écart de %s pour le wallet %s (ledger %s, enregistrée %s),"
+						+ " ajustement inscrit", gap.toPlainString(), wallet.getId(), inLedger.toPlainString(),
+						wallet.getBalance().toPlainString()));
+				append(LedgerEntryType.ADJUSTMENT, wallet.getId(), gap, RECONCILE_REFERENCE);
+				gaps.put(wallet.getId(), gap);
+			}
+		}
+		return gaps;
+	}
+
+	/**
+	 * Balance du wallet selon le ledger (zéro s'il n'y a aucun mouvement).
+	 */
+	public BigDecimal balanceOf(String walletId) {
+		return balances.getOrDefault(walletId, BigDecimal.ZERO);
+	}
+
+	public Map<String, BigDecimal> getBalances() {
+		return Collections.unmodifiableMap(new HashMap<>(balances));
+	}
+
+	public long getLastSequence() {
+		synchronized (appendLock) {
+			return lastSequence;
+		}
+	}
+
+	/**
+	 * Parcourt l'historique, dans l'ordre, à partir des segments qui contiennent
+	 * des écritures postérieures à {@code afterSequence}.
+	 */
+	public void readEntries(long afterSequence, Consumer<LedgerEntry> consumer) throws IOException {
+		// Les écritures en cours d'ajout, au-delà, sont ignorées sans avertissement
+		long last = getLastSequence();
+		for (Path segment : segmentsFrom(afterSequence + 1)) {
+			LedgerSegment.read(segment, last, entry -> {
+				if (entry.getSequence() > afterSequence) {
+					consumer.accept(entry);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Écrit un instantané des balances, s'il y a eu des écritures depuis le précédent.
+	 */
+	public void snapshot() throws IOException {
+		synchronized (snapshotLock) {
+			LedgerSnapshot snapshot;
+			synchronized (appendLock) {
+				if (lastSequence == snapshotSequence) {
+					return;
+				}
+				snapshot = new LedgerSnapshot(lastSequence, new HashMap<>(balances));
+			}
+			long start = System.nanoTime();
+			Path file = snapshot.write(directory);
+			snapshotSequence = snapshot.getSequence();
+			List<Long> snapshots = sequences(LedgerSnapshot.PREFIX, LedgerSnapshot.SUFFIX);
+			for (int i = 0; i < snapshots.size() - SNAPSHOTS_KEPT; i++) {
+				Files.deleteIfExists(LedgerSnapshot.path(directory, snapshots.get(i)));
+			}
+			LOGGER.info(String.format("Instantané du ledger %s: %d balances en %d ms", file.getFileName(),
+					snapshot.getBalances().size(), (System.nanoTime() - start) / 1_000_000));
+		}
+	}
+
+	/**
+	 * Écrit un dernier instantané puis ferme le segment courant.
+	 */
+	@Override
+	public void close() throws IOException {
+		maintenance.shutdownNow();
+		snapshot();
+		synchronized (appendLock) {
+			active.close();
+			if (active.getEntries() == 0) {
+				Files.deleteIfExists(active.getPath());
+			}
+		}
+	}
+
+	private long append(LedgerEntryType type, String walletId, BigDecimal amount, String reference) {
+		if (walletId.length() > MAX_FIELD_BYTES / 3 || reference.length() > MAX_FIELD_BYTES / 3) {
+			throw new IllegalArgumentException("Identifiant trop long pour le ledger");
+		}
+		long sequence;
+		synchronized (appendLock) {
+			sequence = lastSequence + 1;
+			LedgerEntry entry = new LedgerEntry(sequence, Instant.now(), type, walletId, amount, reference);
+			if (!active.append(entry)) {
+				try {
+					active.close();
+					active = LedgerSegment.create(directory, sequence, segmentBytes);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Echec de création d'un segment du ledger", e);
+				}
+				if (!active.append(entry)) {
+					throw new IllegalArgumentException("Ecriture plus grande qu'un segment du ledger");
+				}
+			}
+			lastSequence = sequence;
+			balances.merge(walletId, entry.getDelta(), BigDecimal::add);
+		}
+		if (sequence - snapshotSequence >= snapshotEvery && snapshotScheduled.compareAndSet(false, true)) {
+			maintenance.execute(() -> {
+				try {
+					snapshot();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.severe("Echec de l'instantané du ledger: " + e.getMessage());
+				} finally {
+					snapshotScheduled.set(false);
+				}
+			});
+		}
+		return sequence;
+	}
+
+	/**
+	 * Charge le dernier instantané lisible puis rejoue les écritures suivantes.
+	 */
+	private void recover() throws IOException {
+		long start = System.nanoTime();
+		List<Long> snapshots = sequences(LedgerSnapshot.PREFIX, LedgerSnapshot.SUFFIX);
+		for (int i = snapshots.size() - 1; i >= 0; i--) {
+			LedgerSnapshot snapshot = LedgerSnapshot.read(LedgerSnapshot.path(directory, snapshots.get(i)));
+			if (snapshot != null) {
+				balances.putAll(snapshot.getBalances());
+				snapshotSequence = snapshot.getSequence();
+				lastSequence = snapshot.getSequence();
+				break;
+			}
+			LOGGER.warning("Instantané du ledger illisible: " + snapshots.get(i));
+		}
+		long base = snapshotSequence;
+		int[] replayed = new int[1];
+		for (Path segment : segmentsFrom(base + 1)) {
+			LedgerSegment.read(segment, Long.MAX_VALUE, entry -> {
+				if (entry.getSequence() > base) {
+					balances.merge(entry.getWalletId(), entry.getDelta(), BigDecimal::add);
+					lastSequence = Math.max(lastSequence, entry.getSequence());
+					replayed[0]++;
+				}
+			});
+		}
+		LOGGER.info(String.format("Ledger reconstruit: instantané %d + %d écritures rejouées, %d balances en %d ms",
+				base, replayed[0], balances.size(), (System.nanoTime() - start) / 1_000_000));
+	}
+
+	/**
+	 * Segments pouvant contenir des écritures de numéro {@code sequence} ou plus:
+	 * celui qui commence au plus tard à ce numéro, et les suivants.
+	 */
+	private List<Path> segmentsFrom(long sequence) throws IOException {
+		List<Long> firsts = sequences(LedgerSegment.PREFIX, LedgerSegment.SUFFIX);
+		int from = 0;
+		for (int i = 0; i < firsts.size(); i++) {
+			if (firsts.get(i) <= sequence) {
+				from = i;
+			}
+		}
+		List<Path> segments = new ArrayList<>();
+		for (int i = from; i < firsts.size(); i++) {
+			segments.add(LedgerSegment.path(directory, firsts.get(i)));
+		}
+		return segments;
+	}
+
+	private List<Long> sequences(String prefix, String suffix) throws IOException {
+		List<Long> result = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					result.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+				} catch (NumberFormatException e) {
+					LOGGER.warning("Fichier ignoré dans le ledger: " + name);
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private void forceActive() {
+		LedgerSegment segment;
+		synchronized (appendLock) {
+			segment = active;
+		}
+		if (segment != null) {
+			segment.force();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package repository.ledger;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Écriture du ledger: mouvement d'un wallet, numéroté dans l'ordre d'ajout.
+ */
+public final class LedgerEntry {
+
+	private final long sequence;
+	private final Instant recordedAt;
+	private final LedgerEntryType type;
+	private final String walletId;
+	private final BigDecimal amount;
+	// Transaction à l'origine du mouvement, vide pour un crédit ou un ajustement
+	private final String reference;
+
+	public LedgerEntry(long sequence, Instant recordedAt, LedgerEntryType type, String walletId, BigDecimal amount,
+			String reference) {
+		this.sequence = sequence;
+		this.recordedAt = recordedAt;
+		this.type = type;
+		this.walletId = walletId;
+		this.amount = amount;
+		this.reference = reference;
+	}
+
+	public long getSequence() { return sequence; }
+	public Instant getRecordedAt() { return recordedAt; }
+	public LedgerEntryType getType() { return type; }
+	public String getWalletId() { return walletId; }
+	public BigDecimal getAmount() { return amount; }
+	public String getReference() { return reference; }
+
+	/**
+	 * Effet de l'écriture sur la balance du wallet (négatif pour un débit, signé
+	 * pour un ajustement).
+	 */
+	public BigDecimal getDelta() {
+		return type == LedgerEntryType.DEBIT ? amount.negate() : amount;
+	}
+}
@@ -0,0 +1,11 @@
+package repository.ledger;
+
+/**
+ * Nature d'une écriture du ledger. Un ajustement aligne le ledger sur la
+ * balance enregistrée (solde d'ouverture, écart constaté au démarrage).
+ */
+public enum LedgerEntryType {
+	ADJUSTMENT,
+	CREDIT,
+	DEBIT
+}
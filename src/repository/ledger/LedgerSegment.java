@@ -0,0 +1,169 @@
+package repository.ledger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import util.LoggerProvider;
+
+/**
+ * Segment du ledger: fichier de taille fixe projeté en mémoire, rempli en
+ * ajout seul. Un ajout est une simple copie dans la projection; le système
+ * écrit les pages sur disque, {@link #force()} le garantit.
+ *
+ * Chaque écriture est encadrée par sa longueur et son CRC32. Le reste du
+ * fichier est à zéro: une longueur nulle marque la fin des écritures, une
+ * écriture incomplète (arrêt brutal) est reconnue à son CRC et ignorée.
+ */
+final class LedgerSegment implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(LedgerSegment.class.getName());
+	static final String PREFIX = "ledger-";
+	static final String SUFFIX = ".seg";
+	private static final LedgerEntryType[] TYPES = LedgerEntryType.values();
+
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private int entries;
+
+	private LedgerSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+		this.path = path;
+		this.channel = channel;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Crée le segment dont la première écriture portera le numéro {@code firstSequence}.
+	 */
+	static LedgerSegment create(Path directory, long firstSequence, int size) throws IOException {
+		Path path = path(directory, firstSequence);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		return new LedgerSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+	}
+
+	/**
+	 * Relit les écritures valides d'un segment, dans l'ordre, jusqu'au numéro
+	 * {@code lastSequence}: au-delà, une écriture peut être en cours d'ajout.
+	 *
+	 * @return le nombre d'écritures relues
+	 */
+	static int read(Path path, long lastSequence, Consumer<LedgerEntry> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int count = 0;
+			while (buffer.remaining() >= 4) {
+				int length = buffer.getInt();
+				if (length == 0) {
+					break;
+				}
+				if (length >= 8 && buffer.remaining() >= 8 && buffer.getLong(buffer.position()) > lastSequence) {
+					break;
+				}
+				if (length < 0 || length > buffer.remaining() - 4) {
+					LOGGER.warning("Ecriture tronquée dans " + path + ", fin du segment ignorée");
+					break;
+				}
+				ByteBuffer payload = buffer.slice();
+				payload.limit(length);
+				buffer.position(buffer.position() + length);
+				if (buffer.getInt() != crc(payload.duplicate())) {
+					LOGGER.warning("Ecriture corrompue dans " + path + ", fin du segment ignorée");
+					break;
+				}
+				consumer.accept(decode(payload));
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Copie une écriture à la suite des précédentes.
+	 *
+	 * @return false si le segment n'a plus la place
+	 */
+	boolean append(LedgerEntry entry) {
+		byte[] walletId = entry.getWalletId().getBytes(StandardCharsets.UTF_8);
+		byte[] amount = entry.getAmount().toPlainString().getBytes(StandardCharsets.UTF_8);
+		byte[] reference = entry.getReference().getBytes(StandardCharsets.UTF_8);
+		int length = 8 + 8 + 1 + 3 * 2 + walletId.length + amount.length + reference.length;
+		// Longueur, contenu, CRC et la longueur nulle qui suit
+		if (buffer.remaining() < length + 12) {
+			return false;
+		}
+		// La longueur est écrite en dernier: un lecteur ne voit que des écritures complètes
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.putLong(entry.getSequence());
+		buffer.putLong(entry.getRecordedAt().toEpochMilli());
+		buffer.put((byte) entry.getType().ordinal());
+		putBytes(walletId);
+		putBytes(amount);
+		putBytes(reference);
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(start + 4);
+		payload.limit(start + 4 + length);
+		buffer.putInt(crc(payload));
+		buffer.putInt(start, length);
+		entries++;
+		return true;
+	}
+
+	int getEntries() { return entries; }
+	Path getPath() { return path; }
+
+	/**
+	 * Garantit que les écritures faites sont sur disque.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+	static Path path(Path directory, long firstSequence) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+	}
+
+	private void putBytes(byte[] bytes) {
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static LedgerEntry decode(ByteBuffer payload) {
+		long sequence = payload.getLong();
+		Instant recordedAt = Instant.ofEpochMilli(payload.getLong());
+		LedgerEntryType type = TYPES[payload.get()];
+		String walletId = getString(payload);
+		BigDecimal amount = new BigDecimal(getString(payload));
+		String reference = getString(payload);
+		return new LedgerEntry(sequence, recordedAt, type, walletId, amount, reference);
+	}
+
+	private static String getString(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+		payload.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int crc(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,120 @@
+package repository.ledger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Instantané des balances du ledger après l'écriture {@code sequence}: la
+ * reconstruction part de l'instantané le plus récent et ne rejoue que les
+ * écritures suivantes.
+ *
+ * Format: numéro magique, séquence, nombre de wallets, puis pour chacun l'id
+ * et la balance (longueur et UTF-8), et enfin le CRC32 du tout. Le fichier est
+ * écrit à côté puis renommé atomiquement; à la lecture, il est projeté en
+ * mémoire et rejeté si son CRC ne correspond pas.
+ */
+final class LedgerSnapshot {
+
+	static final String PREFIX = "snapshot-";
+	static final String SUFFIX = ".snap";
+	private static final int MAGIC = 0x4C534E50;
+
+	private final long sequence;
+	private final Map<String, BigDecimal> balances;
+
+	LedgerSnapshot(long sequence, Map<String, BigDecimal> balances) {
+		this.sequence = sequence;
+		this.balances = balances;
+	}
+
+	long getSequence() { return sequence; }
+	Map<String, BigDecimal> getBalances() { return balances; }
+
+	Path write(Path directory) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + balances.size() * 64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeLong(sequence);
+			out.writeInt(balances.size());
+			for (Map.Entry<String, BigDecimal> e : balances.entrySet()) {
+				writeString(out, e.getKey());
+				writeString(out, e.getValue().toPlainString());
+			}
+		}
+		byte[] content = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		Path file = path(directory, sequence);
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(content.length + 4);
+			buffer.put(content).putInt((int) crc.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+
+	/**
+	 * Lit un instantané projeté en mémoire.
+	 *
+	 * @return null si le fichier est incomplet ou corrompu
+	 */
+	static LedgerSnapshot read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < 20) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer content = buffer.duplicate();
+			content.limit(buffer.limit() - 4);
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue() || buffer.getInt() != MAGIC) {
+				return null;
+			}
+			long sequence = buffer.getLong();
+			int count = buffer.getInt();
+			Map<String, BigDecimal> balances = new HashMap<>(count * 4 / 3 + 1);
+			for (int i = 0; i < count; i++) {
+				String walletId = readString(buffer);
+				balances.put(walletId, new BigDecimal(readString(buffer)));
+			}
+			return new LedgerSnapshot(sequence, balances);
+		}
+	}
+
+	static Path path(Path directory, long sequence) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,52 @@
+package repository.ledger;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import metier.model.Transaction;
+import repository.TransactionRepository;
+import repository.cache.ForwardingTransactionRepository;
+
+/**
+ * Dépôt de transactions qui inscrit au {@link Ledger} chaque débit réussi
+ * (envoi ou supplément de frais), avec la transaction en référence. Tout le
+ * reste est délégué.
+ */
+public class LedgerTransactionRepository extends ForwardingTransactionRepository {
+
+	private final Ledger ledger;
+
+	public LedgerTransactionRepository(TransactionRepository delegate, Ledger ledger) {
+		super(delegate);
+		this.ledger = ledger;
+	}
+
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		Optional<BigDecimal> balance = delegate.saveWithDebit(tx, debit);
+		if (balance.isPresent()) {
+			LedgerWalletRepository.record(ledger, LedgerEntryType.DEBIT, tx.getWalletId(), debit, tx.getId());
+		}
+		return balance;
+	}
+
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		Optional<BigDecimal> balance = delegate.updateFeeWithDebit(replacement, debit);
+		if (balance.isPresent()) {
+			// Débit négatif: remplacement annulé, le supplément est recrédité
+			LedgerWalletRepository.record(ledger, debit.signum() < 0 ? LedgerEntryType.CREDIT : LedgerEntryType.DEBIT,
+				replacement.getWalletId(), debit.abs(), replacement.getId());
+		}
+		return balance;
+	}
+
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		Optional<BigDecimal> refund = delegate.rejectWithRefund(tx);
+		if (refund.isPresent()) {
+			LedgerWalletRepository.record(ledger, LedgerEntryType.CREDIT, tx.getWalletId(), refund.get(), tx.getId());
+		}
+		return refund;
+	}
+}
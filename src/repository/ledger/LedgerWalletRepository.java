@@ -0,0 +1,75 @@
+package repository.ledger;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import metier.model.Wallet;
+import repository.WalletRepository;
+import util.LoggerProvider;
+
+/**
+ * Dépôt de wallets qui inscrit au {@link Ledger} chaque crédit réussi. Tout le
+ * reste est délégué: les balances lues sont celles du dépôt délégué, qui font
+ * foi. Les remplacements de balance ({@code updateBalance}) ne sont pas des
+ * mouvements; leurs écarts sont signalés et ajustés par {@link Ledger#reconcile}.
+ */
+public class LedgerWalletRepository implements WalletRepository {
+
+	private final WalletRepository delegate;
+	private final Ledger ledger;
+
+	public LedgerWalletRepository(WalletRepository delegate, Ledger ledger) {
+		this.delegate = delegate;
+		this.ledger = ledger;
+	}
+
+	@Override
+	public Optional<BigDecimal> credit(String id, BigDecimal amount) {
+		Optional<BigDecimal> balance = delegate.credit(id, amount);
+		if (balance.isPresent()) {
+			record(ledger, LedgerEntryType.CREDIT, id, amount, "");
+		}
+		return balance;
+	}
+
+	@Override
+	public void save(Wallet wallet) { delegate.save(wallet); }
+
+	@Override
+	public void saveAll(Collection<Wallet> wallets) { delegate.saveAll(wallets); }
+
+	@Override
+	public Optional<Wallet> findById(String id) { return delegate.findById(id); }
+
+	@Override
+	public Optional<Wallet> findByAddress(String address) { return delegate.findByAddress(address); }
+
+	@Override
+	public void updateBalance(String id, BigDecimal newBalance) { delegate.updateBalance(id, newBalance); }
+
+	@Override
+	public boolean updateBalanceAll(Map<String, BigDecimal> balances) { return delegate.updateBalanceAll(balances); }
+
+	@Override
+	public List<Wallet> findAll() { return delegate.findAll(); }
+
+	/**
+	 * Inscrit un mouvement déjà appliqué; un échec est journalisé et sera
+	 * rattrapé par le rapprochement du prochain démarrage.
+	 */
+	static void record(Ledger ledger, LedgerEntryType type, String walletId, BigDecimal amount, String reference) {
+		try {
+			if (type == LedgerEntryType.CREDIT) {
+				ledger.credit(walletId, amount, reference);
+			} else {
+				ledger.debit(walletId, amount, reference);
+			}
+		} catch (RuntimeException e) {
+			LoggerProvider.getLogger(Ledger.class.getName()).severe("Mouvement non inscrit au ledger pour le wallet "
+				+ walletId + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package repository.memory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import metier.model.Wallet;
+import repository.TransactionRepository;
+import repository.WalletRepository;
+import util.LoggerProvider;
+
+/**
+ * Stockage en mémoire des wallets et des transactions, sans base de données,
+ * pour les simulations à fort débit.
+ *
+ * Sans journal, tout est perdu à l'arrêt. Avec un journal, chaque
+ * modification y est ajoutée et le journal est relu à l'ouverture; il est
+ * compacté à ce moment si les états périmés y dominent.
+ */
+public final class InMemoryStore implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(InMemoryStore.class.getName());
+	// Compacte le journal quand il contient plus de 2 enregistrements par état courant
+	private static final int COMPACTION_RATIO = 2;
+	private static final long COMPACTION_MIN_RECORDS = 10_000L;
+
+	private final MemoryStoreLog log;
+	private final InMemoryWalletRepository wallets;
+	private final InMemoryTransactionRepository transactions;
+
+	private InMemoryStore(MemoryStoreLog log) {
+		this.log = log;
+		this.wallets = new InMemoryWalletRepository(log);
+		this.transactions = new InMemoryTransactionRepository(wallets, log);
+	}
+
+	/**
+	 * Stockage sans journal.
+	 */
+	public static InMemoryStore create() {
+		return new InMemoryStore(null);
+	}
+
+	/**
+	 * Stockage journalisé dans {@code logFile}, rechargé depuis ce fichier s'il existe.
+	 *
+	 * @param flushIntervalMillis intervalle maximal entre deux vidages du journal vers le système
+	 */
+	public static InMemoryStore open(Path logFile, long flushIntervalMillis) throws IOException {
+		MemoryStoreLog log = new MemoryStoreLog(logFile, flushIntervalMillis);
+		InMemoryStore store = new InMemoryStore(log);
+		long start = System.nanoTime();
+		long records = log.replay(new MemoryStoreLog.Handler() {
+			@Override
+			public void wallet(Wallet wallet) {
+				store.wallets.restore(wallet);
+			}
+
+			@Override
+			public void transaction(TransactionRecord record) {
+				store.transactions.restore(record);
+			}
+		});
+		long live = store.wallets.records().size() + store.transactions.records().size();
+		LOGGER.info(String.format("Stockage en mémoire rechargé: %d wallets, %d transactions (%d enregistrements) en %d ms",
+				store.wallets.records().size(), store.transactions.records().size(), records,
+				(System.nanoTime() - start) / 1_000_000));
+		if (records >= COMPACTION_MIN_RECORDS && records > COMPACTION_RATIO * live) {
+			log.rewrite(store.wallets.records(), store.transactions.records());
+			LOGGER.info("Journal du stockage en mémoire compacté: " + records + " -> " + live + " enregistrements");
+		}
+		log.open();
+		return store;
+	}
+
+	public WalletRepository getWalletRepository() { return wallets; }
+	public TransactionRepository getTransactionRepository() { return transactions; }
+
+	/**
+	 * Vide et ferme le journal, s'il y en a un.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (log != null) {
+			log.close();
+		}
+	}
+}
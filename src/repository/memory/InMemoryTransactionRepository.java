@@ -0,0 +1,336 @@
+package repository.memory;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import repository.Page;
+import repository.PageCursor;
+import repository.TransactionRepository;
+import util.LoggerProvider;
+
+/**
+ * Dépôt de transactions en mémoire, associé à un {@link InMemoryWalletRepository}.
+ *
+ * Index de hachage sur l'id, le wallet et le statut. Les deux derniers
+ * rangent les ids par clé (created_at, pk), comme l'index
+ * idx_transactions_wallet_created_pk: l'historique paginé et les transactions
+ * en attente se lisent dans l'ordre sans tri. Les index sont mis à jour sous le
+ * verrou de l'entrée de la transaction; une lecture qui croise une mise à jour
+ * revérifie le statut de l'état courant.
+ *
+ * Comme en base, une transaction n'est insérée que si son wallet existe, et
+ * les débits de {@code saveWithDebit} et {@code updateFeeWithDebit} ne sont
+ * appliqués que si la balance les couvre.
+ */
+public class InMemoryTransactionRepository implements TransactionRepository {
+
+	/**
+	 * Clé d'ordre (created_at, pk) des index.
+	 */
+	private static final class Key implements Comparable<Key> {
+		final Instant createdAt;
+		final long pk;
+
+		Key(Instant createdAt, long pk) {
+			this.createdAt = createdAt;
+			this.pk = pk;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int c = createdAt.compareTo(other.createdAt);
+			return c != 0 ? c : Long.compare(pk, other.pk);
+		}
+	}
+
+	private final InMemoryWalletRepository wallets;
+	private final MemoryStoreLog log;
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentHashMap<String, TransactionRecord> byId = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, ConcurrentSkipListMap<Key, String>> byWallet = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<TransactionStatus, ConcurrentSkipListMap<Key, String>> byStatus = new ConcurrentHashMap<>();
+
+	public InMemoryTransactionRepository(InMemoryWalletRepository wallets) {
+		this(wallets, null);
+	}
+
+	InMemoryTransactionRepository(InMemoryWalletRepository wallets, MemoryStoreLog log) {
+		this.wallets = wallets;
+		this.log = log;
+	}
+
+	@Override
+	public void save(Transaction tx) {
+		insert(tx);
+	}
+
+	@Override
+	public void saveAll(Collection<Transaction> transactions) {
+		for (Transaction tx : transactions) {
+			insert(tx);
+		}
+	}
+
+	@Override
+	public Optional<BigDecimal> saveWithDebit(Transaction tx, BigDecimal debit) {
+		BigDecimal balance = wallets.debit(tx.getWalletId(), debit);
+		if (balance == null) {
+			return Optional.empty();
+		}
+		if (!insert(tx)) {
+			wallets.credit(tx.getWalletId(), debit);
+			return Optional.empty();
+		}
+		return Optional.of(balance);
+	}
+
+	@Override
+	public Optional<Transaction> findById(String id) {
+		TransactionRecord record = byId.get(id);
+		return record == null ? Optional.empty() : Optional.of(record.toTransaction());
+	}
+
+	@Override
+	public List<Transaction> findPending() {
+		try (Stream<Transaction> pending = streamPending()) {
+			return pending.collect(Collectors.toList());
+		}
+	}
+
+	@Override
+	public List<Transaction> findByWalletId(String walletId) {
+		try (Stream<Transaction> history = streamByWalletId(walletId)) {
+			return history.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Transactions en attente, de la plus ancienne à la plus récente.
+	 */
+	@Override
+	public Stream<Transaction> streamPending() {
+		return resolve(index(byStatus, TransactionStatus.PENDING))
+			.filter(r -> r.getTransaction().getStatus() == TransactionStatus.PENDING)
+			.map(TransactionRecord::toTransaction);
+	}
+
+	/**
+	 * Historique d'un wallet, du plus récent au plus ancien.
+	 */
+	@Override
+	public Stream<Transaction> streamByWalletId(String walletId) {
+		return resolve(historyOf(walletId).descendingMap()).map(TransactionRecord::toTransaction);
+	}
+
+	@Override
+	public Page<Transaction> findPageByWalletId(String walletId, PageCursor after, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Taille de page invalide: " + limit);
+		}
+		NavigableMap<Key, String> history = historyOf(walletId).descendingMap();
+		if (after != null) {
+			history = history.tailMap(new Key(after.getCreatedAt(), after.getPk()), false);
+		}
+		List<Transaction> items = new ArrayList<>(Math.min(limit, 1024));
+		PageCursor last = null;
+		for (Map.Entry<Key, String> e : history.entrySet()) {
+			TransactionRecord record = byId.get(e.getValue());
+			if (record == null) {
+				continue;
+			}
+			if (items.size() == limit) {
+				return new Page<>(items, last);
+			}
+			items.add(record.toTransaction());
+			last = new PageCursor(e.getKey().createdAt, e.getKey().pk);
+		}
+		return new Page<>(items, null);
+	}
+
+	@Override
+	public void updateStatus(String id, TransactionStatus status) {
+		updateStatusOf(id, status);
+	}
+
+	/**
+	 * @return false si une transaction est inconnue ou n'a pas pu être journalisée;
+	 *         les autres sont mises à jour
+	 */
+	@Override
+	public boolean updateStatusAll(Collection<String> ids, TransactionStatus status) {
+		boolean all = true;
+		for (String id : ids) {
+			all &= updateStatusOf(id, status);
+		}
+		return all;
+	}
+
+	@Override
+	public boolean updateFee(String id, FeePriority feePriority, BigDecimal feeAmount) {
+		return update(id, r -> r.getTransaction().getStatus() == TransactionStatus.PENDING
+				? r.with(feePriority, feeAmount, TransactionStatus.PENDING)
+				: null);
+	}
+
+	/**
+	 * Débite le supplément puis met à jour les frais; le débit est recrédité si
+	 * la transaction n'est plus en attente.
+	 */
+	@Override
+	public Optional<BigDecimal> updateFeeWithDebit(Transaction replacement, BigDecimal debit) {
+		BigDecimal balance = wallets.debit(replacement.getWalletId(), debit);
+		if (balance == null) {
+			return Optional.empty();
+		}
+		if (!updateFee(replacement.getId(), replacement.getFeePriority(), replacement.getFeeAmount())) {
+			wallets.credit(replacement.getWalletId(), debit);
+			return Optional.empty();
+		}
+		return Optional.of(balance);
+	}
+
+	/**
+	 * Passe la transaction au statut REJECTED si elle est en attente, puis
+	 * recrédite son wallet du montant et des frais enregistrés.
+	 */
+	@Override
+	public Optional<BigDecimal> rejectWithRefund(Transaction tx) {
+		BigDecimal[] refund = new BigDecimal[1];
+		boolean rejected = update(tx.getId(), r -> {
+			Transaction current = r.getTransaction();
+			if (current.getStatus() != TransactionStatus.PENDING) {
+				return null;
+			}
+			refund[0] = current.getFeeAmount() == null ? current.getAmount()
+				: current.getAmount().add(current.getFeeAmount());
+			return r.with(current.getFeePriority(), current.getFeeAmount(), TransactionStatus.REJECTED);
+		});
+		if (!rejected || !wallets.credit(tx.getWalletId(), refund[0]).isPresent()) {
+			return Optional.empty();
+		}
+		return Optional.of(refund[0]);
+	}
+
+	/**
+	 * Remet une transaction relue du journal, sans la journaliser.
+	 */
+	void restore(TransactionRecord record) {
+		sequence.accumulateAndGet(record.getPk(), Math::max);
+		TransactionRecord previous = byId.put(record.getTransaction().getId(), record);
+		reindex(previous, record);
+	}
+
+	Collection<TransactionRecord> records() {
+		return byId.values();
+	}
+
+	/**
+	 * @return false si le wallet est inconnu, l'id déjà pris ou le journal en échec
+	 */
+	@Override
+	public boolean insert(Transaction tx) {
+		if (!wallets.contains(tx.getWalletId())) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Wallet inconnu pour la transaction " + tx.getId()
+				+ ": " + tx.getWalletId());
+			return false;
+		}
+		TransactionRecord created = TransactionRecord.copyOf(sequence.incrementAndGet(), tx);
+		boolean[] inserted = new boolean[1];
+		try {
+			byId.compute(tx.getId(), (id, current) -> {
+				if (current != null) {
+					return current;
+				}
+				inserted[0] = true;
+				reindex(null, logged(created));
+				return created;
+			});
+		} catch (UncheckedIOException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return false;
+		}
+		if (!inserted[0]) {
+			LoggerProvider.getLogger(getClass().getName()).severe("Transaction déjà enregistrée: " + tx.getId());
+		}
+		return inserted[0];
+	}
+
+	private boolean updateStatusOf(String id, TransactionStatus status) {
+		return update(id, r -> r.with(r.getTransaction().getFeePriority(), r.getTransaction().getFeeAmount(), status));
+	}
+
+	/**
+	 * Remplace atomiquement l'état d'une transaction.
+	 *
+	 * @param change nouvel état à partir de l'actuel, null pour refuser
+	 * @return false si la transaction est inconnue, le changement refusé ou le journal en échec
+	 */
+	private boolean update(String id, UnaryOperator<TransactionRecord> change) {
+		boolean[] updated = new boolean[1];
+		try {
+			byId.computeIfPresent(id, (k, current) -> {
+				TransactionRecord next = change.apply(current);
+				if (next == null) {
+					return current;
+				}
+				updated[0] = true;
+				reindex(current, logged(next));
+				return next;
+			});
+		} catch (UncheckedIOException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return false;
+		}
+		return updated[0];
+	}
+
+	private void reindex(TransactionRecord previous, TransactionRecord next) {
+		Transaction tx = next.getTransaction();
+		Key key = new Key(tx.getCreatedAt(), next.getPk());
+		if (previous == null) {
+			index(byWallet, tx.getWalletId()).put(key, tx.getId());
+		} else if (previous.getTransaction().getStatus() != tx.getStatus()) {
+			index(byStatus, previous.getTransaction().getStatus())
+				.remove(new Key(previous.getTransaction().getCreatedAt(), previous.getPk()));
+		}
+		index(byStatus, tx.getStatus()).put(key, tx.getId());
+	}
+
+	private TransactionRecord logged(TransactionRecord record) {
+		if (log != null) {
+			log.appendTransaction(record);
+		}
+		return record;
+	}
+
+	private NavigableMap<Key, String> historyOf(String walletId) {
+		ConcurrentSkipListMap<Key, String> history = byWallet.get(walletId);
+		return history != null ? history : Collections.<Key, String>emptyNavigableMap();
+	}
+
+	private Stream<TransactionRecord> resolve(Map<Key, String> index) {
+		return index.values().stream().map(byId::get).filter(r -> r != null);
+	}
+
+	private static <K> ConcurrentSkipListMap<Key, String> index(
+			ConcurrentHashMap<K, ConcurrentSkipListMap<Key, String>> indexes, K key) {
+		return indexes.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>());
+	}
+}
@@ -0,0 +1,171 @@
+package repository.memory;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import metier.enums.CryptoType;
+import metier.model.BitcoinWallet;
+import metier.model.EthereumWallet;
+import metier.model.Wallet;
+import repository.WalletRepository;
+import util.LoggerProvider;
+
+/**
+ * Dépôt de wallets en mémoire, indexé par id et par adresse.
+ *
+ * Chaque wallet est stocké comme une copie privée, remplacée à chaque
+ * modification sous le verrou de son entrée: les crédits et débits
+ * concurrents d'un même wallet ne se perdent pas. Les wallets rendus sont des
+ * copies, comme ceux relus d'une base. Avec un journal, chaque nouvel état est
+ * journalisé avant d'être visible.
+ */
+public class InMemoryWalletRepository implements WalletRepository {
+
+	private final ConcurrentHashMap<String, Wallet> byId = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, String> idsByAddress = new ConcurrentHashMap<>();
+	private final MemoryStoreLog log;
+
+	public InMemoryWalletRepository() {
+		this(null);
+	}
+
+	InMemoryWalletRepository(MemoryStoreLog log) {
+		this.log = log;
+	}
+
+	@Override
+	public void save(Wallet wallet) {
+		Wallet stored = copy(wallet);
+		try {
+			byId.compute(wallet.getId(), (id, current) -> logged(stored));
+			idsByAddress.put(wallet.getAddress(), wallet.getId());
+		} catch (UncheckedIOException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+		}
+	}
+
+	@Override
+	public void saveAll(Collection<Wallet> wallets) {
+		for (Wallet wallet : wallets) {
+			save(wallet);
+		}
+	}
+
+	@Override
+	public Optional<Wallet> findById(String id) {
+		Wallet wallet = byId.get(id);
+		return wallet == null ? Optional.empty() : Optional.of(copy(wallet));
+	}
+
+	@Override
+	public Optional<Wallet> findByAddress(String address) {
+		String id = idsByAddress.get(address);
+		return id == null ? Optional.empty() : findById(id);
+	}
+
+	@Override
+	public List<Wallet> findAll() {
+		List<Wallet> wallets = new ArrayList<>(byId.size());
+		for (Wallet wallet : byId.values()) {
+			wallets.add(copy(wallet));
+		}
+		return wallets;
+	}
+
+	@Override
+	public void updateBalance(String id, BigDecimal newBalance) {
+		adjust(id, current -> newBalance);
+	}
+
+	@Override
+	public boolean updateBalanceAll(Map<String, BigDecimal> balances) {
+		boolean updated = true;
+		for (Map.Entry<String, BigDecimal> e : balances.entrySet()) {
+			if (adjust(e.getKey(), current -> e.getValue()) == null && byId.containsKey(e.getKey())) {
+				// Wallet présent mais nouvel état non journalisé
+				updated = false;
+			}
+		}
+		return updated;
+	}
+
+	@Override
+	public Optional<BigDecimal> credit(String id, BigDecimal amount) {
+		return Optional.ofNullable(adjust(id, current -> current.add(amount)));
+	}
+
+	/**
+	 * Débite le wallet si sa balance couvre le montant.
+	 *
+	 * @return la nouvelle balance, null si les fonds sont insuffisants ou le wallet inconnu
+	 */
+	BigDecimal debit(String id, BigDecimal amount) {
+		return adjust(id, current -> current.compareTo(amount) >= 0 ? current.subtract(amount) : null);
+	}
+
+	boolean contains(String id) {
+		return byId.containsKey(id);
+	}
+
+	/**
+	 * Remet un wallet relu du journal, sans le journaliser.
+	 */
+	void restore(Wallet wallet) {
+		byId.put(wallet.getId(), wallet);
+		idsByAddress.put(wallet.getAddress(), wallet.getId());
+	}
+
+	Collection<Wallet> records() {
+		return byId.values();
+	}
+
+	/**
+	 * Remplace atomiquement la balance d'un wallet.
+	 *
+	 * @param update nouvelle balance à partir de l'actuelle, null pour refuser
+	 * @return la nouvelle balance, null si refusée, wallet inconnu ou journal en échec
+	 */
+	private BigDecimal adjust(String id, UnaryOperator<BigDecimal> update) {
+		BigDecimal[] applied = new BigDecimal[1];
+		try {
+			byId.computeIfPresent(id, (k, current) -> {
+				BigDecimal next = update.apply(current.getBalance());
+				if (next == null) {
+					return current;
+				}
+				applied[0] = next;
+				return logged(newWallet(k, current.getCryptoType(), current.getAddress(), next, current.getCreatedAt()));
+			});
+		} catch (UncheckedIOException e) {
+			LoggerProvider.getLogger(getClass().getName()).severe(e.getMessage());
+			return null;
+		}
+		return applied[0];
+	}
+
+	private Wallet logged(Wallet wallet) {
+		if (log != null) {
+			log.appendWallet(wallet);
+		}
+		return wallet;
+	}
+
+	private static Wallet copy(Wallet wallet) {
+		return newWallet(wallet.getId(), wallet.getCryptoType(), wallet.getAddress(), wallet.getBalance(),
+				wallet.getCreatedAt());
+	}
+
+	static Wallet newWallet(String id, CryptoType cryptoType, String address, BigDecimal balance, Instant createdAt) {
+		return cryptoType == CryptoType.BITCOIN
+				? new BitcoinWallet(id, address, balance, createdAt)
+				: new EthereumWallet(id, address, balance, createdAt);
+	}
+}
@@ -0,0 +1,285 @@
+package repository.memory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import metier.enums.CryptoType;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import metier.model.Wallet;
+import util.LoggerProvider;
+
+/**
+ * Journal de durabilité du stockage en mémoire: un fichier en ajout seul où
+ * chaque modification écrit l'état complet du wallet ou de la transaction
+ * modifié. À la relecture, le dernier état de chaque id l'emporte.
+ *
+ * Un enregistrement est encadré par sa longueur et son CRC32; une fin de
+ * fichier tronquée par un arrêt brutal est ignorée puis coupée avant les
+ * nouveaux ajouts. Les écritures passent par un tampon vidé vers le système
+ * toutes les {@code flushIntervalMillis} ms et à la fermeture: un arrêt du
+ * processus perd au plus cet intervalle, sans {@code fsync} à chaque écriture.
+ */
+final class MemoryStoreLog implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(MemoryStoreLog.class.getName());
+	private static final byte WALLET = 1;
+	private static final byte TRANSACTION = 2;
+	private static final int MAX_RECORD_BYTES = 1 << 20;
+
+	/**
+	 * Reçoit les enregistrements relus, dans l'ordre d'écriture.
+	 */
+	interface Handler {
+		void wallet(Wallet wallet);
+		void transaction(TransactionRecord record);
+	}
+
+	private final Path file;
+	private final long flushIntervalMillis;
+	// Gardés par this
+	private DataOutputStream out;
+	private ScheduledExecutorService flusher;
+
+	MemoryStoreLog(Path file, long flushIntervalMillis) {
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Intervalle d'écriture du journal invalide");
+		}
+		this.file = file;
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	/**
+	 * Relit le journal et coupe une éventuelle fin invalide.
+	 *
+	 * @return le nombre d'enregistrements relus
+	 */
+	long replay(Handler handler) throws IOException {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		long count = 0;
+		long validLength = 0;
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+			 DataInputStream data = new DataInputStream(in)) {
+			while (true) {
+				int length;
+				try {
+					length = data.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (length <= 0 || length > MAX_RECORD_BYTES) {
+					LOGGER.warning("Longueur d'enregistrement invalide dans " + file + ", fin du journal ignorée");
+					break;
+				}
+				byte[] payload = new byte[length];
+				data.readFully(payload);
+				if (data.readInt() != crc(payload)) {
+					LOGGER.warning("Enregistrement corrompu dans " + file + ", fin du journal ignorée");
+					break;
+				}
+				decode(payload, handler);
+				validLength += length + 8;
+				count++;
+			}
+		} catch (EOFException e) {
+			LOGGER.warning("Journal " + file + " tronqué, fin ignorée");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			if (channel.size() > validLength) {
+				channel.truncate(validLength);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Réécrit le journal avec le seul état courant (compactage), via un fichier
+	 * temporaire renommé atomiquement. À appeler avant {@link #open()}.
+	 */
+	void rewrite(Collection<Wallet> wallets, Collection<TransactionRecord> transactions) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream stream = Files.newOutputStream(tmp);
+			 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+			for (Wallet wallet : wallets) {
+				write(data, encode(wallet));
+			}
+			for (TransactionRecord record : transactions) {
+				write(data, encode(record));
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Ouvre le journal en ajout et planifie le vidage périodique du tampon.
+	 */
+	synchronized void open() throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16));
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "memory-store-log");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	void appendWallet(Wallet wallet) {
+		append(encode(wallet));
+	}
+
+	void appendTransaction(TransactionRecord record) {
+		append(encode(record));
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (out == null) {
+			return;
+		}
+		flusher.shutdownNow();
+		out.close();
+		out = null;
+	}
+
+	/**
+	 * @throws UncheckedIOException en cas d'échec d'écriture, ou si le journal est
+	 *         déjà fermé: les dépôts refusent alors la modification
+	 */
+	private synchronized void append(byte[] payload) {
+		if (out == null) {
+			throw new UncheckedIOException(new IOException("Journal déjà fermé: " + file));
+		}
+		try {
+			write(out, payload);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Echec d'écriture du journal " + file, e);
+		}
+	}
+
+	private synchronized void flushQuietly() {
+		try {
+			if (out != null) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			LOGGER.severe("Echec du vidage du journal " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static void write(DataOutputStream data, byte[] payload) throws IOException {
+		data.writeInt(payload.length);
+		data.write(payload);
+		data.writeInt(crc(payload));
+	}
+
+	private static byte[] encode(Wallet wallet) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try (DataOutputStream data = new DataOutputStream(bytes)) {
+			data.writeByte(WALLET);
+			data.writeUTF(wallet.getId());
+			data.writeUTF(wallet.getCryptoType().name());
+			data.writeUTF(wallet.getAddress());
+			data.writeUTF(wallet.getBalance().toPlainString());
+			writeInstant(data, wallet.getCreatedAt());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encode(TransactionRecord record) {
+		Transaction tx = record.getTransaction();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream data = new DataOutputStream(bytes)) {
+			data.writeByte(TRANSACTION);
+			data.writeLong(record.getPk());
+			data.writeUTF(tx.getId());
+			data.writeUTF(tx.getFromAddress());
+			data.writeUTF(tx.getToAddress());
+			data.writeUTF(tx.getAmount().toPlainString());
+			data.writeUTF(tx.getFeePriority().name());
+			data.writeUTF(tx.getFeeAmount() == null ? "" : tx.getFeeAmount().toPlainString());
+			data.writeUTF(tx.getStatus().name());
+			writeInstant(data, tx.getCreatedAt());
+			data.writeUTF(tx.getWalletId());
+			data.writeUTF(tx.getCryptoType().name());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void decode(byte[] payload, Handler handler) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+		byte type = data.readByte();
+		if (type == WALLET) {
+			String id = data.readUTF();
+			CryptoType cryptoType = CryptoType.valueOf(data.readUTF());
+			String address = data.readUTF();
+			BigDecimal balance = new BigDecimal(data.readUTF());
+			handler.wallet(InMemoryWalletRepository.newWallet(id, cryptoType, address, balance, readInstant(data)));
+		} else if (type == TRANSACTION) {
+			long pk = data.readLong();
+			String id = data.readUTF();
+			String from = data.readUTF();
+			String to = data.readUTF();
+			BigDecimal amount = new BigDecimal(data.readUTF());
+			FeePriority priority = FeePriority.valueOf(data.readUTF());
+			String fee = data.readUTF();
+			TransactionStatus status = TransactionStatus.valueOf(data.readUTF());
+			Instant createdAt = readInstant(data);
+			String walletId = data.readUTF();
+			CryptoType cryptoType = CryptoType.valueOf(data.readUTF());
+			handler.transaction(new TransactionRecord(pk, new Transaction(id, from, to, amount, priority, createdAt,
+					fee.isEmpty() ? null : new BigDecimal(fee), status, walletId, cryptoType)));
+		} else {
+			throw new IOException("Type d'enregistrement inconnu: " + type);
+		}
+	}
+
+	private static void writeInstant(DataOutputStream data, Instant instant) throws IOException {
+		data.writeLong(instant.getEpochSecond());
+		data.writeInt(instant.getNano());
+	}
+
+	private static Instant readInstant(DataInputStream data) throws IOException {
+		return Instant.ofEpochSecond(data.readLong(), data.readInt());
+	}
+
+	private static int crc(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+}
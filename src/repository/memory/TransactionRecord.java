@@ -0,0 +1,46 @@
+package repository.memory;
+
+import java.math.BigDecimal;
+
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+
+/**
+ * État stocké d'une transaction: sa clé d'ordre {@code pk}, attribuée à
+ * l'insertion comme la colonne de même nom, et une copie privée de la
+ * transaction, jamais modifiée (chaque changement produit un nouvel état).
+ */
+final class TransactionRecord {
+
+	private final long pk;
+	private final Transaction transaction;
+
+	TransactionRecord(long pk, Transaction transaction) {
+		this.pk = pk;
+		this.transaction = transaction;
+	}
+
+	/**
+	 * État d'une transaction insérée, sur une copie de celle de l'appelant.
+	 */
+	static TransactionRecord copyOf(long pk, Transaction tx) {
+		return new TransactionRecord(pk, tx).with(tx.getFeePriority(), tx.getFeeAmount(), tx.getStatus());
+	}
+
+	long getPk() { return pk; }
+	Transaction getTransaction() { return transaction; }
+
+	/**
+	 * Copie de la transaction, remise à l'appelant.
+	 */
+	Transaction toTransaction() {
+		return with(transaction.getFeePriority(), transaction.getFeeAmount(), transaction.getStatus()).transaction;
+	}
+
+	TransactionRecord with(FeePriority feePriority, BigDecimal feeAmount, TransactionStatus status) {
+		Transaction t = transaction;
+		return new TransactionRecord(pk, new Transaction(t.getId(), t.getFromAddress(), t.getToAddress(),
+				t.getAmount(), feePriority, t.getCreatedAt(), feeAmount, status, t.getWalletId(), t.getCryptoType()));
+	}
+}
@@ -2,25 +2,58 @@ package ui;
 
 import java.util.Scanner;
 import java.util.logging.Logger;
+import config.ConfigManager;
 import config.Database;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 
+import metier.enums.CryptoType;
 import metier.enums.FeePriority;
+import metier.enums.PositionEventType;
+import metier.enums.TransactionStatus;
+import metier.model.PositionEvent;
 import metier.model.Transaction;
 import metier.model.Wallet;
+import metier.service.BlockProducer;
+import metier.service.ConfirmationTimeEstimator;
 import metier.service.FeeCalculator;
 import metier.service.FeeCalculatorFactory;
 import metier.service.MempoolService;
+import metier.service.SyntheticLoadGenerator;
 
 import metier.service.WalletService;
 
+import repository.Page;
+import repository.PageCursor;
 import repository.TransactionRepository;
 import repository.WalletRepository;
 import repository.jdbc.JdbcTransactionRepository;
+import repository.RepositoryType;
+import repository.async.ExecutorTransactionRepository;
+import repository.async.ExecutorWalletRepository;
+import repository.async.RepositoryExecutor;
+import repository.cache.CachingWalletRepository;
+import repository.cache.InvalidatingTransactionRepository;
+import repository.cache.WriteBehindTransactionRepository;
+import repository.cache.WriteBehindWalletRepository;
 import repository.jdbc.JdbcWalletRepository;
+import repository.ledger.Ledger;
+import repository.ledger.LedgerTransactionRepository;
+import repository.ledger.LedgerWalletRepository;
+import repository.memory.InMemoryStore;
+import util.Flow;
 
 
 /**
@@ -30,15 +63,47 @@ import repository.jdbc.JdbcWalletRepository;
 public class ConsoleApp {
 
 	private static final Logger LOGGER = Logger.getLogger(ConsoleApp.class.getName());
-	private static final WalletRepository walletRepo = new JdbcWalletRepository();
-	private static final TransactionRepository txRepo = new JdbcTransactionRepository();
+	// Stockage en mémoire si repository.type=MEMORY (null sinon: base de données)
+	private static final InMemoryStore memoryStore = openMemoryStore();
+	// Écriture différée des balances si wallet.writeBehind.enabled (null sinon)
+	private static final WriteBehindWalletRepository writeBehind = openWriteBehind();
+	// Cache en lecture des wallets si wallet.cache.enabled (null sinon)
+	private static final CachingWalletRepository walletCache = openWalletCache();
+	// Ledger des mouvements de balance si ledger.enabled (null sinon)
+	private static final Ledger ledger = openLedger();
+	private static final WalletRepository walletRepo = createWalletRepository();
+	private static final TransactionRepository txRepo = createTransactionRepository();
 	private static final MempoolService mempool = new MempoolService();
+	private static final ConfirmationTimeEstimator etaEstimator = new ConfirmationTimeEstimator(mempool);
+	private static final SyntheticLoadGenerator loadGenerator = SyntheticLoadGenerator.fromConfig();
+	// Nombre de transactions listées par l'affichage du mempool
+	private static final int MEMPOOL_DISPLAY_LIMIT = 20;
+	// Transactions par page de l'historique
+	private static final int HISTORY_PAGE_SIZE = 10;
 
-	private static final WalletService walletService = new WalletService(walletRepo, txRepo);
+	// Appels asynchrones aux dépôts, au plus db.maxConnections à la fois
+	private static final RepositoryExecutor repositoryExecutor =
+		RepositoryExecutor.create(ConfigManager.getMaxConnections());
+	private static final WalletService walletService = new WalletService(walletRepo, txRepo,
+		new ExecutorWalletRepository(walletRepo, repositoryExecutor),
+		new ExecutorTransactionRepository(txRepo, repositoryExecutor));
 	private static Transaction lastCreatedTx;
+	// Suivi poussé de la position de lastCreatedTx
+	private static PositionTracker positionTracker;
 
 	public static void main(String[] args) {
-		Database.getInstance().init();
+		if (memoryStore == null) {
+			Database.getInstance().init();
+		}
+		if (ledger != null) {
+			// Les balances en base font foi: le ledger signale et ajuste ses écarts
+			ledger.reconcile(walletRepo.findAll());
+		}
+		mempool.setEvictionListener(ConsoleApp::rejectEvicted);
+		restoreMempool();
+		for (CryptoType chain : CryptoType.values()) {
+			BlockProducer.forChain(mempool, txRepo, chain).start();
+		}
 		Scanner scanner = new Scanner(System.in);
 		boolean running = true;
 		while (running) {
@@ -66,6 +131,12 @@ public class ConsoleApp {
 				case "7":
 					showMempool();
 					break;
+				case "8":
+					bumpFee(scanner);
+					break;
+				case "9":
+					showHistory(scanner);
+					break;
 				case "0":
 					running = false;
 					System.out.println("Au revoir.");
@@ -75,9 +146,181 @@ public class ConsoleApp {
 			}
 		}
 		scanner.close();
+		repositoryExecutor.close();
+		saveMempool();
+		if (walletCache != null) {
+			LOGGER.info("Cache des wallets: " + walletCache.getStats());
+		}
+		closeLedger();
+		closeWriteBehind();
+		if (memoryStore != null) {
+			closeMemoryStore();
+		} else {
+			Database.getInstance().close();
+		}
 		LOGGER.info("Application terminée");
 	}
 
+	/**
+	 * Dépôt des wallets: stockage choisi, puis écriture différée, cache et
+	 * ledger selon la configuration.
+	 */
+	private static WalletRepository createWalletRepository() {
+		WalletRepository repository = walletCache != null ? walletCache
+			: writeBehind != null ? writeBehind
+			: memoryStore != null ? memoryStore.getWalletRepository() : new JdbcWalletRepository();
+		return ledger != null ? new LedgerWalletRepository(repository, ledger) : repository;
+	}
+
+	/**
+	 * Dépôt des transactions, décoré pour débiter les balances en mémoire et
+	 * invalider le cache des wallets selon la configuration.
+	 */
+	private static TransactionRepository createTransactionRepository() {
+		TransactionRepository repository = memoryStore != null
+			? memoryStore.getTransactionRepository()
+			: new JdbcTransactionRepository();
+		if (writeBehind != null) {
+			repository = new WriteBehindTransactionRepository(repository, writeBehind);
+		}
+		if (walletCache != null) {
+			repository = new InvalidatingTransactionRepository(repository, walletCache);
+		}
+		if (ledger != null) {
+			repository = new LedgerTransactionRepository(repository, ledger);
+		}
+		return repository;
+	}
+
+	/**
+	 * Ouvre le stockage en mémoire, journalisé si repository.memory.log est
+	 * renseigné; sans journal si celui-ci ne peut être ouvert.
+	 */
+	private static InMemoryStore openMemoryStore() {
+		if (ConfigManager.getRepositoryType() != RepositoryType.MEMORY) {
+			return null;
+		}
+		String logFile = ConfigManager.getMemoryStoreLogFile();
+		if (logFile.isEmpty()) {
+			LOGGER.info("Stockage en mémoire sans journal: les données seront perdues à l'arrêt");
+			return InMemoryStore.create();
+		}
+		try {
+			return InMemoryStore.open(Paths.get(logFile), ConfigManager.getMemoryStoreLogFlushIntervalMillis());
+		} catch (IOException e) {
+			LOGGER.severe("Journal du stockage en mémoire indisponible, stockage non journalisé: " + e.getMessage());
+			return InMemoryStore.create();
+		}
+	}
+
+	private static void closeMemoryStore() {
+		try {
+			memoryStore.close();
+		} catch (IOException e) {
+			LOGGER.warning("Fermeture du journal du stockage en mémoire: " + e.getMessage());
+		}
+	}
+
+	// Inutiles sur le stockage en mémoire: balances et lectures y sont déjà en mémoire
+	private static WriteBehindWalletRepository openWriteBehind() {
+		if (memoryStore != null || !ConfigManager.isWriteBehindEnabled()) {
+			return null;
+		}
+		try {
+			return new WriteBehindWalletRepository(new JdbcWalletRepository(),
+				Paths.get(ConfigManager.getWriteBehindJournalDir()), ConfigManager.getWriteBehindFlushSize(),
+				ConfigManager.getWriteBehindFlushIntervalMillis());
+		} catch (IOException e) {
+			LOGGER.severe("Journal des balances indisponible, écriture directe en base: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static CachingWalletRepository openWalletCache() {
+		if (memoryStore != null || !ConfigManager.isWalletCacheEnabled()) {
+			return null;
+		}
+		return new CachingWalletRepository(writeBehind != null ? writeBehind : new JdbcWalletRepository(),
+			ConfigManager.getWalletCacheMaxSize(), ConfigManager.getWalletCacheTtlMillis());
+	}
+
+	private static Ledger openLedger() {
+		if (!ConfigManager.isLedgerEnabled()) {
+			return null;
+		}
+		try {
+			return Ledger.open(Paths.get(ConfigManager.getLedgerDirectory()), ConfigManager.getLedgerSegmentBytes(),
+				ConfigManager.getLedgerSnapshotEvery(), ConfigManager.getLedgerForceIntervalMillis());
+		} catch (IOException e) {
+			LOGGER.severe("Ledger indisponible, mouvements non inscrits: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void closeLedger() {
+		if (ledger == null) {
+			return;
+		}
+		try {
+			ledger.close();
+		} catch (IOException e) {
+			LOGGER.warning("Fermeture du ledger: " + e.getMessage());
+		}
+	}
+
+	private static void closeWriteBehind() {
+		if (writeBehind == null) {
+			return;
+		}
+		try {
+			writeBehind.close();
+		} catch (IOException e) {
+			LOGGER.warning("Fermeture du journal des balances: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Recharge le mempool depuis le dernier snapshot, le complète avec les
+	 * transactions en attente en base et planifie les snapshots suivants.
+	 */
+	private static void restoreMempool() {
+		Path file = Paths.get(ConfigManager.getMempoolSnapshotFile());
+		if (Files.exists(file)) {
+			try {
+				long start = System.nanoTime();
+				int count = mempool.restoreSnapshot(file);
+				LOGGER.info(String.format("Mempool restauré: %d transactions en %d ms",
+					count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+			} catch (IOException | RuntimeException e) {
+				LOGGER.warning("Snapshot du mempool illisible, reconstruction depuis la base: " + e.getMessage());
+			}
+		}
+		// Après un arrêt brutal le snapshot ne couvre pas les derniers envois
+		try (Stream<Transaction> pending = txRepo.streamPending()) {
+			int[] counts = mempool.syncPending(pending.iterator(),
+				id -> txRepo.findById(id).map(tx -> tx.getStatus() != TransactionStatus.PENDING).orElse(false));
+			LOGGER.info(String.format("Mempool aligné sur la base: %d retirées, %d ajoutées, %d frais repris",
+				counts[0], counts[1], counts[2]));
+		} catch (RuntimeException e) {
+			LOGGER.warning("Alignement du mempool sur la base impossible: " + e.getMessage());
+		}
+		long period = ConfigManager.getMempoolSnapshotIntervalSeconds();
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "mempool-snapshot");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(ConsoleApp::saveMempool, period, period, TimeUnit.SECONDS);
+	}
+
+	private static void saveMempool() {
+		try {
+			mempool.writeSnapshot(Paths.get(ConfigManager.getMempoolSnapshotFile()));
+		} catch (IOException e) {
+			LOGGER.warning("Echec d'écriture du snapshot du mempool: " + e.getMessage());
+		}
+	}
+
 	private static void printMenu() {
 		System.out.println();
 		System.out.println("=== Crypto Wallet Simulator ===");
@@ -88,10 +331,43 @@ public class ConsoleApp {
 		System.out.println("5. Voir ma position dans le mempool");
 		System.out.println("6. Comparer les 3 niveaux de frais");
 		System.out.println("7. Consulter l'etat actuel du mempool");
+		System.out.println("8. Accelerer une transaction en attente (RBF)");
+		System.out.println("9. Historique des transactions d'un wallet");
 		System.out.println("0. Quitter");
 		System.out.print("Votre choix: ");
 	}
 
+	private static void showHistory(Scanner scanner) {
+		System.out.print("ID du wallet: ");
+		String walletId = scanner.nextLine();
+		
+		PageCursor cursor = null;
+		int shown = 0;
+		while (true) {
+			WalletService.ServiceResult<Page<Transaction>> result =
+				walletService.findHistoryPageAsync(walletId, cursor, HISTORY_PAGE_SIZE).join();
+			if (!result.isSuccess()) {
+				System.out.println("Erreur: " + result.getMessage());
+				return;
+			}
+			Page<Transaction> page = result.getData();
+			for (Transaction tx : page.getItems()) {
+				shown++;
+				System.out.println(String.format("%d. %s | %s | %s -> %s | montant: %s | frais: %s", shown,
+					tx.getCreatedAt(), tx.getStatus(), tx.getId(), tx.getToAddress(), tx.getAmount(), tx.getFeeAmount()));
+			}
+			if (!page.hasNext()) {
+				System.out.println(shown == 0 ? "Aucune transaction." : "Fin de l'historique.");
+				return;
+			}
+			System.out.print("Entrée pour la page suivante, q pour arrêter: ");
+			if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+				return;
+			}
+			cursor = page.getNext();
+		}
+	}
+
 	private static void createWallet(Scanner scanner) {
 		System.out.println("Type de wallet (1=BITCOIN, 2=ETHEREUM): ");
 		String typeInput = scanner.nextLine();
@@ -174,16 +450,28 @@ public class ConsoleApp {
 		System.out.print("Priorité (1=ECONOMIQUE, 2=STANDARD, 3=RAPIDE): ");
 		String priorityInput = scanner.nextLine();
 
-		// Utiliser le WalletService pour créer la transaction
-		WalletService.ServiceResult<Transaction> result = walletService.createTransaction(walletId, toAddress, amountStr, priorityInput);
+		// Utiliser le WalletService pour créer la transaction, sans débit si ses
+		// frais sont sous le plancher du mempool
+		WalletService.ServiceResult<Transaction> result = walletService.createTransaction(walletId, toAddress, amountStr,
+			priorityInput, mempool::admits);
 		
 		if (result.isSuccess()) {
 			Transaction tx = result.getData();
-			mempool.addTransaction(tx);
-			lastCreatedTx = tx;
+			// Rechargement du wallet depuis la base, pendant l'ajout au mempool
+			CompletableFuture<WalletService.ServiceResult<Wallet>> reload = walletService.findWalletAsync(walletId);
+			if (mempool.addTransaction(tx)) {
+				lastCreatedTx = tx;
+				trackPosition(tx);
+			} else {
+				// Plancher relevé entre la vérification et l'ajout: rejetée et recréditée
+				WalletService.ServiceResult<Transaction> rejected = walletService.rejectTransaction(tx);
+				System.out.println("[WARNING] Frais sous le minimum actuel du mempool ("
+					+ mempool.getMinFeeRate(tx.getCryptoType()) + " par unité): transaction refusée. "
+					+ rejected.getMessage());
+				reload = walletService.findWalletAsync(walletId);
+			}
 			
-			// Recharger le wallet depuis la base pour vérifier la mise à jour
-			WalletService.ServiceResult<Wallet> updatedWalletResult = walletService.findWallet(walletId);
+			WalletService.ServiceResult<Wallet> updatedWalletResult = reload.join();
 			if (updatedWalletResult.isSuccess()) {
 				System.out.println(result.getMessage());
 				System.out.println("Balance mise à jour en base: " + updatedWalletResult.getData().getBalance());
@@ -196,40 +484,130 @@ public class ConsoleApp {
 		}
 	}
 
+	/**
+	 * Transaction évincée du mempool faute de place: rejetée en base et son
+	 * wallet recrédité, pour que ses fonds ne restent pas bloqués.
+	 */
+	private static void rejectEvicted(Transaction tx) {
+		WalletService.ServiceResult<Transaction> result = walletService.rejectTransaction(tx);
+		if (!result.isSuccess()) {
+			LOGGER.warning("Transaction évincée non rejetée: " + result.getMessage());
+		}
+	}
+
+	private static void bumpFee(Scanner scanner) {
+		System.out.print("ID de la transaction" + (lastCreatedTx != null ? " [" + lastCreatedTx.getId() + "]" : "") + ": ");
+		String txId = scanner.nextLine().trim();
+		if (txId.isEmpty() && lastCreatedTx != null) {
+			txId = lastCreatedTx.getId();
+		}
+		if (!mempool.contains(txId)) {
+			System.out.println("Erreur: transaction absente du mempool (confirmée ou inconnue)");
+			return;
+		}
+		
+		System.out.print("Nouvelle priorité (2=STANDARD, 3=RAPIDE): ");
+		String priorityInput = scanner.nextLine();
+		
+		// Règle de remplacement vérifiée avant le débit; échange refusé: frais rétablis
+		WalletService.ServiceResult<Transaction> result = walletService.bumpFee(txId, priorityInput,
+			mempool::canReplace, mempool::replaceTransaction);
+		if (!result.isSuccess()) {
+			System.out.println("Erreur: " + result.getMessage());
+			return;
+		}
+		
+		Transaction replacement = result.getData();
+		if (lastCreatedTx != null && lastCreatedTx.getId().equals(replacement.getId())) {
+			lastCreatedTx = replacement;
+			trackPosition(replacement);
+		}
+		System.out.println(result.getMessage());
+		System.out.println("Nouvelle position: " + mempool.computePosition(replacement));
+	}
+
 	private static void showMyPosition() {
 		if (lastCreatedTx == null) {
 			System.out.println("Aucune transaction récente. Créez d'abord une transaction.");
 			return;
 		}
 		
-		// Debug temporaire
-		System.out.println("ID de votre transaction: " + lastCreatedTx.getId());
-		
-		// Affichage des informations de debug du mempool
-		MempoolService.DebugInfo debugInfo = mempool.getDebugInfo();
-		System.out.println("=== DEBUG MEMPOOL ===");
-		System.out.println("Nombre total de transactions: " + debugInfo.getTotalTransactions());
-		for (MempoolService.TransactionSummary summary : debugInfo.getTransactions()) {
-			System.out.println(String.format("%d. ID: %s | Fee: %s | From: %s", 
-				summary.getPosition(), summary.getId(), summary.getFeeAmount(), summary.getFromAddress()));
-		}
-		System.out.println("======================");
+		// Dernière position poussée par le mempool; calcul direct tant qu'aucune n'est arrivée
+		PositionEvent event = positionTracker != null ? positionTracker.latest : null;
+		int pos = event != null ? event.getPosition() : mempool.computePosition(lastCreatedTx);
+		int total = event != null ? event.getPendingCount() : mempool.size(lastCreatedTx.getCryptoType());
 		
-		int pos = mempool.computePosition(lastCreatedTx);
-		List<Transaction> sorted = mempool.getPendingSortedByFeeDesc();
-		Duration eta = mempool.estimateConfirmationTime(lastCreatedTx);
-		
-		if (pos == -1) {
+		if (event != null && event.getType() == PositionEventType.EVICTED) {
+			System.out.println("Transaction évincée du mempool (frais insuffisants). ID: " + lastCreatedTx.getId());
+			System.out.println("Frais de votre transaction: " + lastCreatedTx.getFeeAmount());
+		} else if (pos == -1 && (lastCreatedTx.getStatus() == TransactionStatus.CONFIRMED
+				|| (event != null && event.getType() == PositionEventType.CONFIRMED))) {
+			System.out.println("Votre transaction a été incluse dans un bloc (CONFIRMED). ID: " + lastCreatedTx.getId());
+		} else if (pos == -1) {
 			System.out.println("Transaction non trouvée dans le mempool. ID: " + lastCreatedTx.getId());
 			System.out.println("Frais de votre transaction: " + lastCreatedTx.getFeeAmount());
 		} else {
-			System.out.println("Votre transaction est en position " + pos + " sur " + sorted.size());
+			Duration eta = mempool.estimateConfirmationTime(lastCreatedTx);
+			System.out.println("Votre transaction est en position " + pos + " sur " + total
+				+ " (" + lastCreatedTx.getCryptoType() + ")");
 			System.out.println("Temps estimé: " + eta.toMinutes() + " minutes");
 			System.out.println("ID de votre transaction: " + lastCreatedTx.getId());
 			System.out.println("Frais de votre transaction: " + lastCreatedTx.getFeeAmount());
 		}
 	}
 
+	/**
+	 * Remplace le suivi de la transaction précédente par celui de {@code tx}.
+	 */
+	private static void trackPosition(Transaction tx) {
+		if (positionTracker != null) {
+			positionTracker.cancel();
+		}
+		positionTracker = new PositionTracker();
+		mempool.watch(Collections.singletonList(tx)).subscribe(positionTracker);
+	}
+
+	/**
+	 * Abonné qui conserve le dernier événement de position reçu.
+	 */
+	private static final class PositionTracker implements Flow.Subscriber<PositionEvent> {
+		private volatile Flow.Subscription subscription;
+		private volatile boolean cancelled;
+		private volatile PositionEvent latest;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (cancelled) {
+				subscription.cancel();
+			} else {
+				subscription.request(Long.MAX_VALUE);
+			}
+		}
+
+		@Override
+		public void onNext(PositionEvent event) {
+			latest = event;
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			LOGGER.warning("Suivi de position interrompu: " + error.getMessage());
+		}
+
+		@Override
+		public void onComplete() {
+		}
+
+		void cancel() {
+			cancelled = true;
+			Flow.Subscription s = subscription;
+			if (s != null) {
+				s.cancel();
+			}
+		}
+	}
+
 	private static void compareFees(Scanner scanner) {
 		if (lastCreatedTx == null) {
 			System.out.println("Aucune transaction récente. Créez d'abord une transaction.");
@@ -245,39 +623,59 @@ public class ConsoleApp {
 		Wallet w = result.getData();
 		FeeCalculator calc = FeeCalculatorFactory.forType(w.getCryptoType());
 
-		System.out.println("\n+----------------------+--------------+----------+----------+");
-		System.out.println("| Niveau               | Frais        | Position | ETA(min) |");
-		System.out.println("+----------------------+--------------+----------+----------+");
+		System.out.println("\n+----------------------+--------------+----------+----------+----------+----------+");
+		System.out.println("| Niveau               | Frais        | Position | p50(min) | p90(min) | p99(min) |");
+		System.out.println("+----------------------+--------------+----------+----------+----------+----------+");
 		for (FeePriority pr : new FeePriority[]{FeePriority.ECONOMIQUE, FeePriority.STANDARD, FeePriority.RAPIDE}) {
-			Transaction t = new Transaction(lastCreatedTx.getFromAddress(), lastCreatedTx.getToAddress(), lastCreatedTx.getAmount(), pr, w.getId());
+			Transaction t = new Transaction(lastCreatedTx.getFromAddress(), lastCreatedTx.getToAddress(), lastCreatedTx.getAmount(), pr, w.getId(), w.getCryptoType());
 			BigDecimal fee = calc.calculateFee(t, w, pr);
-			int position = mempool.computeHypotheticalPosition(fee);
-			long eta = position * 10L;
-			String line = String.format("| %-20s | %-12s | %8d | %8d |", pr, fee, position, eta);
+			long weight = calc.estimateWeight(t);
+			int position = mempool.estimateHypotheticalPosition(w.getCryptoType(), fee, weight);
+			ConfirmationTimeEstimator.Estimate eta = etaEstimator.estimate(w.getCryptoType(), fee, weight);
+			String line = String.format("| %-20s | %-12s | %8d | %8.1f | %8.1f | %8.1f |", pr, fee, position,
+				toMinutes(eta.getP50()), toMinutes(eta.getP90()), toMinutes(eta.getP99()));
 			System.out.println(line);
 		}
-		System.out.println("+----------------------+--------------+----------+----------+\n");
+		System.out.println("+----------------------+--------------+----------+----------+----------+----------+\n");
+	}
+
+	private static double toMinutes(Duration d) {
+		return d.toMillis() / 60_000d;
 	}
 
 	private static void showMempool() {
-		// Génère des transactions aléatoires sans supprimer les transactions utilisateur
-		mempool.generateRandomPending(15);
-		List<Transaction> sorted = mempool.getPendingSortedByFeeDesc();
+		// Ajoute des transactions synthétiques sans supprimer celles déjà présentes
+		loadGenerator.feed(mempool, ConfigManager.getSyntheticBatchSize());
 		System.out.println("\n=== ÉTAT DU MEMPOOL ===");
-		System.out.println("Transactions en attente : " + sorted.size());
+		System.out.println("Transactions en attente : " + mempool.size() + " (dont synthétiques : " + mempool.syntheticSize() + ")");
+		System.out.println(String.format("Mémoire : %d/%d octets | Évictions : %d",
+			mempool.getMemoryUsage(), mempool.getMaxBytes(), mempool.getEvictionCount()));
 		
 		boolean userTxFound = false;
-		for (int i = 0; i < sorted.size(); i++) {
-			Transaction t = sorted.get(i);
-			boolean isUserTx = (lastCreatedTx != null && t.getId().equals(lastCreatedTx.getId()));
-			if (isUserTx) {
-				userTxFound = true;
-				System.out.println(String.format("%d. >>> VOTRE TRANSACTION (Position %d) <<<", 
-					i + 1, i + 1));
-				System.out.println("    " + t.getFromAddress() + " -> " + t.getToAddress() + " | frais=" + t.getFeeAmount());
-			} else {
-				System.out.println(String.format("%d. %s -> %s | frais=%s", 
-					i + 1, t.getFromAddress(), t.getToAddress(), t.getFeeAmount()));
+		for (CryptoType chain : CryptoType.values()) {
+			List<Transaction> top = mempool.getPendingSortedByFeeDesc(chain, MEMPOOL_DISPLAY_LIMIT);
+			System.out.println("\n--- " + chain + " : " + mempool.size(chain) + " en attente ---");
+			for (int i = 0; i < top.size(); i++) {
+				Transaction t = top.get(i);
+				boolean isUserTx = (lastCreatedTx != null && t.getId().equals(lastCreatedTx.getId()));
+				if (isUserTx) {
+					userTxFound = true;
+					System.out.println(String.format("%d. >>> VOTRE TRANSACTION (Position %d) <<<", 
+						i + 1, i + 1));
+					System.out.println("    " + t.getFromAddress() + " -> " + t.getToAddress() + " | frais=" + t.getFeeAmount());
+				} else {
+					System.out.println(String.format("%d. %s -> %s | frais=%s", 
+						i + 1, t.getFromAddress(), t.getToAddress(), t.getFeeAmount()));
+				}
+			}
+			if (lastCreatedTx != null && !userTxFound && lastCreatedTx.getCryptoType() == chain) {
+				int pos = mempool.computePosition(lastCreatedTx);
+				if (pos > 0) {
+					userTxFound = true;
+					System.out.println("...");
+					System.out.println(String.format("%d. >>> VOTRE TRANSACTION (Position %d) <<<", pos, pos));
+					System.out.println("    " + lastCreatedTx.getFromAddress() + " -> " + lastCreatedTx.getToAddress() + " | frais=" + lastCreatedTx.getFeeAmount());
+				}
 			}
 		}
 		
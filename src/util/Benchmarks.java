@@ -0,0 +1,100 @@
+package util;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mesure de latence des mains de benchmark: {@code threads} threads lancent
+ * ensemble {@code iterations} appels chacun, et chaque appel est chronométré.
+ */
+final class Benchmarks {
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Appel mesuré, numéroté par thread et par itération.
+	 */
+	@FunctionalInterface
+	interface Operation {
+		void run(int thread, int iteration) throws Exception;
+	}
+
+	/**
+	 * Latences et durée totale d'une mesure.
+	 */
+	static final class Result {
+		final long[] sortedNanos;
+		final long elapsedNanos;
+		final int failures;
+
+		Result(long[] nanos, long elapsedNanos, int failures) {
+			this.sortedNanos = nanos;
+			this.elapsedNanos = elapsedNanos;
+			this.failures = failures;
+			Arrays.sort(this.sortedNanos);
+		}
+
+		long percentileNanos(double p) {
+			if (sortedNanos.length == 0) {
+				return 0L;
+			}
+			int i = (int) Math.ceil(p / 100d * sortedNanos.length) - 1;
+			return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, i))];
+		}
+
+		double throughput() {
+			return elapsedNanos == 0 ? 0d : sortedNanos.length * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d appels, %.0f/s, p50=%.3f ms, p95=%.3f ms, p99=%.3f ms, max=%.3f ms%s",
+				sortedNanos.length, throughput(), percentileNanos(50) / 1e6, percentileNanos(95) / 1e6,
+				percentileNanos(99) / 1e6, percentileNanos(100) / 1e6,
+				failures == 0 ? "" : ", " + failures + " échecs");
+		}
+	}
+
+	static Result measure(int threads, int iterations, Operation operation) throws InterruptedException {
+		long[] nanos = new long[threads * iterations];
+		AtomicInteger failures = new AtomicInteger();
+		AtomicReference<Exception> firstFailure = new AtomicReference<>();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			workers[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				for (int i = 0; i < iterations; i++) {
+					long begin = System.nanoTime();
+					try {
+						operation.run(thread, i);
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						firstFailure.compareAndSet(null, e);
+					}
+					nanos[thread * iterations + i] = System.nanoTime() - begin;
+				}
+			}, "benchmark-" + t);
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		if (firstFailure.get() != null) {
+			System.err.println("Premier échec: " + firstFailure.get());
+		}
+		return new Result(nanos, elapsed, failures.get());
+	}
+}
@@ -0,0 +1,338 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import config.ConfigManager;
+import config.Database;
+
+/**
+ * Export des tables wallets et transactions dans un fichier compact en
+ * colonnes ({@link ColumnarFormat}), pour l'analyse.
+ *
+ * Les lignes sont lues en flux par un curseur côté serveur, par paquets de
+ * db.fetchSize, et écrites par groupes de {@code rowGroupSize} lignes: la
+ * mémoire utilisée ne dépend que de la taille d'un groupe, pas de celle des
+ * tables. Les deux tables sont lues dans une même transaction en lecture
+ * répétable, donc cohérentes entre elles. Le fichier est écrit à côté puis
+ * renommé: un export interrompu ne laisse pas de fichier incomplet.
+ */
+public final class ColumnarExporter {
+
+	private static final Logger LOGGER = LoggerProvider.getLogger(ColumnarExporter.class.getName());
+
+	private static final String SELECT_WALLETS =
+		"SELECT pk, id, type, address, balance, created_at FROM wallets ORDER BY pk";
+	private static final String SELECT_TRANSACTIONS =
+		"SELECT t.pk, t.id, t.from_address, t.to_address, t.amount, t.fee_priority, t.fee_amount, t.status, " +
+		"t.created_at, t.wallet_id, w.type FROM transactions t JOIN wallets w ON w.id = t.wallet_id ORDER BY t.pk";
+
+	private final DataOutputStream out;
+	private final int rowGroupSize;
+	private final ColumnarFormat.Buffer raw;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+	private byte[] compressed = new byte[64 * 1024];
+
+	private ColumnarExporter(DataOutputStream out, int rowGroupSize) {
+		this.out = out;
+		this.rowGroupSize = rowGroupSize;
+		this.raw = new ColumnarFormat.Buffer(64 * 1024);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Path file = Paths.get(args.length > 0 ? args[0] : "data/export.cwc");
+		Database.getInstance().init();
+		long start = System.nanoTime();
+		long rows = export(file, ConfigManager.getExportRowGroupSize());
+		System.out.println(String.format("%d lignes exportées dans %s (%d octets) en %d ms", rows, file,
+			Files.size(file), (System.nanoTime() - start) / 1_000_000));
+		Database.getInstance().close();
+	}
+
+	/**
+	 * Exporte les wallets puis les transactions dans {@code file}.
+	 *
+	 * @return le nombre total de lignes exportées
+	 */
+	public static long export(Path file, int rowGroupSize) throws IOException, SQLException {
+		if (rowGroupSize <= 0) {
+			throw new IllegalArgumentException("Taille de groupe invalide: " + rowGroupSize);
+		}
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		long rows;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp),
+				64 * 1024))) {
+			ColumnarExporter exporter = new ColumnarExporter(out, rowGroupSize);
+			try {
+				rows = exporter.exportTables();
+			} finally {
+				exporter.deflater.end();
+			}
+		} catch (IOException | SQLException | RuntimeException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return rows;
+	}
+
+	private long exportTables() throws IOException, SQLException {
+		out.writeInt(ColumnarFormat.MAGIC);
+		out.writeByte(ColumnarFormat.VERSION);
+		long rows;
+		try (Connection c = Database.getInstance().getConnection()) {
+			int isolation = c.getTransactionIsolation();
+			// Curseur côté serveur (PostgreSQL) et même instantané pour les deux tables
+			c.setAutoCommit(false);
+			c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			try {
+				rows = exportTable(c, ColumnarFormat.TABLE_WALLETS, SELECT_WALLETS)
+					+ exportTable(c, ColumnarFormat.TABLE_TRANSACTIONS, SELECT_TRANSACTIONS);
+			} finally {
+				// Lecture seule: le pool annule la transaction; l'isolation, elle, resterait
+				c.rollback();
+				c.setTransactionIsolation(isolation);
+			}
+		}
+		out.writeByte(ColumnarFormat.TABLE_END);
+		return rows;
+	}
+
+	private long exportTable(Connection c, int table, String sql) throws IOException, SQLException {
+		long start = System.nanoTime();
+		RowGroup group = new RowGroup(ColumnarFormat.TYPES[table], rowGroupSize);
+		long rows = 0;
+		long groups = 0;
+		try (PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			ps.setFetchSize(ConfigManager.getFetchSize());
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					group.add(rs);
+					if (group.size == rowGroupSize) {
+						writeGroup(table, group);
+						rows += group.size;
+						groups++;
+						group.clear();
+					}
+				}
+			}
+		}
+		if (group.size > 0) {
+			writeGroup(table, group);
+			rows += group.size;
+			groups++;
+		}
+		LOGGER.info(String.format("Export de %s: %d lignes en %d groupes, %d ms", tableName(table), rows, groups,
+			(System.nanoTime() - start) / 1_000_000));
+		return rows;
+	}
+
+	private void writeGroup(int table, RowGroup group) throws IOException {
+		raw.reset();
+		group.encode(raw);
+		CRC32 crc = new CRC32();
+		crc.update(raw.array(), 0, raw.size());
+
+		deflater.reset();
+		deflater.setInput(raw.array(), 0, raw.size());
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+
+		out.writeByte(table);
+		out.writeInt(group.size);
+		out.writeInt(raw.size());
+		out.writeInt((int) crc.getValue());
+		out.writeInt(length);
+		out.write(compressed, 0, length);
+	}
+
+	private static String tableName(int table) {
+		return table == ColumnarFormat.TABLE_WALLETS ? "wallets" : "transactions";
+	}
+
+	/**
+	 * Lignes d'un groupe, rangées par colonne.
+	 */
+	private static final class RowGroup {
+		final int[] types;
+		final String[][] strings;
+		final BigDecimal[][] decimals;
+		final long[][] longs;
+		int size;
+
+		RowGroup(int[] types, int capacity) {
+			this.types = types;
+			this.strings = new String[types.length][];
+			this.decimals = new BigDecimal[types.length][];
+			this.longs = new long[types.length][];
+			for (int i = 0; i < types.length; i++) {
+				switch (types[i]) {
+					case ColumnarFormat.TYPE_STRING:
+						strings[i] = new String[capacity];
+						break;
+					case ColumnarFormat.TYPE_DECIMAL:
+						decimals[i] = new BigDecimal[capacity];
+						break;
+					default:
+						longs[i] = new long[capacity];
+						break;
+				}
+			}
+		}
+
+		void add(ResultSet rs) throws SQLException {
+			for (int i = 0; i < types.length; i++) {
+				switch (types[i]) {
+					case ColumnarFormat.TYPE_STRING:
+						strings[i][size] = rs.getString(i + 1);
+						break;
+					case ColumnarFormat.TYPE_DECIMAL:
+						decimals[i][size] = rs.getBigDecimal(i + 1);
+						break;
+					case ColumnarFormat.TYPE_TIMESTAMP:
+						longs[i][size] = toMicros(rs.getTimestamp(i + 1));
+						break;
+					default:
+						longs[i][size] = rs.getLong(i + 1);
+						break;
+				}
+			}
+			size++;
+		}
+
+		void clear() {
+			for (int i = 0; i < types.length; i++) {
+				if (strings[i] != null) {
+					Arrays.fill(strings[i], 0, size, null);
+				}
+				if (decimals[i] != null) {
+					Arrays.fill(decimals[i], 0, size, null);
+				}
+			}
+			size = 0;
+		}
+
+		void encode(ColumnarFormat.Buffer out) {
+			for (int i = 0; i < types.length; i++) {
+				switch (types[i]) {
+					case ColumnarFormat.TYPE_STRING:
+						encodeStrings(out, strings[i]);
+						break;
+					case ColumnarFormat.TYPE_DECIMAL:
+						encodeDecimals(out, decimals[i]);
+						break;
+					default:
+						encodeDeltas(out, longs[i]);
+						break;
+				}
+			}
+		}
+
+		/**
+		 * Par dictionnaire si au moins une valeur sur deux se répète, en clair sinon.
+		 */
+		private void encodeStrings(ColumnarFormat.Buffer out, String[] values) {
+			Map<String, Integer> dictionary = new HashMap<>();
+			for (int row = 0; row < size && dictionary.size() <= size / 2; row++) {
+				dictionary.putIfAbsent(required(values[row]), dictionary.size());
+			}
+			if (dictionary.size() > size / 2) {
+				out.write(ColumnarFormat.ENCODING_PLAIN);
+				for (int row = 0; row < size; row++) {
+					out.writeLengthPrefixed(values[row].getBytes(StandardCharsets.UTF_8));
+				}
+				return;
+			}
+			String[] entries = new String[dictionary.size()];
+			for (Map.Entry<String, Integer> e : dictionary.entrySet()) {
+				entries[e.getValue()] = e.getKey();
+			}
+			out.write(ColumnarFormat.ENCODING_DICTIONARY);
+			out.writeVarLong(entries.length);
+			for (String entry : entries) {
+				out.writeLengthPrefixed(entry.getBytes(StandardCharsets.UTF_8));
+			}
+			for (int row = 0; row < size; row++) {
+				out.writeVarLong(dictionary.get(values[row]));
+			}
+		}
+
+		/**
+		 * En virgule fixe, à la plus petite échelle exacte pour tout le groupe.
+		 */
+		private void encodeDecimals(ColumnarFormat.Buffer out, BigDecimal[] values) {
+			int scale = 0;
+			for (int row = 0; row < size; row++) {
+				scale = Math.max(scale, required(values[row]).stripTrailingZeros().scale());
+			}
+			BigInteger[] unscaled = new BigInteger[size];
+			boolean fitsLong = true;
+			for (int row = 0; row < size; row++) {
+				unscaled[row] = values[row].setScale(scale).unscaledValue();
+				fitsLong &= unscaled[row].bitLength() < 64;
+			}
+			out.write(fitsLong ? ColumnarFormat.ENCODING_FIXED_POINT : ColumnarFormat.ENCODING_FIXED_POINT_BIG);
+			out.writeVarLong(scale);
+			for (int row = 0; row < size; row++) {
+				if (fitsLong) {
+					out.writeZigZag(unscaled[row].longValue());
+				} else {
+					out.writeLengthPrefixed(unscaled[row].toByteArray());
+				}
+			}
+		}
+
+		private void encodeDeltas(ColumnarFormat.Buffer out, long[] values) {
+			out.write(ColumnarFormat.ENCODING_DELTA);
+			long previous = 0;
+			for (int row = 0; row < size; row++) {
+				out.writeZigZag(values[row] - previous);
+				previous = values[row];
+			}
+		}
+
+		private static <T> T required(T value) {
+			if (value == null) {
+				throw new IllegalStateException("Valeur nulle dans une colonne NOT NULL");
+			}
+			return value;
+		}
+
+		private static long toMicros(Timestamp timestamp) {
+			if (timestamp == null) {
+				throw new IllegalStateException("Valeur nulle dans une colonne NOT NULL");
+			}
+			return Math.addExact(Math.multiplyExact(Math.floorDiv(timestamp.getTime(), 1000L), 1_000_000L),
+				timestamp.getNanos() / 1000);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Format des fichiers d'export en colonnes ({@link ColumnarExporter},
+ * {@link ColumnarReader}).
+ *
+ * Le fichier commence par un numéro magique et une version, puis se suit une
+ * série de groupes de lignes, chacun d'une seule table: numéro de la table,
+ * nombre de lignes, taille décompressée, CRC32 et taille compressée, puis les
+ * colonnes compressées ensemble (deflate). Un numéro de table nul termine le
+ * fichier. Dans un groupe, chaque colonne commence par son encodage:
+ * <ul>
+ * <li>chaînes: en clair, ou par dictionnaire (valeurs distinctes puis index)
+ * quand elles se répètent, comme les adresses, statuts et types;</li>
+ * <li>montants: en virgule fixe, à l'échelle du groupe, en entiers de taille
+ * variable (ou en octets quand ils dépassent 64 bits);</li>
+ * <li>pk et dates (microsecondes depuis l'epoch): en écarts à la valeur
+ * précédente, en entiers de taille variable.</li>
+ * </ul>
+ */
+final class ColumnarFormat {
+
+	static final int MAGIC = 0x43575843;
+	static final int VERSION = 1;
+
+	static final int TABLE_END = 0;
+	static final int TABLE_WALLETS = 1;
+	static final int TABLE_TRANSACTIONS = 2;
+
+	static final int TYPE_STRING = 0;
+	static final int TYPE_DECIMAL = 1;
+	static final int TYPE_TIMESTAMP = 2;
+	static final int TYPE_LONG = 3;
+
+	static final int ENCODING_PLAIN = 0;
+	static final int ENCODING_DICTIONARY = 1;
+	static final int ENCODING_FIXED_POINT = 2;
+	static final int ENCODING_FIXED_POINT_BIG = 3;
+	static final int ENCODING_DELTA = 4;
+
+	// Colonnes de chaque table, dans l'ordre du fichier (indexées par numéro de table)
+	static final String[][] COLUMNS = {
+		{},
+		{ "pk", "id", "type", "address", "balance", "created_at" },
+		{ "pk", "id", "from_address", "to_address", "amount", "fee_priority", "fee_amount", "status", "created_at",
+			"wallet_id", "type" }
+	};
+	static final int[][] TYPES = {
+		{},
+		{ TYPE_LONG, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_DECIMAL, TYPE_TIMESTAMP },
+		{ TYPE_LONG, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_DECIMAL, TYPE_STRING, TYPE_DECIMAL, TYPE_STRING,
+			TYPE_TIMESTAMP, TYPE_STRING, TYPE_STRING }
+	};
+
+	private ColumnarFormat() {
+	}
+
+	/**
+	 * Tampon d'écriture réutilisable, dont le contenu est lisible sans copie.
+	 */
+	static final class Buffer extends ByteArrayOutputStream {
+		Buffer(int size) {
+			super(size);
+		}
+
+		byte[] array() { return buf; }
+
+		void writeVarLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void writeZigZag(long value) {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeLengthPrefixed(byte[] bytes) {
+			writeVarLong(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+	}
+
+	static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Entier de taille variable invalide");
+	}
+
+	static long readZigZag(ByteBuffer in) {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static int readLength(ByteBuffer in) {
+		long length = readVarLong(in);
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalStateException("Longueur invalide: " + length);
+		}
+		return (int) length;
+	}
+}
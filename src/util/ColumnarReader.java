@@ -0,0 +1,356 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import metier.enums.CryptoType;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.BitcoinWallet;
+import metier.model.EthereumWallet;
+import metier.model.Transaction;
+import metier.model.Wallet;
+
+/**
+ * Lecture d'un fichier de {@link ColumnarExporter}, groupe de lignes par
+ * groupe de lignes.
+ *
+ * {@link #next()} décompresse le groupe suivant et en décode les colonnes; les
+ * valeurs se lisent ensuite par colonne et par ligne. Les tampons sont
+ * réutilisés d'un groupe à l'autre: la mémoire utilisée est celle d'un groupe.
+ * Les montants relus sont égaux à ceux exportés ({@code compareTo}), à
+ * l'échelle de leur groupe.
+ */
+public final class ColumnarReader implements AutoCloseable {
+
+	// Colonnes lues pour une transaction, dans l'ordre du constructeur de Transaction
+	private static final String[] TRANSACTION_FIELDS = { "id", "from_address", "to_address", "amount", "fee_priority",
+		"created_at", "fee_amount", "status", "wallet_id", "type" };
+
+	private final DataInputStream in;
+	private final Inflater inflater = new Inflater(true);
+	private byte[] compressed = new byte[64 * 1024];
+	private byte[] raw = new byte[64 * 1024];
+	private Column[] columns = new Column[0];
+	private int table = ColumnarFormat.TABLE_END;
+	private int rowCount;
+
+	private ColumnarReader(DataInputStream in) {
+		this.in = in;
+	}
+
+	public static ColumnarReader open(Path file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+		try {
+			if (in.readInt() != ColumnarFormat.MAGIC) {
+				throw new IOException("Fichier d'export invalide: " + file);
+			}
+			int version = in.readUnsignedByte();
+			if (version != ColumnarFormat.VERSION) {
+				throw new IOException("Version de fichier d'export non supportée: " + version);
+			}
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return new ColumnarReader(in);
+	}
+
+	/**
+	 * Wallets du fichier, dans l'ordre de l'export.
+	 *
+	 * @return le nombre de wallets lus
+	 */
+	public static long readWallets(Path file, Consumer<Wallet> consumer) throws IOException {
+		long count = 0;
+		try (ColumnarReader reader = open(file)) {
+			while (reader.next()) {
+				if (!reader.isWallets()) {
+					continue;
+				}
+				int idColumn = reader.column("id");
+				int typeColumn = reader.column("type");
+				int addressColumn = reader.column("address");
+				int balanceColumn = reader.column("balance");
+				int createdAtColumn = reader.column("created_at");
+				for (int row = 0; row < reader.rowCount; row++) {
+					String id = reader.getString(idColumn, row);
+					String address = reader.getString(addressColumn, row);
+					BigDecimal balance = reader.getDecimal(balanceColumn, row);
+					Instant createdAt = reader.getInstant(createdAtColumn, row);
+					consumer.accept(CryptoType.valueOf(reader.getString(typeColumn, row)) == CryptoType.BITCOIN
+						? new BitcoinWallet(id, address, balance, createdAt)
+						: new EthereumWallet(id, address, balance, createdAt));
+				}
+				count += reader.rowCount;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Transactions du fichier, dans l'ordre de l'export.
+	 *
+	 * @return le nombre de transactions lues
+	 */
+	public static long readTransactions(Path file, Consumer<Transaction> consumer) throws IOException {
+		long count = 0;
+		try (ColumnarReader reader = open(file)) {
+			while (reader.next()) {
+				if (!reader.isTransactions()) {
+					continue;
+				}
+				int[] c = new int[TRANSACTION_FIELDS.length];
+				for (int i = 0; i < c.length; i++) {
+					c[i] = reader.column(TRANSACTION_FIELDS[i]);
+				}
+				for (int row = 0; row < reader.rowCount; row++) {
+					consumer.accept(new Transaction(
+						reader.getString(c[0], row),
+						reader.getString(c[1], row),
+						reader.getString(c[2], row),
+						reader.getDecimal(c[3], row),
+						FeePriority.valueOf(reader.getString(c[4], row)),
+						reader.getInstant(c[5], row),
+						reader.getDecimal(c[6], row),
+						TransactionStatus.valueOf(reader.getString(c[7], row)),
+						reader.getString(c[8], row),
+						CryptoType.valueOf(reader.getString(c[9], row))));
+				}
+				count += reader.rowCount;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Passe au groupe de lignes suivant.
+	 *
+	 * @return false à la fin du fichier
+	 */
+	public boolean next() throws IOException {
+		if (table == ColumnarFormat.TABLE_END && rowCount < 0) {
+			return false;
+		}
+		int nextTable;
+		try {
+			nextTable = in.readUnsignedByte();
+		} catch (EOFException e) {
+			throw new IOException("Fichier d'export tronqué", e);
+		}
+		if (nextTable == ColumnarFormat.TABLE_END) {
+			table = ColumnarFormat.TABLE_END;
+			rowCount = -1;
+			return false;
+		}
+		if (nextTable >= ColumnarFormat.COLUMNS.length) {
+			throw new IOException("Table inconnue dans le fichier d'export: " + nextTable);
+		}
+		int rows = in.readInt();
+		int rawLength = in.readInt();
+		int crc = in.readInt();
+		int compressedLength = in.readInt();
+		if (rows < 0 || rawLength < 0 || compressedLength < 0) {
+			throw new IOException("Groupe de lignes invalide");
+		}
+		if (compressed.length < compressedLength) {
+			compressed = new byte[compressedLength];
+		}
+		in.readFully(compressed, 0, compressedLength);
+		if (raw.length < rawLength) {
+			raw = new byte[rawLength];
+		}
+		inflate(compressedLength, rawLength);
+		CRC32 check = new CRC32();
+		check.update(raw, 0, rawLength);
+		if ((int) check.getValue() != crc) {
+			throw new IOException("Groupe de lignes corrompu (CRC)");
+		}
+
+		int[] types = ColumnarFormat.TYPES[nextTable];
+		if (table != nextTable || columns.length != types.length) {
+			columns = new Column[types.length];
+			for (int i = 0; i < types.length; i++) {
+				columns[i] = new Column();
+			}
+		}
+		table = nextTable;
+		rowCount = rows;
+		ByteBuffer buffer = ByteBuffer.wrap(raw, 0, rawLength);
+		try {
+			for (Column column : columns) {
+				column.decode(buffer, rows);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Groupe de lignes illisible: " + e.getMessage(), e);
+		}
+		return true;
+	}
+
+	public boolean isWallets() { return table == ColumnarFormat.TABLE_WALLETS; }
+	public boolean isTransactions() { return table == ColumnarFormat.TABLE_TRANSACTIONS; }
+	public int getRowCount() { return Math.max(0, rowCount); }
+
+	/**
+	 * Index de la colonne dans la table du groupe courant, -1 si elle n'y est pas.
+	 */
+	public int column(String name) {
+		String[] names = ColumnarFormat.COLUMNS[table];
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public String getString(int column, int row) {
+		return columns[column].string(row);
+	}
+
+	public BigDecimal getDecimal(int column, int row) {
+		return columns[column].decimal(row);
+	}
+
+	public long getLong(int column, int row) {
+		return columns[column].longs[row];
+	}
+
+	public Instant getInstant(int column, int row) {
+		long micros = columns[column].longs[row];
+		return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L);
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		in.close();
+	}
+
+	private void inflate(int compressedLength, int rawLength) throws IOException {
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		int length = 0;
+		try {
+			while (length < rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, length, rawLength - length);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Groupe de lignes corrompu: " + e.getMessage(), e);
+		}
+		if (length != rawLength) {
+			throw new IOException("Groupe de lignes incomplet: " + length + "/" + rawLength + " octets");
+		}
+	}
+
+	/**
+	 * Valeurs décodées d'une colonne pour le groupe courant.
+	 */
+	private static final class Column {
+		int encoding;
+		String[] strings = new String[0];
+		String[] dictionary = new String[0];
+		int[] indexes = new int[0];
+		long[] longs = new long[0];
+		BigInteger[] bigs = new BigInteger[0];
+		int scale;
+
+		void decode(ByteBuffer in, int rows) {
+			encoding = in.get();
+			switch (encoding) {
+				case ColumnarFormat.ENCODING_PLAIN:
+					strings = capacity(strings, rows);
+					for (int row = 0; row < rows; row++) {
+						strings[row] = readString(in);
+					}
+					break;
+				case ColumnarFormat.ENCODING_DICTIONARY:
+					int size = ColumnarFormat.readLength(in);
+					dictionary = new String[size];
+					for (int i = 0; i < size; i++) {
+						dictionary[i] = readString(in);
+					}
+					if (indexes.length < rows) {
+						indexes = new int[rows];
+					}
+					for (int row = 0; row < rows; row++) {
+						long index = ColumnarFormat.readVarLong(in);
+						if (index >= size) {
+							throw new IllegalStateException("Index de dictionnaire invalide: " + index);
+						}
+						indexes[row] = (int) index;
+					}
+					break;
+				case ColumnarFormat.ENCODING_FIXED_POINT:
+					scale = (int) ColumnarFormat.readVarLong(in);
+					readDeltas(in, rows, false);
+					break;
+				case ColumnarFormat.ENCODING_FIXED_POINT_BIG:
+					scale = (int) ColumnarFormat.readVarLong(in);
+					bigs = capacity(bigs, rows);
+					for (int row = 0; row < rows; row++) {
+						byte[] bytes = new byte[ColumnarFormat.readLength(in)];
+						in.get(bytes);
+						bigs[row] = new BigInteger(bytes);
+					}
+					break;
+				case ColumnarFormat.ENCODING_DELTA:
+					readDeltas(in, rows, true);
+					break;
+				default:
+					throw new IllegalStateException("Encodage inconnu: " + encoding);
+			}
+		}
+
+		String string(int row) {
+			return encoding == ColumnarFormat.ENCODING_DICTIONARY ? dictionary[indexes[row]] : strings[row];
+		}
+
+		BigDecimal decimal(int row) {
+			return encoding == ColumnarFormat.ENCODING_FIXED_POINT
+				? BigDecimal.valueOf(longs[row], scale)
+				: new BigDecimal(bigs[row], scale);
+		}
+
+		private void readDeltas(ByteBuffer in, int rows, boolean cumulative) {
+			if (longs.length < rows) {
+				longs = new long[rows];
+			}
+			long previous = 0;
+			for (int row = 0; row < rows; row++) {
+				long value = ColumnarFormat.readZigZag(in);
+				longs[row] = cumulative ? previous + value : value;
+				previous = longs[row];
+			}
+		}
+
+		private static String readString(ByteBuffer in) {
+			int length = ColumnarFormat.readLength(in);
+			String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+			in.position(in.position() + length);
+			return value;
+		}
+
+		private static <T> T[] capacity(T[] array, int rows) {
+			return array.length >= rows ? array : Arrays.copyOf(array, rows);
+		}
+	}
+}
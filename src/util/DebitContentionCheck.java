@@ -0,0 +1,112 @@
+package util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import config.ConfigManager;
+import config.Database;
+import metier.enums.CryptoType;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.BitcoinWallet;
+import metier.model.Transaction;
+import repository.jdbc.JdbcTransactionRepository;
+import repository.jdbc.JdbcWalletRepository;
+
+/**
+ * Vérification du débit atomique sous contention, sur la base configurée
+ * (db.*): {@code threads} threads envoient en même temps depuis un seul wallet,
+ * dont la balance ne couvre que la moitié des envois.
+ *
+ * Exactement autant d'envois que la balance en couvre doivent réussir, la
+ * balance finale doit être nulle et la table transactions doit contenir une
+ * ligne par envoi réussi: ni double dépense, ni débit sans transaction.
+ *
+ * Usage: {@code java util.DebitContentionCheck [threads] [envois par thread]}
+ */
+public final class DebitContentionCheck {
+
+	private static final String WALLET_ID = "bench-debit-wallet";
+	private static final BigDecimal AMOUNT = new BigDecimal("0.001");
+	private static final String COUNT_TRANSACTIONS = "SELECT COUNT(*) FROM transactions WHERE wallet_id = ?";
+	private static final String DELETE_TRANSACTIONS = "DELETE FROM transactions WHERE wallet_id = ?";
+	private static final String DELETE_WALLET = "DELETE FROM wallets WHERE id = ?";
+
+	private DebitContentionCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4 * ConfigManager.getMaxConnections();
+		int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int attempts = threads * perThread;
+		int affordable = attempts / 2;
+		BigDecimal initial = AMOUNT.multiply(BigDecimal.valueOf(affordable));
+
+		Database.getInstance().init();
+		JdbcWalletRepository wallets = new JdbcWalletRepository();
+		JdbcTransactionRepository transactions = new JdbcTransactionRepository();
+		cleanUp();
+		BitcoinWallet wallet = new BitcoinWallet(WALLET_ID, WALLET_ID + "-address", initial, Instant.now());
+		wallets.save(wallet);
+
+		boolean ok;
+		try {
+			AtomicInteger accepted = new AtomicInteger();
+			AtomicInteger refused = new AtomicInteger();
+			Benchmarks.Result result = Benchmarks.measure(threads, perThread, (thread, i) -> {
+				Transaction tx = new Transaction(WALLET_ID + "-" + thread + "-" + i, wallet.getAddress(), "bench-destination",
+					AMOUNT, FeePriority.ECONOMIQUE, Instant.now(), BigDecimal.ZERO, TransactionStatus.PENDING, WALLET_ID,
+					CryptoType.BITCOIN);
+				if (transactions.saveWithDebit(tx, AMOUNT).isPresent()) {
+					accepted.incrementAndGet();
+				} else {
+					refused.incrementAndGet();
+				}
+			});
+
+			BigDecimal balance = wallets.findById(WALLET_ID)
+				.orElseThrow(() -> new IllegalStateException("Wallet du test introuvable")).getBalance();
+			long rows = countTransactions();
+			System.out.println(String.format("%s, %d threads, %d envois pour %d couverts", Database.getInstance().getDialect(),
+				threads, attempts, affordable));
+			System.out.println("Envois: " + result);
+			System.out.println(String.format("Acceptés: %d, refusés: %d, balance finale: %s, lignes transactions: %d",
+				accepted.get(), refused.get(), balance.toPlainString(), rows));
+
+			ok = result.failures == 0 && accepted.get() == affordable && refused.get() == attempts - affordable
+				&& balance.signum() == 0 && rows == affordable;
+			System.out.println(ok ? "OK: ni double dépense ni débit perdu" : "ECHEC");
+		} finally {
+			cleanUp();
+			Database.getInstance().close();
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static long countTransactions() throws Exception {
+		try (Connection c = Database.getInstance().getConnection();
+			 PreparedStatement ps = c.prepareStatement(COUNT_TRANSACTIONS)) {
+			ps.setString(1, WALLET_ID);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getLong(1) : 0L;
+			}
+		}
+	}
+
+	private static void cleanUp() throws Exception {
+		try (Connection c = Database.getInstance().getConnection()) {
+			for (String sql : new String[] { DELETE_TRANSACTIONS, DELETE_WALLET }) {
+				try (PreparedStatement ps = c.prepareStatement(sql)) {
+					ps.setString(1, WALLET_ID);
+					ps.executeUpdate();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package util;
+
+/**
+ * Interfaces de flux réactif reprenant celles de {@code java.util.concurrent.Flow}
+ * (Java 9), absentes de Java 8. Mêmes noms et mêmes contrats: un abonné reçoit
+ * {@code onSubscribe}, puis au plus autant d'{@code onNext} que demandé via
+ * {@link Subscription#request(long)}, puis {@code onComplete} ou {@code onError}.
+ */
+public final class Flow {
+
+	private Flow() {}
+
+	@FunctionalInterface
+	public interface Publisher<T> {
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	public interface Subscription {
+		void request(long n);
+
+		void cancel();
+	}
+}
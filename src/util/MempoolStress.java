@@ -0,0 +1,138 @@
+package util;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import metier.enums.CryptoType;
+import metier.enums.FeePriority;
+import metier.enums.TransactionStatus;
+import metier.model.Transaction;
+import metier.service.BlockProducer;
+import metier.service.MempoolService;
+import repository.cache.ForwardingTransactionRepository;
+import repository.memory.InMemoryStore;
+
+/**
+ * Débit et vérification de charge du mempool: de 1 à {@code producteurs}
+ * threads soumettent des transactions pendant qu'un producteur de blocs vide
+ * le shard en continu, et le débit de soumission est mesuré pour chaque nombre
+ * de producteurs.
+ *
+ * À chaque mesure, aucune entrée ne doit rester dans la file sans avoir été
+ * appliquée à l'index à l'arrêt des producteurs; puis, une fois le mempool
+ * vidé, chaque transaction soumise doit avoir été confirmée une fois et une
+ * seule.
+ *
+ * Usage: {@code java util.MempoolStress [producteurs] [transactions par producteur]}
+ */
+public final class MempoolStress {
+
+	private static final CryptoType CHAIN = CryptoType.BITCOIN;
+	private static final long BLOCK_CAPACITY = 1_000_000L;
+
+	private MempoolStress() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int maxProducers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int perProducer = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+		// Préchauffage: JIT et structures du shard
+		run(1, Math.min(perProducer, 20_000), false);
+
+		System.out.println(String.format("%d transactions par producteur, %d coeurs", perProducer,
+			Runtime.getRuntime().availableProcessors()));
+		boolean ok = true;
+		for (int producers = 1; producers <= maxProducers; producers++) {
+			ok &= run(producers, perProducer, true);
+		}
+		System.out.println(ok ? "OK: aucune entrée perdue" : "ECHEC");
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Une mesure avec {@code producers} threads sur un mempool neuf, affichée si
+	 * {@code report}.
+	 *
+	 * @return false si une transaction a été perdue, refusée ou confirmée deux fois
+	 */
+	private static boolean run(int producers, int perProducer, boolean report) throws InterruptedException {
+		long total = (long) producers * perProducer;
+		MempoolService mempool = new MempoolService(Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, 60_000L);
+		RecordingRepository repository = new RecordingRepository();
+		BlockProducer producer = new BlockProducer(mempool, repository, CHAIN, Duration.ofSeconds(1), BLOCK_CAPACITY);
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		LongAdder blocks = new LongAdder();
+		Thread miner = new Thread(() -> {
+			while (running.get()) {
+				producer.produceBlock();
+				blocks.increment();
+			}
+		}, "stress-block-producer");
+
+		LongAdder rejected = new LongAdder();
+		miner.start();
+		Benchmarks.Result result = Benchmarks.measure(producers, perProducer, (thread, i) -> {
+			String id = thread + "-" + i;
+			BigDecimal fee = BigDecimal.valueOf(1_000 + ThreadLocalRandom.current().nextInt(100_000), 8);
+			Transaction tx = new Transaction(id, "src-" + id, "dest", BigDecimal.ONE, FeePriority.STANDARD,
+				Instant.now(), fee, TransactionStatus.PENDING, "wallet-" + thread, CHAIN);
+			if (!mempool.addTransaction(tx)) {
+				rejected.increment();
+			}
+		});
+		running.set(false);
+		miner.join();
+
+		// Avant toute lecture, qui viderait la file d'elle-même
+		int queued = mempool.queuedCount(CHAIN);
+		while (mempool.size(CHAIN) > 0) {
+			producer.produceBlock();
+			blocks.increment();
+		}
+
+		long confirmed = repository.confirmed.size();
+		long duplicates = repository.duplicates.sum();
+		if (report) {
+			System.out.println(String.format("%2d producteurs: %.0f tx/s, p99=%.3f ms, %d blocs;"
+				+ " restées dans la file: %d, refusées: %d, confirmées: %d/%d, deux fois: %d",
+				producers, result.throughput(), result.percentileNanos(99) / 1e6, blocks.sum(), queued,
+				rejected.sum(), confirmed, total, duplicates));
+		}
+
+		return result.failures == 0 && queued == 0 && rejected.sum() == 0 && confirmed == total && duplicates == 0
+			&& producer.getConfirmedCount() == total;
+	}
+
+	/**
+	 * Dépôt en mémoire qui retient les ids confirmés et compte les doublons.
+	 */
+	private static final class RecordingRepository extends ForwardingTransactionRepository {
+		final Set<String> confirmed = ConcurrentHashMap.newKeySet();
+		final LongAdder duplicates = new LongAdder();
+
+		RecordingRepository() {
+			super(InMemoryStore.create().getTransactionRepository());
+		}
+
+		@Override
+		public boolean updateStatusAll(Collection<String> ids, TransactionStatus status) {
+			for (String id : ids) {
+				if (!confirmed.add(id)) {
+					duplicates.increment();
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.Properties;
+
+import config.ConfigManager;
+import config.ConnectionPool;
+import config.Database;
+import config.DatabaseDialect;
+import metier.model.BitcoinWallet;
+import repository.jdbc.JdbcWalletRepository;
+
+/**
+ * Latence par requête sur la base configurée (db.*), avec et sans réutilisation
+ * des instructions préparées: un pool sans cache d'instructions (chaque appel
+ * prépare sa requête, seuil de préparation côté serveur du driver par défaut),
+ * puis un pool avec db.statementCacheSize et db.prepareThreshold.
+ *
+ * La requête mesurée est la lecture d'un wallet par id, créé pour le benchmark
+ * ({@code bench-statement-wallet}) et supprimé à la fin.
+ *
+ * Usage: {@code java util.StatementCacheBenchmark [threads] [requêtes par thread]}
+ */
+public final class StatementCacheBenchmark {
+
+	private static final String WALLET_ID = "bench-statement-wallet";
+	private static final String FIND_BY_ID = "SELECT id, type, address, balance, created_at FROM wallets WHERE id = ?";
+	private static final String DELETE_WALLET = "DELETE FROM wallets WHERE id = ?";
+
+	private StatementCacheBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : ConfigManager.getMaxConnections();
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+		Database.getInstance().init();
+		new JdbcWalletRepository().save(new BitcoinWallet(WALLET_ID, WALLET_ID + "-address", BigDecimal.ONE,
+			Instant.now()));
+		try {
+			Properties plain = credentials();
+			Properties prepared = credentials();
+			if (Database.getInstance().getDialect() == DatabaseDialect.POSTGRESQL) {
+				prepared.setProperty("prepareThreshold", String.valueOf(ConfigManager.getPrepareThreshold()));
+			}
+			System.out.println(String.format("%s, %d threads, %d requêtes par thread", Database.getInstance().getDialect(),
+				threads, iterations));
+			run("Préparée à chaque appel", plain, 0, threads, iterations);
+			run("Cache d'instructions   ", prepared, ConfigManager.getStatementCacheSize(), threads, iterations);
+		} finally {
+			try (Connection c = Database.getInstance().getConnection();
+				 PreparedStatement ps = c.prepareStatement(DELETE_WALLET)) {
+				ps.setString(1, WALLET_ID);
+				ps.executeUpdate();
+			}
+			Database.getInstance().close();
+		}
+	}
+
+	private static void run(String label, Properties properties, int statementCacheSize, int threads, int iterations)
+			throws Exception {
+		try (ConnectionPool pool = new ConnectionPool(ConfigManager.getDatabaseUrl(), properties, threads,
+				statementCacheSize, ConfigManager.getConnectionTimeout(), ConfigManager.getConnectionIdleTimeout(), 0L)) {
+			Benchmarks.Operation findById = (thread, i) -> {
+				try (Connection c = pool.getConnection();
+					 PreparedStatement ps = c.prepareStatement(FIND_BY_ID)) {
+					ps.setString(1, WALLET_ID);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (!rs.next()) {
+							throw new IllegalStateException("Wallet du benchmark introuvable");
+						}
+						rs.getBigDecimal("balance");
+					}
+				}
+			};
+			// Préchauffage: connexions ouvertes, plan préparé côté serveur, JIT
+			Benchmarks.measure(threads, Math.min(iterations, 500), findById);
+			Benchmarks.Result result = Benchmarks.measure(threads, iterations, findById);
+			ConnectionPool.Stats stats = pool.getStats();
+			System.out.println(String.format("%s: %s (instructions réutilisées: %d, préparées: %d)", label, result,
+				stats.getStatementHitCount(), stats.getStatementMissCount()));
+		}
+	}
+
+	private static Properties credentials() {
+		Properties properties = new Properties();
+		properties.setProperty("user", ConfigManager.getDatabaseUser());
+		properties.setProperty("password", ConfigManager.getDatabasePassword());
+		return properties;
+	}
+}
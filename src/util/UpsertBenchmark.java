@@ -0,0 +1,87 @@
+package util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import config.ConfigManager;
+import config.Database;
+import metier.model.BitcoinWallet;
+import metier.model.Wallet;
+import repository.jdbc.JdbcWalletRepository;
+
+/**
+ * Latence de l'enregistrement d'un wallet sous écritures concurrentes, sur la
+ * base configurée (db.*): lecture puis mise à jour en deux allers-retours,
+ * comme le faisait {@code save}, contre l'upsert en un seul.
+ *
+ * Les wallets du benchmark (ids {@code bench-upsert-*}) sont créés au début et
+ * supprimés à la fin.
+ *
+ * Usage: {@code java util.UpsertBenchmark [threads] [itérations par thread] [wallets]}
+ */
+public final class UpsertBenchmark {
+
+	private static final String PREFIX = "bench-upsert-";
+	private static final String DELETE_WALLETS = "DELETE FROM wallets WHERE id LIKE '" + PREFIX + "%'";
+
+	private UpsertBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : ConfigManager.getMaxConnections();
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+		int walletCount = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+		Database.getInstance().init();
+		JdbcWalletRepository repository = new JdbcWalletRepository();
+		List<Wallet> wallets = new ArrayList<>();
+		for (int i = 0; i < walletCount; i++) {
+			wallets.add(new BitcoinWallet(PREFIX + i, PREFIX + "address-" + i, BigDecimal.ZERO, Instant.now()));
+		}
+		deleteWallets();
+		repository.saveAll(wallets);
+
+		try {
+			// Lecture puis UPDATE: deux allers-retours et deux emprunts de connexion
+			Benchmarks.Operation readThenUpdate = (thread, i) -> {
+				Wallet w = wallets.get((thread + i) % walletCount);
+				if (!repository.findById(w.getId()).isPresent()) {
+					throw new IllegalStateException("Wallet absent: " + w.getId());
+				}
+				repository.updateBalance(w.getId(), BigDecimal.valueOf(i));
+			};
+			Benchmarks.Operation upsert = (thread, i) -> {
+				Wallet w = wallets.get((thread + i) % walletCount);
+				repository.save(new BitcoinWallet(w.getId(), w.getAddress(), BigDecimal.valueOf(i), w.getCreatedAt()));
+			};
+
+			// Préchauffage: connexions ouvertes, instructions préparées, JIT
+			Benchmarks.measure(threads, Math.min(iterations, 200), readThenUpdate);
+			Benchmarks.measure(threads, Math.min(iterations, 200), upsert);
+
+			Benchmarks.Result before = Benchmarks.measure(threads, iterations, readThenUpdate);
+			Benchmarks.Result after = Benchmarks.measure(threads, iterations, upsert);
+			System.out.println(String.format("%s, %d threads, %d wallets", Database.getInstance().getDialect(),
+				threads, walletCount));
+			System.out.println("Lecture puis UPDATE: " + before);
+			System.out.println("Upsert:              " + after);
+			System.out.println(String.format("p50 divisé par %.2f, débit multiplié par %.2f",
+				(double) before.percentileNanos(50) / Math.max(1L, after.percentileNanos(50)),
+				after.throughput() / Math.max(1e-9, before.throughput())));
+		} finally {
+			deleteWallets();
+			Database.getInstance().close();
+		}
+	}
+
+	private static void deleteWallets() throws Exception {
+		try (Connection c = Database.getInstance().getConnection();
+			 PreparedStatement ps = c.prepareStatement(DELETE_WALLETS)) {
+			ps.executeUpdate();
+		}
+	}
+}